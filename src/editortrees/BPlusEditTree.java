@@ -0,0 +1,440 @@
+package editortrees;
+
+/**
+ * A TextBuffer like EditTree, for big documents. Instead of one Node per
+ * character, it is a B+-tree: the characters are kept in leaves of up to
+ * LEAF_CAPACITY characters each (TextChunks, so ASCII takes a byte per
+ * character), and each inner node has up to FANOUT children, with the
+ * cumulative number of characters up to and including each child in one int
+ * array.
+ *
+ * Finding a position binary searches that array at each level, so a 100M
+ * character document is 4 levels deep instead of 27, and each level is one or
+ * two cache lines instead of a pointer chase. get() also remembers the last
+ * leaf it read, so reading in order is O(1) per character.
+ *
+ * Nodes split in half when they are full. A node that falls below a quarter
+ * full is merged into a neighbor if both fit in one node, or else evened out
+ * with it, so a delete never leaves the tree deeper than it needs to be.
+ *
+ * For typing-heavy use the leaves can be gap buffers (see TextChunk), so that
+ * adding or backspacing at a cursor writes into the gap instead of moving the
+ * rest of the leaf on every keystroke. Leaves still only split when full and
+ * merge when under a quarter full.
+ *
+ * @author Medhansh Khattar
+ */
+public class BPlusEditTree implements TextBuffer {
+
+	public static final int FANOUT = 64;
+	public static final int LEAF_CAPACITY = 1024;
+	private static final int MAX_DEPTH = 32;
+
+	// An inner node. Its children are all TextChunks or all Inners.
+	static final class Inner {
+		final Object[] children;
+		final int[] ends; // ends[i] is the number of characters in children[0..i]
+		int count;
+
+		Inner(int fanout) {
+			// one spare slot, so that a child can be added before splitting
+			this.children = new Object[fanout + 1];
+			this.ends = new int[fanout + 1];
+		}
+
+		int size() {
+			return this.count == 0 ? 0 : this.ends[this.count - 1];
+		}
+
+		int start(int i) {
+			return i == 0 ? 0 : this.ends[i - 1];
+		}
+
+		// Returns the first child whose characters end after offset, or, when
+		// inserting, the first one that ends at or after it, so that adding at a
+		// boundary appends to the child before it.
+		int childIndex(int offset, boolean inserting) {
+			int low = 0;
+			int high = this.count - 1;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (this.ends[middle] > offset || (inserting && this.ends[middle] == offset)) {
+					high = middle;
+				} else {
+					low = middle + 1;
+				}
+			}
+			return low;
+		}
+
+		// Puts child in at index i. The children after it must already be counted
+		// in end and the ends after it.
+		void insertChild(int i, Object child, int end) {
+			System.arraycopy(this.children, i, this.children, i + 1, this.count - i);
+			System.arraycopy(this.ends, i, this.ends, i + 1, this.count - i);
+			this.children[i] = child;
+			this.ends[i] = end;
+			this.count++;
+		}
+
+		// Takes child i out. Its characters must already be counted elsewhere or
+		// taken off the ends after it.
+		void removeChild(int i) {
+			System.arraycopy(this.children, i + 1, this.children, i, this.count - i - 1);
+			System.arraycopy(this.ends, i + 1, this.ends, i, this.count - i - 1);
+			this.count--;
+			this.children[this.count] = null;
+		}
+
+		void adjustFrom(int i, int delta) {
+			for (int j = i; j < this.count; j++) {
+				this.ends[j] += delta;
+			}
+		}
+
+		// Moves the children from index from on into a new node.
+		Inner splitOff(int from, int fanout) {
+			Inner right = new Inner(fanout);
+			int offset = this.start(from);
+			for (int i = from; i < this.count; i++) {
+				right.children[right.count] = this.children[i];
+				right.ends[right.count] = this.ends[i] - offset;
+				right.count++;
+				this.children[i] = null;
+			}
+			this.count = from;
+			return right;
+		}
+
+		void appendAll(Inner other) {
+			int offset = this.size();
+			for (int i = 0; i < other.count; i++) {
+				this.children[this.count] = other.children[i];
+				this.ends[this.count] = other.ends[i] + offset;
+				this.count++;
+			}
+			other.count = 0;
+		}
+	}
+
+	private final int fanout;
+	private final int leafCapacity;
+	private Object root;
+	private int size;
+	// the path of the current add or delete, reused so they don't allocate
+	private final Inner[] path = new Inner[MAX_DEPTH];
+	private final int[] slots = new int[MAX_DEPTH];
+	// the last leaf get() read, and the position of its first character
+	private TextChunk lastLeaf;
+	private int lastLeafStart;
+
+	public BPlusEditTree() {
+		this(false);
+	}
+
+	/**
+	 * @param gapBufferLeaves whether the leaves keep their gap where the last
+	 *                        edit was, which makes typing at a cursor faster
+	 */
+	public BPlusEditTree(boolean gapBufferLeaves) {
+		this(FANOUT, LEAF_CAPACITY, gapBufferLeaves);
+	}
+
+	// Small sizes make tests reach every split and merge with little text.
+	BPlusEditTree(int fanout, int leafCapacity, boolean gapBufferLeaves) {
+		if (fanout < 4 || leafCapacity < 4) {
+			throw new IllegalArgumentException();
+		}
+		this.fanout = fanout;
+		this.leafCapacity = leafCapacity;
+		this.root = new TextChunk(leafCapacity, gapBufferLeaves);
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public void add(char ch) {
+		this.add(ch, this.size);
+	}
+
+	/**
+	 * @param ch  character to add
+	 * @param pos position to add it at, from 0 to the size inclusive
+	 * @throws IndexOutOfBoundsException if pos is negative or too large
+	 */
+	public void add(char ch, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		this.lastLeaf = null;
+		int depth = 0;
+		Object node = this.root;
+		int offset = pos;
+		while (node instanceof Inner) {
+			Inner inner = (Inner) node;
+			int i = inner.childIndex(offset, true);
+			inner.adjustFrom(i, 1);
+			this.path[depth] = inner;
+			this.slots[depth] = i;
+			depth++;
+			offset -= inner.start(i);
+			node = inner.children[i];
+		}
+		TextChunk leaf = (TextChunk) node;
+		if (leaf.length() < this.leafCapacity) {
+			leaf.insert(offset, ch);
+		} else {
+			TextChunk right = leaf.splitOff(leaf.length() / 2);
+			if (offset <= leaf.length()) {
+				leaf.insert(offset, ch);
+			} else {
+				right.insert(offset - leaf.length(), ch);
+			}
+			this.addSibling(depth, leaf, leaf.length(), right, right.length());
+		}
+		this.size++;
+	}
+
+	// The node at this depth was split into left and right. Links right in after
+	// left, splitting the parents that overflow.
+	private void addSibling(int depth, Object left, int leftSize, Object right, int rightSize) {
+		while (depth > 0) {
+			depth--;
+			Inner parent = this.path[depth];
+			int i = this.slots[depth];
+			// the parent already counts both halves as child i
+			int end = parent.ends[i];
+			parent.ends[i] = end - rightSize;
+			parent.insertChild(i + 1, right, end);
+			if (parent.count <= this.fanout) {
+				return;
+			}
+			Inner parentRight = parent.splitOff(parent.count / 2, this.fanout);
+			left = parent;
+			leftSize = parent.size();
+			right = parentRight;
+			rightSize = parentRight.size();
+		}
+		Inner newRoot = new Inner(this.fanout);
+		newRoot.insertChild(0, left, leftSize);
+		newRoot.insertChild(1, right, leftSize + rightSize);
+		this.root = newRoot;
+	}
+
+	/**
+	 * @param pos position of the character to delete
+	 * @return the deleted character
+	 * @throws IndexOutOfBoundsException if pos is negative or not less than the
+	 *                                   size
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		this.lastLeaf = null;
+		int depth = 0;
+		Object node = this.root;
+		int offset = pos;
+		while (node instanceof Inner) {
+			Inner inner = (Inner) node;
+			int i = inner.childIndex(offset, false);
+			inner.adjustFrom(i, -1);
+			this.path[depth] = inner;
+			this.slots[depth] = i;
+			depth++;
+			offset -= inner.start(i);
+			node = inner.children[i];
+		}
+		char deleted = ((TextChunk) node).delete(offset);
+		this.size--;
+		this.mergeUnderfullNodes(depth);
+		return deleted;
+	}
+
+	// Walks up the path of a delete. A node that is less than a quarter full is
+	// merged with a neighbor if they fit in one node together, and otherwise
+	// takes enough from the neighbor to even them out, so every node but the
+	// root stays at least a quarter full.
+	private void mergeUnderfullNodes(int depth) {
+		while (depth > 0) {
+			depth--;
+			Inner parent = this.path[depth];
+			int i = this.slots[depth];
+			if (parent.count < 2 || !this.isUnderfull(parent.children[i])) {
+				break;
+			}
+			int left = i + 1 < parent.count ? i : i - 1;
+			if (!this.merge(parent.children[left], parent.children[left + 1])) {
+				this.even(parent, left);
+				break;
+			}
+			int combined = parent.ends[left + 1];
+			parent.removeChild(left + 1);
+			parent.ends[left] = combined;
+		}
+		while (this.root instanceof Inner && ((Inner) this.root).count == 1) {
+			this.root = ((Inner) this.root).children[0];
+		}
+	}
+
+	private boolean isUnderfull(Object node) {
+		if (node instanceof Inner) {
+			return ((Inner) node).count < Math.max(2, this.fanout / 4);
+		}
+		return ((TextChunk) node).length() < this.leafCapacity / 4;
+	}
+
+	// Moves everything in right into left if it fits.
+	private boolean merge(Object left, Object right) {
+		if (left instanceof Inner) {
+			Inner leftInner = (Inner) left;
+			Inner rightInner = (Inner) right;
+			if (leftInner.count + rightInner.count > this.fanout) {
+				return false;
+			}
+			leftInner.appendAll(rightInner);
+			return true;
+		}
+		TextChunk leftLeaf = (TextChunk) left;
+		TextChunk rightLeaf = (TextChunk) right;
+		if (leftLeaf.length() + rightLeaf.length() > this.leafCapacity) {
+			return false;
+		}
+		leftLeaf.appendAll(rightLeaf);
+		return true;
+	}
+
+	// Moves children or characters between parent's children left and left + 1
+	// so that they have the same number, give or take one.
+	private void even(Inner parent, int left) {
+		Object leftNode = parent.children[left];
+		Object rightNode = parent.children[left + 1];
+		if (leftNode instanceof Inner) {
+			Inner leftInner = (Inner) leftNode;
+			Inner rightInner = (Inner) rightNode;
+			int half = (leftInner.count + rightInner.count) / 2;
+			if (leftInner.count > half) {
+				Inner moved = leftInner.splitOff(half, this.fanout);
+				moved.appendAll(rightInner);
+				parent.children[left + 1] = moved;
+			} else {
+				parent.children[left + 1] = rightInner.splitOff(half - leftInner.count, this.fanout);
+				leftInner.appendAll(rightInner);
+			}
+			parent.ends[left] = parent.start(left) + leftInner.size();
+			return;
+		}
+		TextChunk leftLeaf = (TextChunk) leftNode;
+		TextChunk rightLeaf = (TextChunk) rightNode;
+		int half = (leftLeaf.length() + rightLeaf.length()) / 2;
+		if (leftLeaf.length() > half) {
+			TextChunk moved = leftLeaf.splitOff(half);
+			moved.appendAll(rightLeaf);
+			parent.children[left + 1] = moved;
+		} else {
+			parent.children[left + 1] = rightLeaf.splitOff(half - leftLeaf.length());
+			leftLeaf.appendAll(rightLeaf);
+		}
+		parent.ends[left] = parent.start(left) + leftLeaf.length();
+	}
+
+	/**
+	 * @param pos position of a character
+	 * @return the character at pos
+	 * @throws IndexOutOfBoundsException if pos is negative or not less than the
+	 *                                   size
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (this.lastLeaf == null || pos < this.lastLeafStart
+				|| pos >= this.lastLeafStart + this.lastLeaf.length()) {
+			Object node = this.root;
+			int start = 0;
+			while (node instanceof Inner) {
+				Inner inner = (Inner) node;
+				int i = inner.childIndex(pos - start, false);
+				start += inner.start(i);
+				node = inner.children[i];
+			}
+			this.lastLeaf = (TextChunk) node;
+			this.lastLeafStart = start;
+		}
+		return this.lastLeaf.charAt(pos - this.lastLeafStart);
+	}
+
+	/**
+	 * @param pos    position of the first character
+	 * @param length number of characters
+	 * @return the length characters starting at pos
+	 * @throws IndexOutOfBoundsException unless pos and pos + length - 1 are both
+	 *                                   positions in the tree
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (pos < 0 || length < 0 || pos + length > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		StringBuilder builder = new StringBuilder(length);
+		appendRange(this.root, pos, pos + length, builder);
+		return builder.toString();
+	}
+
+	private static void appendRange(Object node, int from, int to, StringBuilder builder) {
+		if (node instanceof TextChunk) {
+			((TextChunk) node).appendTo(builder, from, to);
+			return;
+		}
+		Inner inner = (Inner) node;
+		for (int i = inner.childIndex(from, false); i < inner.count && inner.start(i) < to; i++) {
+			int start = inner.start(i);
+			appendRange(inner.children[i], Math.max(from - start, 0), Math.min(to, inner.ends[i]) - start, builder);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.get(0, this.size);
+	}
+
+	/**
+	 * @return the number of levels of inner nodes above the leaves
+	 */
+	public int height() {
+		int height = 0;
+		for (Object node = this.root; node instanceof Inner; node = ((Inner) node).children[0]) {
+			height++;
+		}
+		return height;
+	}
+
+	/**
+	 * Checks the cumulative counts and that no node is over capacity. This is
+	 * O(n) and meant for tests.
+	 */
+	boolean countsAreCorrect() {
+		return this.check(this.root) == this.size;
+	}
+
+	// Returns the number of characters under node, or -1 if anything is wrong.
+	private int check(Object node) {
+		if (node instanceof TextChunk) {
+			int length = ((TextChunk) node).length();
+			return length <= this.leafCapacity ? length : -1;
+		}
+		Inner inner = (Inner) node;
+		if (inner.count > this.fanout || inner.count == 0) {
+			return -1;
+		}
+		int total = 0;
+		for (int i = 0; i < inner.count; i++) {
+			int childSize = this.check(inner.children[i]);
+			if (childSize < 0 || inner.ends[i] != total + childSize) {
+				return -1;
+			}
+			total += childSize;
+		}
+		return total;
+	}
+}
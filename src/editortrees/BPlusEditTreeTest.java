@@ -0,0 +1,200 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for BPlusEditTree. Most use a fanout of 4 and leaves of 8 characters so
+ * that a few hundred characters make a tree several levels deep.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BPlusEditTreeTest {
+
+	@Test
+	public void test101Empty() {
+		BPlusEditTree t = new BPlusEditTree();
+		assertEquals(0, t.size());
+		assertEquals("", t.toString());
+		assertEquals(0, t.height());
+		try {
+			t.get(0);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.delete(0);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void test102AppendSplitsLeavesAndRoot() {
+		BPlusEditTree t = new BPlusEditTree(4, 8, false);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			char ch = (char) ('a' + i % 26);
+			t.add(ch);
+			expected.append(ch);
+		}
+		assertEquals(expected.toString(), t.toString());
+		assertTrue(t.countsAreCorrect());
+		assertTrue(t.height() >= 3);
+		for (int i = 0; i < 500; i++) {
+			assertEquals(expected.charAt(i), t.get(i));
+		}
+	}
+
+	@Test
+	public void test103AddAtFrontAndMiddle() {
+		BPlusEditTree t = new BPlusEditTree(4, 8, false);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			char ch = (char) ('A' + i % 26);
+			int pos = i % 3 == 0 ? 0 : expected.length() / 2;
+			t.add(ch, pos);
+			expected.insert(pos, ch);
+		}
+		assertEquals(expected.toString(), t.toString());
+		assertTrue(t.countsAreCorrect());
+	}
+
+	@Test
+	public void test104DeleteEverythingMergesBackToOneLeaf() {
+		BPlusEditTree t = new BPlusEditTree(4, 8, false);
+		for (int i = 0; i < 400; i++) {
+			t.add((char) ('a' + i % 26));
+		}
+		StringBuilder expected = new StringBuilder(t.toString());
+		Random random = new Random(7);
+		while (t.size() > 0) {
+			int pos = random.nextInt(t.size());
+			assertEquals(expected.charAt(pos), t.delete(pos));
+			expected.deleteCharAt(pos);
+			assertTrue(t.countsAreCorrect());
+		}
+		assertEquals("", t.toString());
+		assertEquals(0, t.height());
+	}
+
+	@Test
+	public void test105RandomEditsMatchStringBuilder() {
+		Random random = new Random(11);
+		for (int leafCapacity = 4; leafCapacity <= 64; leafCapacity *= 4) {
+			BPlusEditTree t = new BPlusEditTree(4 + random.nextInt(5), leafCapacity, false);
+			StringBuilder expected = new StringBuilder();
+			for (int k = 0; k < 20000; k++) {
+				if (expected.length() > 0 && random.nextInt(5) < 2) {
+					int pos = random.nextInt(expected.length());
+					assertEquals(expected.charAt(pos), t.delete(pos));
+					expected.deleteCharAt(pos);
+				} else {
+					int pos = random.nextInt(expected.length() + 1);
+					char ch = (char) random.nextInt(0x3000);
+					t.add(ch, pos);
+					expected.insert(pos, ch);
+				}
+				if (k % 500 == 0) {
+					assertTrue(t.countsAreCorrect());
+					assertEquals(expected.toString(), t.toString());
+				}
+			}
+			assertEquals(expected.length(), t.size());
+			assertEquals(expected.toString(), t.toString());
+			assertTrue(t.countsAreCorrect());
+		}
+	}
+
+	@Test
+	public void test106GetRange() {
+		BPlusEditTree t = new BPlusEditTree(4, 8, false);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			char ch = (char) ('a' + i % 26);
+			t.add(ch);
+			expected.append(ch);
+		}
+		for (int pos = 0; pos < 200; pos += 7) {
+			for (int length = 0; pos + length <= 200; length += 13) {
+				assertEquals(expected.substring(pos, pos + length), t.get(pos, length));
+			}
+		}
+		try {
+			t.get(190, 11);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void test107SequentialGetSeesEdits() {
+		BPlusEditTree t = new BPlusEditTree(4, 8, false);
+		for (int i = 0; i < 100; i++) {
+			t.add('a');
+		}
+		assertEquals('a', t.get(40));
+		assertEquals('a', t.get(41));
+		// the leaf get() remembered must not be used after an edit
+		t.add('b', 41);
+		assertEquals('b', t.get(41));
+		t.delete(40);
+		assertEquals('b', t.get(40));
+		assertEquals('a', t.get(41));
+	}
+
+	@Test
+	public void test108DefaultSizesAreShallow() {
+		BPlusEditTree t = new BPlusEditTree();
+		for (int i = 0; i < 1000000; i++) {
+			t.add((char) ('a' + i % 26));
+		}
+		assertTrue(t.countsAreCorrect());
+		assertTrue(t.height() <= 3);
+		assertEquals('a' + 999999 % 26, t.get(999999));
+	}
+
+	@Test
+	public void test109GapBufferLeavesTypingAndBackspacing() {
+		Random random = new Random(13);
+		BPlusEditTree t = new BPlusEditTree(4, 16, true);
+		StringBuilder expected = new StringBuilder();
+		for (int burst = 0; burst < 300; burst++) {
+			int cursor = random.nextInt(expected.length() + 1);
+			for (int k = 0; k < 40; k++) {
+				if (cursor > 0 && random.nextInt(4) == 0) {
+					cursor--;
+					assertEquals(expected.charAt(cursor), t.delete(cursor));
+					expected.deleteCharAt(cursor);
+				} else {
+					char ch = (char) ('a' + random.nextInt(26));
+					t.add(ch, cursor);
+					expected.insert(cursor, ch);
+					cursor++;
+				}
+			}
+			if (burst % 20 == 0) {
+				assertTrue(t.countsAreCorrect());
+				assertEquals(expected.toString(), t.toString());
+			}
+		}
+		while (t.size() > 0) {
+			int pos = random.nextInt(t.size());
+			assertEquals(expected.charAt(pos), t.delete(pos));
+			expected.deleteCharAt(pos);
+		}
+		assertTrue(t.countsAreCorrect());
+		assertEquals(0, t.height());
+	}
+}
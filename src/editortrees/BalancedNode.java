@@ -0,0 +1,143 @@
+package editortrees;
+
+import editortrees.Node.NodeContainer;
+
+/**
+ * The AVL rebalancing that EditTree's nodes and PieceTable's pieces share: the
+ * cases after an insert or a delete, and the rotations, which keep rank right.
+ * A node's rank is the weight of its left subtree, and the two only differ in
+ * what one node weighs: one character for a Node, the length of a piece. A
+ * Node also keeps other counts next to rank, which it fixes in
+ * rotatedAbove().
+ *
+ * The balance codes are Node.SAME, Node.LEFT and Node.RIGHT.
+ *
+ * @author Medhansh Khattar
+ */
+abstract class BalancedNode<N extends BalancedNode<N>> {
+
+	N left, right; // subtrees
+	int rank; // weight of the left subtree
+	byte balance;
+
+	/**
+	 * @return what this node adds to the rank of the nodes it is left of
+	 */
+	abstract int weight();
+
+	/**
+	 * Fixes what a node keeps besides rank after it was rotated up into the
+	 * place of parent.
+	 *
+	 * @param leftRotation whether this node was parent's right child
+	 */
+	abstract void rotatedAbove(N parent, boolean leftRotation);
+
+	@SuppressWarnings("unchecked")
+	private N self() {
+		return (N) this;
+	}
+
+	// grownSide is the side of this node whose subtree just got one taller.
+	// Returns the new root of this subtree. nc.isBalanced is set once its height
+	// is back to what it was, and nc.rotations to how many rotations it took.
+	N rebalanceAfterInsert(byte grownSide, NodeContainer nc) {
+		nc.rotations = 0;
+		if (this.balance == Node.SAME) {
+			this.balance = grownSide;
+			return this.self();
+		}
+		nc.isBalanced = true;
+		if (this.balance == grownSide) {
+			return this.rotation(nc);
+		}
+		this.balance = Node.SAME;
+		return this.self();
+	}
+
+	// shrunkSide is the side of this node whose subtree just got one shorter.
+	N rebalanceAfterDelete(byte shrunkSide, NodeContainer nc) {
+		nc.rotations = 0;
+		if (this.balance == Node.SAME) { // height of this subtree doesn't change
+			this.balance = Node.opposite(shrunkSide);
+			nc.isBalanced = true;
+			return this.self();
+		}
+		if (this.balance == shrunkSide) { // one shorter, keep going up
+			this.balance = Node.SAME;
+			return this.self();
+		}
+		N taller = this.balance == Node.LEFT ? this.left : this.right;
+		if (taller.balance != Node.SAME) {
+			return this.rotation(nc);
+		}
+		// unlike insert, a single rotation can keep the height
+		nc.isBalanced = true;
+		nc.rotations = 1;
+		N self = this.self();
+		N newRoot = shrunkSide == Node.LEFT ? rotateLeft(self, taller) : rotateRight(self, taller);
+		this.balance = Node.opposite(shrunkSide);
+		newRoot.balance = shrunkSide;
+		return newRoot;
+	}
+
+	// Rotates the taller side up, once if it leans the same way as this node and
+	// twice if it leans the other way, which makes this subtree one shorter.
+	private N rotation(NodeContainer nc) {
+		N self = this.self();
+		if (this.balance == Node.LEFT) {
+			N child = this.left;
+			if (child.balance == Node.LEFT) {
+				nc.rotations = 1;
+				this.balance = child.balance = Node.SAME;
+				return rotateRight(self, child);
+			}
+			nc.rotations = 2;
+			N grandchild = child.right;
+			this.left = rotateLeft(child, grandchild);
+			N newRoot = rotateRight(self, grandchild);
+			fixBalancesAfterDoubleRotation(grandchild, child, self);
+			return newRoot;
+		}
+		N child = this.right;
+		if (child.balance == Node.RIGHT) {
+			nc.rotations = 1;
+			this.balance = child.balance = Node.SAME;
+			return rotateLeft(self, child);
+		}
+		nc.rotations = 2;
+		N grandchild = child.left;
+		this.right = rotateRight(child, grandchild);
+		N newRoot = rotateLeft(self, grandchild);
+		fixBalancesAfterDoubleRotation(grandchild, self, child);
+		return newRoot;
+	}
+
+	// grandchild is now the root, with left and right as its children.
+	private static <N extends BalancedNode<N>> void fixBalancesAfterDoubleRotation(N grandchild, N left, N right) {
+		left.balance = grandchild.balance == Node.RIGHT ? Node.LEFT : Node.SAME;
+		right.balance = grandchild.balance == Node.LEFT ? Node.RIGHT : Node.SAME;
+		grandchild.balance = Node.SAME;
+	}
+
+	// Moves child, parent's right child, up into parent's place and returns it.
+	// Rank and whatever rotatedAbove() fixes are kept right; balance codes are
+	// up to the caller, since the policies other than AVL use that byte
+	// differently. Linking child into parent's parent is up to the caller too.
+	static <N extends BalancedNode<N>> N rotateLeft(N parent, N child) {
+		parent.right = child.left;
+		child.left = parent;
+		child.rank += parent.rank + parent.weight();
+		child.rotatedAbove(parent, true);
+		return child;
+	}
+
+	// Same, for parent's left child.
+	static <N extends BalancedNode<N>> N rotateRight(N parent, N child) {
+		parent.left = child.right;
+		child.right = parent;
+		parent.rank -= child.rank + child.weight();
+		child.rotatedAbove(parent, false);
+		return child;
+	}
+}
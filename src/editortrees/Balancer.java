@@ -0,0 +1,432 @@
+package editortrees;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Rebalancing for the BalancingPolicies other than AVL, whose cases live in
+ * Node and Finger where they were first written. Finger makes the add or
+ * delete and updates the counts on its path as usual, then hands the path to
+ * afterInsert() or afterDelete(), which walk back up it and rotate with
+ * Finger.rotate(), so ranks, listeners and flight recorder events work the
+ * same for every policy.
+ *
+ * Each policy keeps whatever it needs per node in Node.balance, except the
+ * treap, whose nodes are TreapNodes with room for a priority, so that trees
+ * using the other policies don't pay for it.
+ *
+ * @author Medhansh Khattar
+ */
+abstract class Balancer {
+
+	static Balancer forPolicy(BalancingPolicy policy) {
+		switch (policy) {
+		case RED_BLACK:
+			return new RedBlack();
+		case WEIGHT_BALANCED:
+			return new WeightBalanced();
+		case TREAP:
+			return new Treap(System.nanoTime());
+		case SPLAY:
+			return new Splay();
+		default:
+			return null;
+		}
+	}
+
+	Node newNode(char ch) {
+		return new Node(ch);
+	}
+
+	// For copies and snapshots, which copy Node.balance themselves.
+	void copyState(Node from, Node to) {
+		// nothing else by default
+	}
+
+	void writeState(Node node, DataOutput out) throws IOException {
+		// nothing else by default
+	}
+
+	void readState(Node node, DataInput in) throws IOException {
+		// nothing else by default
+	}
+
+	/**
+	 * Called with the path ending at the added node.
+	 */
+	abstract void afterInsert(Finger finger);
+
+	/**
+	 * Called with the path ending at the parent of the place a node was
+	 * unlinked from, which is the successor's old place if the deleted node had
+	 * two children.
+	 *
+	 * @param level          level of the deleted node, where the successor now
+	 *                       is if relinked
+	 * @param relinked       whether the successor was moved into its place
+	 * @param removedBalance balance byte of the node that left its place
+	 * @param side           side of the path's last node that lost a node
+	 */
+	abstract void afterDelete(Finger finger, int level, boolean relinked, byte removedBalance, byte side);
+
+	/**
+	 * Called with the path ending at the node get() found.
+	 */
+	void afterGet(Finger finger) {
+		// reading doesn't change the shape by default
+	}
+
+	/**
+	 * @return a description of where this policy's invariant is broken, or null
+	 *         if it holds everywhere under root
+	 */
+	abstract String problem(Node root);
+
+	static Node child(Node node, byte side) {
+		return side == Node.LEFT ? node.left : node.right;
+	}
+
+	static byte sideOf(Node parent, Node child) {
+		return parent.left == child ? Node.LEFT : Node.RIGHT;
+	}
+
+	/**
+	 * Red-black trees, with the color in Node.balance. The NULL_NODE is black
+	 * like any missing child.
+	 */
+	static final class RedBlack extends Balancer {
+
+		static final byte BLACK = Node.SAME;
+		static final byte RED = Node.LEFT;
+
+		private static boolean isRed(Node node) {
+			return node != Node.NULL_NODE && node.balance == RED;
+		}
+
+		void afterInsert(Finger finger) {
+			int level = finger.depth() - 1;
+			finger.node(level).balance = RED;
+			// a red parent isn't the root, so there is a grandparent
+			while (level >= 2 && isRed(finger.node(level - 1))) {
+				Node node = finger.node(level);
+				Node parent = finger.node(level - 1);
+				Node grandparent = finger.node(level - 2);
+				byte parentSide = sideOf(grandparent, parent);
+				Node uncle = child(grandparent, Node.opposite(parentSide));
+				if (isRed(uncle)) {
+					parent.balance = BLACK;
+					uncle.balance = BLACK;
+					grandparent.balance = RED;
+					level -= 2;
+					continue;
+				}
+				if (sideOf(parent, node) != parentSide) {
+					parent = finger.rotate(level - 1, node);
+				}
+				finger.rotate(level - 2, parent);
+				parent.balance = BLACK;
+				grandparent.balance = RED;
+				break;
+			}
+			finger.node(0).balance = BLACK;
+		}
+
+		void afterDelete(Finger finger, int level, boolean relinked, byte removedBalance, byte side) {
+			if (removedBalance == RED) {
+				return;
+			}
+			int i = finger.depth() - 1;
+			// the deleted root's child, if any, is the new root
+			Node node = i < 0 ? finger.root() : child(finger.node(i), side);
+			// node is "doubly black": its side has one black node too few
+			while (i >= 0 && !isRed(node)) {
+				Node parent = finger.node(i);
+				Node sibling = child(parent, Node.opposite(side));
+				if (isRed(sibling)) {
+					sibling.balance = BLACK;
+					parent.balance = RED;
+					finger.rotate(i, sibling);
+					finger.descend(side == Node.LEFT);
+					i++;
+					sibling = child(parent, Node.opposite(side));
+				}
+				Node near = child(sibling, side);
+				Node far = child(sibling, Node.opposite(side));
+				if (!isRed(near) && !isRed(far)) {
+					sibling.balance = RED;
+					node = parent;
+					i--;
+					if (i >= 0) {
+						side = sideOf(finger.node(i), parent);
+					}
+					continue;
+				}
+				if (!isRed(far)) {
+					near.balance = BLACK;
+					sibling.balance = RED;
+					finger.truncate(i + 1);
+					finger.descend(side != Node.LEFT);
+					finger.rotate(i + 1, near);
+					far = sibling;
+					sibling = near;
+				}
+				sibling.balance = parent.balance;
+				parent.balance = BLACK;
+				far.balance = BLACK;
+				finger.rotate(i, sibling);
+				return;
+			}
+			if (node != null && node != Node.NULL_NODE) {
+				node.balance = BLACK;
+			}
+		}
+
+		String problem(Node root) {
+			if (isRed(root)) {
+				return "red root";
+			}
+			StringBuilder problem = new StringBuilder();
+			blackHeight(root, problem);
+			return problem.length() == 0 ? null : problem.toString();
+		}
+
+		private static int blackHeight(Node node, StringBuilder problem) {
+			if (node == Node.NULL_NODE) {
+				return 0;
+			}
+			if (node.balance != BLACK && node.balance != RED) {
+				problem.append("bad color at " + node.data);
+			} else if (isRed(node) && (isRed(node.left) || isRed(node.right))) {
+				problem.append("red child of red " + node.data);
+			}
+			int left = blackHeight(node.left, problem);
+			int right = blackHeight(node.right, problem);
+			if (left != right && problem.length() == 0) {
+				problem.append("black heights differ under " + node.data);
+			}
+			return left + (isRed(node) ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Weight-balanced trees with Adams' parameters: the sizes of siblings, plus
+	 * one, differ by at most a factor of DELTA, and a rotation is single or
+	 * double depending on whether the inner grandchild is less than GAMMA times
+	 * the outer one. These are the only integer parameters for which one
+	 * rebalance per level restores the balance after an add or delete. Sizes
+	 * come from the path's position ranges and the ranks, so nodes keep
+	 * nothing.
+	 */
+	static final class WeightBalanced extends Balancer {
+
+		private static final int DELTA = 3;
+		private static final int GAMMA = 2;
+
+		void afterInsert(Finger finger) {
+			this.rebalancePath(finger);
+		}
+
+		void afterDelete(Finger finger, int level, boolean relinked, byte removedBalance, byte side) {
+			this.rebalancePath(finger);
+		}
+
+		private void rebalancePath(Finger finger) {
+			for (int level = finger.depth() - 1; level >= 0; level--) {
+				Node node = finger.node(level);
+				int leftWeight = node.rank + 1;
+				int rightWeight = finger.size(level) - node.rank;
+				if (rightWeight > DELTA * leftWeight) {
+					this.rotateHeavyChild(finger, level, false, rightWeight - 1);
+				} else if (leftWeight > DELTA * rightWeight) {
+					this.rotateHeavyChild(finger, level, true, leftWeight - 1);
+				}
+			}
+		}
+
+		private void rotateHeavyChild(Finger finger, int level, boolean left, int childSize) {
+			Node child = left ? finger.node(level).left : finger.node(level).right;
+			int innerWeight = left ? childSize - child.rank : child.rank + 1;
+			int outerWeight = left ? child.rank + 1 : childSize - child.rank;
+			if (innerWeight >= GAMMA * outerWeight) {
+				finger.truncate(level + 1);
+				finger.descend(left);
+				child = finger.rotate(level + 1, left ? child.right : child.left);
+			}
+			finger.rotate(level, child);
+		}
+
+		String problem(Node root) {
+			StringBuilder problem = new StringBuilder();
+			size(root, problem);
+			return problem.length() == 0 ? null : problem.toString();
+		}
+
+		private static int size(Node node, StringBuilder problem) {
+			if (node == Node.NULL_NODE) {
+				return 0;
+			}
+			int left = size(node.left, problem);
+			int right = size(node.right, problem);
+			if ((left + 1 > DELTA * (right + 1) || right + 1 > DELTA * (left + 1)) && problem.length() == 0) {
+				problem.append("unbalanced weights under " + node.data);
+			}
+			return left + right + 1;
+		}
+	}
+
+	/**
+	 * Treaps. Node.balance is unused; priorities are in TreapNodes.
+	 */
+	static final class Treap extends Balancer {
+
+		static final class TreapNode extends Node {
+			int priority;
+
+			TreapNode(char ch, int priority) {
+				super(ch);
+				this.priority = priority;
+			}
+		}
+
+		private final Random random;
+
+		Treap(long seed) {
+			this.random = new Random(seed);
+		}
+
+		private static int priority(Node node) {
+			return ((TreapNode) node).priority;
+		}
+
+		Node newNode(char ch) {
+			return new TreapNode(ch, this.random.nextInt());
+		}
+
+		void copyState(Node from, Node to) {
+			((TreapNode) to).priority = priority(from);
+		}
+
+		void writeState(Node node, DataOutput out) throws IOException {
+			out.writeInt(priority(node));
+		}
+
+		void readState(Node node, DataInput in) throws IOException {
+			((TreapNode) node).priority = in.readInt();
+		}
+
+		// The new node rises while its priority is higher than its parent's.
+		void afterInsert(Finger finger) {
+			int level = finger.depth() - 1;
+			Node node = finger.node(level);
+			while (level > 0 && priority(finger.node(level - 1)) < priority(node)) {
+				finger.rotate(level - 1, node);
+				level--;
+			}
+		}
+
+		// Unlinking a node with one child keeps the priorities in order. A
+		// successor moved into a deleted node's place sinks until they are.
+		void afterDelete(Finger finger, int level, boolean relinked, byte removedBalance, byte side) {
+			if (!relinked) {
+				return;
+			}
+			finger.truncate(level + 1);
+			Node node = finger.node(level);
+			while (true) {
+				Node child = node.left;
+				if (child == Node.NULL_NODE
+						|| (node.right != Node.NULL_NODE && priority(node.right) > priority(child))) {
+					child = node.right;
+				}
+				if (child == Node.NULL_NODE || priority(child) <= priority(node)) {
+					return;
+				}
+				boolean sinksLeft = node.right == child;
+				finger.rotate(level, child);
+				finger.descend(sinksLeft);
+				level++;
+			}
+		}
+
+		String problem(Node root) {
+			StringBuilder problem = new StringBuilder();
+			check(root, problem);
+			return problem.length() == 0 ? null : problem.toString();
+		}
+
+		private static void check(Node node, StringBuilder problem) {
+			if (node == Node.NULL_NODE || problem.length() > 0) {
+				return;
+			}
+			if (!(node instanceof TreapNode)) {
+				problem.append("no priority at " + node.data);
+				return;
+			}
+			if ((node.left != Node.NULL_NODE && priority(node.left) > priority(node))
+					|| (node.right != Node.NULL_NODE && priority(node.right) > priority(node))) {
+				problem.append("priorities out of order under " + node.data);
+				return;
+			}
+			check(node.left, problem);
+			check(node.right, problem);
+		}
+	}
+
+	/**
+	 * Splay trees. Node.balance is unused, since any shape will do. Every access
+	 * rotates the node it ended at up to the root, two levels at a time, the
+	 * way Sleator and Tarjan describe, so that the nodes on its path end up
+	 * about half as deep as they were.
+	 */
+	static final class Splay extends Balancer {
+
+		void afterInsert(Finger finger) {
+			this.splay(finger);
+		}
+
+		// The parent of the place a node was unlinked from is splayed, like the
+		// node an access ended at.
+		void afterDelete(Finger finger, int level, boolean relinked, byte removedBalance, byte side) {
+			if (finger.depth() > 0) {
+				this.splay(finger);
+			}
+		}
+
+		void afterGet(Finger finger) {
+			this.splay(finger);
+		}
+
+		private void splay(Finger finger) {
+			int level = finger.depth() - 1;
+			int fallbackDepth = finger.tree().splayFallbackDepth;
+			if (fallbackDepth > 0 && level > fallbackDepth) {
+				finger.tree().fallBackToAvl(finger.size(0));
+				return;
+			}
+			Node node = finger.node(level);
+			while (level >= 2) {
+				Node parent = finger.node(level - 1);
+				Node grandparent = finger.node(level - 2);
+				if (sideOf(grandparent, parent) == sideOf(parent, node)) {
+					// zig-zig: the parent goes up first
+					finger.rotate(level - 2, parent);
+					finger.rotate(level - 2, node);
+				} else {
+					finger.rotate(level - 1, node);
+					finger.rotate(level - 2, node);
+				}
+				level -= 2;
+			}
+			if (level == 1) {
+				finger.rotate(0, node);
+			}
+		}
+
+		// Any shape is a splay tree.
+		String problem(Node root) {
+			return null;
+		}
+	}
+}
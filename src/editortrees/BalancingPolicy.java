@@ -0,0 +1,55 @@
+package editortrees;
+
+/**
+ * How an EditTree keeps itself balanced, chosen when it is made with
+ * EditTree(BalancingPolicy). All of them but SPLAY keep the tree O(log n)
+ * deep. They differ in how much they restructure on adds and deletes, which
+ * totalRotationCount() shows, and in how deep the tree gets, which
+ * fastHeight() shows.
+ *
+ * @author Medhansh Khattar
+ */
+public enum BalancingPolicy {
+
+	/**
+	 * The default. Heights of siblings differ by at most one, so the tree is the
+	 * shallowest of these, but a delete can rotate at every level on its path.
+	 */
+	AVL,
+
+	/**
+	 * At most one rotation per add and three per delete, for a tree up to twice
+	 * as deep as it needs to be.
+	 */
+	RED_BLACK,
+
+	/**
+	 * Sizes of siblings differ by at most a factor of three. Needs nothing
+	 * stored in the nodes, since sizes follow from the ranks, and rotates rarely
+	 * once a tree is big, since one edit barely changes the sizes.
+	 */
+	WEIGHT_BALANCED,
+
+	/**
+	 * Each node gets a random priority and parents have higher priorities than
+	 * their children, so the shape is that of a random search tree no matter
+	 * what the edits are. About one rotation per add or delete on average.
+	 */
+	TREAP,
+
+	/**
+	 * Every get, add and delete rotates the node it reached up to the root, so
+	 * positions used recently are a few steps from the root, even after work
+	 * elsewhere in between, which the path the tree remembers for the last edit
+	 * doesn't help with. That costs several rotations per access, and it is
+	 * only O(log n) amortized: a single access can be O(n) deep, for instance
+	 * the first read of the start of a document that was only appended to.
+	 * EditTree.setSplayFallbackDepth() rebuilds the tree as an AVL tree the
+	 * first time an access goes deeper than a given limit.
+	 *
+	 * Since a SPLAY tree can be as deep as it is big, the code that walks a
+	 * whole tree loops with a stack of its own instead of recursing, which
+	 * could overflow the thread's stack.
+	 */
+	SPLAY
+}
@@ -0,0 +1,125 @@
+package editortrees;
+
+import java.util.Random;
+
+/**
+ * Compares the BalancingPolicies on the same workloads, printing how many
+ * rotations each needed per operation, how deep the tree ended up and how long
+ * the operations took. Each workload starts from a document of the given size
+ * built by appending. The last four workloads only touch a small part of the
+ * document at a time, which is what SPLAY is for; it is also measured with a
+ * fallback depth, as "SPLAY/fallback".
+ *
+ * Run with the document sizes (in characters) to measure as arguments, e.g.
+ * java editortrees.BalancingPolicyBenchmark 100000 1000000
+ *
+ * @author Medhansh Khattar
+ */
+public class BalancingPolicyBenchmark {
+
+	private static final int[] DEFAULT_SIZES = { 1 << 16, 1 << 20 };
+	private static final int OPERATIONS = 1 << 18;
+	private static final String[] WORKLOADS = { "random adds", "typing", "delete-heavy", "hot region",
+			"two regions", "log tail", "cursor" };
+	private static final int HOT_REGION = 1000;
+	private static final int FALLBACK_DEPTH = 100;
+
+	public static void main(String[] args) {
+		int[] sizes = DEFAULT_SIZES;
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		System.out.printf("%16s %10s %14s %16s %8s %10s%n", "policy", "size", "workload", "rotations/op", "height",
+				"ns/op");
+		for (int size : sizes) {
+			for (String workload : WORKLOADS) {
+				for (BalancingPolicy policy : BalancingPolicy.values()) {
+					measure(policy, 0, size, workload);
+				}
+				measure(BalancingPolicy.SPLAY, FALLBACK_DEPTH, size, workload);
+			}
+		}
+	}
+
+	private static void measure(BalancingPolicy policy, int fallbackDepth, int size, String workload) {
+		EditTree t = new EditTree(policy);
+		for (int i = 0; i < size; i++) {
+			t.add((char) ('a' + i % 26));
+		}
+		if (fallbackDepth > 0) {
+			t.setSplayFallbackDepth(fallbackDepth);
+		}
+		int rotationsBefore = t.totalRotationCount();
+		Random random = new Random(1);
+		long start = System.nanoTime();
+		if (workload.equals("random adds")) {
+			for (int k = 0; k < OPERATIONS; k++) {
+				t.add('x', random.nextInt(t.size() + 1));
+			}
+		} else if (workload.equals("typing")) {
+			int cursor = 0;
+			for (int k = 0; k < OPERATIONS; k++) {
+				if (k % 64 == 0) {
+					cursor = random.nextInt(t.size() + 1);
+				}
+				t.add('x', cursor++);
+			}
+		} else if (workload.equals("delete-heavy")) {
+			// two deletes for every add, so the document shrinks
+			for (int k = 0; k < OPERATIONS; k++) {
+				if (k % 3 == 0 || t.size() == 0) {
+					t.add('x', random.nextInt(t.size() + 1));
+				} else {
+					t.delete(random.nextInt(t.size()));
+				}
+			}
+		} else if (workload.equals("hot region")) {
+			// 99 reads in a hot region for every one anywhere
+			int hot = random.nextInt(t.size() - HOT_REGION);
+			for (int k = 0; k < OPERATIONS; k++) {
+				t.get(k % 100 == 0 ? random.nextInt(t.size()) : hot + random.nextInt(HOT_REGION));
+			}
+		} else if (workload.equals("two regions")) {
+			// reads alternate between two hot regions far apart, like two views of
+			// one document
+			int first = random.nextInt(t.size() / 2 - HOT_REGION);
+			int second = t.size() / 2 + random.nextInt(t.size() / 2 - HOT_REGION);
+			for (int k = 0; k < OPERATIONS; k++) {
+				t.get((k % 2 == 0 ? first : second) + random.nextInt(HOT_REGION));
+			}
+		} else if (workload.equals("log tail")) {
+			// a line is appended, then the last few lines are read back
+			for (int k = 0; k < OPERATIONS; k++) {
+				if (k % 2 == 0) {
+					t.add('x');
+				} else {
+					t.get(t.size() - 1 - random.nextInt(4 * 80));
+				}
+			}
+		} else {
+			// reads and edits within a screen of a cursor that moves now and then
+			int cursor = random.nextInt(t.size());
+			for (int k = 0; k < OPERATIONS; k++) {
+				if (k % 1000 == 0) {
+					cursor = Math.max(0, Math.min(t.size() - 1, cursor + random.nextInt(20000) - 10000));
+				}
+				int pos = Math.min(t.size() - 1, cursor + random.nextInt(2000));
+				if (k % 4 == 0) {
+					t.add('x', pos);
+				} else if (k % 4 == 1) {
+					t.delete(pos);
+				} else {
+					t.get(pos);
+				}
+			}
+		}
+		long time = System.nanoTime() - start;
+		String name = fallbackDepth > 0 ? policy + "/fallback" : policy.toString();
+		System.out.printf("%16s %10d %14s %16.3f %8d %10.1f%n", name, size, workload,
+				(double) (t.totalRotationCount() - rotationsBefore) / OPERATIONS, t.fastHeight(),
+				(double) time / OPERATIONS);
+	}
+}
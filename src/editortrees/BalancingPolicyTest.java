@@ -0,0 +1,384 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests that every BalancingPolicy keeps the text, ranks and its own invariant
+ * right, and the tree shallow.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BalancingPolicyTest {
+
+	private static final BalancingPolicy[] OTHER_POLICIES = { BalancingPolicy.RED_BLACK,
+			BalancingPolicy.WEIGHT_BALANCED, BalancingPolicy.TREAP };
+
+	private static int log2(int n) {
+		return 31 - Integer.numberOfLeadingZeros(n);
+	}
+
+	@Test
+	public void test101DefaultIsAvl() {
+		assertEquals(BalancingPolicy.AVL, new EditTree().getBalancingPolicy());
+		assertEquals(BalancingPolicy.AVL, new EditTree('a').getBalancingPolicy());
+		EditTree t = new EditTree(BalancingPolicy.AVL);
+		for (int i = 0; i < 1000; i++) {
+			t.add('a');
+		}
+		assertEquals(9, t.fastHeight());
+	}
+
+	@Test
+	public void test102AppendStaysShallow() {
+		for (BalancingPolicy policy : OTHER_POLICIES) {
+			EditTree t = new EditTree(policy);
+			StringBuilder expected = new StringBuilder();
+			for (int i = 0; i < 10000; i++) {
+				char ch = (char) ('a' + i % 26);
+				t.add(ch);
+				expected.append(ch);
+			}
+			assertEquals(policy.name(), expected.toString(), t.toString());
+			assertTrue(policy.name(), t.invariantsHold());
+			assertTrue(policy.name(), t.balanceCodesAreCorrect());
+			assertTrue(policy.name() + " height " + t.fastHeight(), t.fastHeight() <= 3 * log2(10000));
+			assertEquals(t.slowHeight(), t.fastHeight());
+			assertTrue(policy.name(), t.totalRotationCount() > 0);
+		}
+	}
+
+	@Test
+	public void test103RandomEditsMatchStringBuilder() {
+		for (BalancingPolicy policy : OTHER_POLICIES) {
+			Random random = new Random(17);
+			EditTree t = new EditTree(policy);
+			StringBuilder expected = new StringBuilder();
+			for (int k = 0; k < 20000; k++) {
+				if (expected.length() > 0 && random.nextInt(5) < 2) {
+					int pos = random.nextInt(expected.length());
+					assertEquals(expected.charAt(pos), t.delete(pos));
+					expected.deleteCharAt(pos);
+				} else {
+					int pos = random.nextInt(expected.length() + 1);
+					char ch = (char) ('a' + random.nextInt(26));
+					t.add(ch, pos);
+					expected.insert(pos, ch);
+				}
+				if (k % 1000 == 0) {
+					assertTrue(policy.name(), t.invariantsHold());
+				}
+			}
+			assertEquals(policy.name(), expected.toString(), t.toString());
+			assertTrue(policy.name(), t.invariantsHold());
+			assertTrue(policy.name(), t.fastHeight() <= 3 * log2(t.size()));
+		}
+	}
+
+	@Test
+	public void test104DeleteEverything() {
+		for (BalancingPolicy policy : OTHER_POLICIES) {
+			Random random = new Random(23);
+			EditTree t = new EditTree(policy);
+			for (int i = 0; i < 3000; i++) {
+				t.add((char) ('a' + i % 26), random.nextInt(t.size() + 1));
+			}
+			StringBuilder expected = new StringBuilder(t.toString());
+			while (t.size() > 0) {
+				int pos = random.nextInt(t.size());
+				assertEquals(expected.charAt(pos), t.delete(pos));
+				expected.deleteCharAt(pos);
+				if (t.size() % 300 == 0) {
+					assertTrue(policy.name(), t.invariantsHold());
+				}
+			}
+			assertEquals("", t.toString());
+			t.add('z');
+			assertEquals("z", t.toString());
+			assertTrue(policy.name(), t.invariantsHold());
+		}
+	}
+
+	@Test
+	public void test105SampledAuditingWorksForEveryPolicy() {
+		for (BalancingPolicy policy : OTHER_POLICIES) {
+			EditTree t = new EditTree(policy);
+			t.setPathsAuditedPerEdit(2);
+			for (int i = 0; i < 2000; i++) {
+				t.add('x', i / 2);
+			}
+			for (int i = 0; i < 1000; i++) {
+				t.delete(i % t.size());
+			}
+			assertEquals(1000, t.size());
+		}
+	}
+
+	@Test
+	public void test106CopiesAndSnapshotsKeepThePolicy() throws IOException {
+		for (BalancingPolicy policy : OTHER_POLICIES) {
+			Random random = new Random(29);
+			EditTree t = new EditTree(policy);
+			for (int i = 0; i < 2000; i++) {
+				t.add((char) ('a' + random.nextInt(26)), random.nextInt(t.size() + 1));
+			}
+			EditTree copy = new EditTree(t);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			t.writeSnapshot(bytes);
+			EditTree read = EditTree.readSnapshot(new ByteArrayInputStream(bytes.toByteArray()));
+			for (EditTree other : new EditTree[] { copy, read }) {
+				assertEquals(policy, other.getBalancingPolicy());
+				assertEquals(t.toString(), other.toString());
+				assertEquals(t.toDebugString(), other.toDebugString());
+				assertTrue(policy.name(), other.invariantsHold());
+				// and they keep balancing the same way
+				for (int i = 0; i < 1000; i++) {
+					other.add('q', random.nextInt(other.size() + 1));
+					other.delete(random.nextInt(other.size()));
+				}
+				assertTrue(policy.name(), other.invariantsHold());
+			}
+		}
+	}
+
+	@Test
+	public void test107ListenersHearEveryRotation() {
+		for (BalancingPolicy policy : OTHER_POLICIES) {
+			EditTree t = new EditTree(policy);
+			final int[] rotations = new int[1];
+			t.addChangeListener(new EditTreeListener() {
+				public void inserted(EditTree tree, int pos, char ch) {
+					// not counted
+				}
+
+				public void deleted(EditTree tree, int pos, char ch) {
+					// not counted
+				}
+
+				public void rotated(EditTree tree, int from, int to, boolean doubleRotation) {
+					// rotations are reported before the size changes
+					assertTrue(0 <= from && from < to && to <= tree.size() + 1);
+					rotations[0]++;
+				}
+			});
+			for (int i = 0; i < 500; i++) {
+				t.add('a', i / 3);
+			}
+			for (int i = 0; i < 400; i++) {
+				t.delete(i % 7 % t.size());
+			}
+			assertEquals(policy.name(), t.totalRotationCount(), rotations[0]);
+		}
+	}
+
+	@Test
+	public void test108RedBlackRotatesAtMostThreeTimesPerDelete() {
+		EditTree t = new EditTree(BalancingPolicy.RED_BLACK);
+		for (int i = 0; i < 5000; i++) {
+			t.add('a');
+		}
+		Random random = new Random(31);
+		for (int i = 0; i < 4000; i++) {
+			int before = t.totalRotationCount();
+			t.delete(random.nextInt(t.size()));
+			assertTrue(t.totalRotationCount() - before <= 3);
+		}
+		assertTrue(t.invariantsHold());
+	}
+
+	@Test
+	public void test109SplayEditsAndReadsMatchStringBuilder() {
+		Random random = new Random(37);
+		EditTree t = new EditTree(BalancingPolicy.SPLAY);
+		StringBuilder expected = new StringBuilder();
+		int cursor = 0;
+		for (int k = 0; k < 30000; k++) {
+			if (k % 50 == 0) {
+				cursor = random.nextInt(expected.length() + 1);
+			}
+			int op = random.nextInt(6);
+			if (op == 0 && cursor > 0) {
+				cursor--;
+				assertEquals(expected.charAt(cursor), t.delete(cursor));
+				expected.deleteCharAt(cursor);
+			} else if (op == 1 && expected.length() > 0) {
+				int pos = random.nextInt(expected.length());
+				assertEquals(expected.charAt(pos), t.get(pos));
+			} else {
+				char ch = (char) ('a' + random.nextInt(26));
+				t.add(ch, cursor);
+				expected.insert(cursor, ch);
+				cursor++;
+			}
+			if (k % 1000 == 0) {
+				assertTrue(t.invariantsHold());
+			}
+		}
+		assertEquals(expected.toString(), t.toString());
+		assertEquals(expected.substring(100, 300), t.get(100, 200));
+		assertTrue(t.invariantsHold());
+		assertEquals(BalancingPolicy.SPLAY, t.getBalancingPolicy());
+	}
+
+	@Test
+	public void test110SplayMovesWhatWasUsedToTheRoot() {
+		EditTree t = new EditTree(BalancingPolicy.SPLAY);
+		for (int i = 0; i < 1000; i++) {
+			t.add((char) ('a' + i % 26), i / 2);
+		}
+		String text = t.toString();
+		int[] positions = { 0, 999, 500, 37, 38 };
+		for (int pos : positions) {
+			assertEquals(text.charAt(pos), t.get(pos));
+			assertEquals(pos, t.root.rank);
+		}
+		t.add('!', 600);
+		assertEquals('!', t.root.data);
+		t.delete(600);
+		assertEquals(text, t.toString());
+		assertTrue(t.invariantsHold());
+	}
+
+	@Test
+	public void test111AppendingLeavesAPathThatReadingShortens() {
+		EditTree t = new EditTree(BalancingPolicy.SPLAY);
+		for (int i = 0; i < 5000; i++) {
+			t.add('a');
+		}
+		assertEquals(4999, t.fastHeight());
+		int rotations = t.totalRotationCount();
+		t.get(0);
+		assertTrue(t.fastHeight() < 2600);
+		assertTrue(t.totalRotationCount() - rotations >= 4999);
+		assertEquals(BalancingPolicy.SPLAY, t.getBalancingPolicy());
+	}
+
+	@Test
+	public void test112SplayFallsBackToAvl() {
+		EditTree t = new EditTree(BalancingPolicy.SPLAY);
+		t.setSplayFallbackDepth(40);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			char ch = (char) ('a' + i % 26);
+			t.add(ch);
+			expected.append(ch);
+		}
+		// hot reads near the end don't go deep
+		for (int i = 0; i < 100; i++) {
+			assertEquals(expected.charAt(4990 + i % 10), t.get(4990 + i % 10));
+		}
+		assertEquals(BalancingPolicy.SPLAY, t.getBalancingPolicy());
+		assertEquals('a', t.get(0));
+		assertEquals(BalancingPolicy.AVL, t.getBalancingPolicy());
+		assertTrue(t.balanceCodesAreCorrect());
+		assertTrue(t.ranksMatchLeftSubtreeSize());
+		assertTrue(t.invariantsHold());
+		assertEquals(12, t.fastHeight());
+		assertEquals(t.slowHeight(), t.fastHeight());
+		assertEquals(expected.toString(), t.toString());
+		Random random = new Random(41);
+		for (int i = 0; i < 2000; i++) {
+			int pos = random.nextInt(t.size());
+			assertEquals(expected.charAt(pos), t.delete(pos));
+			expected.deleteCharAt(pos);
+			t.add('z', pos);
+			expected.insert(pos, 'z');
+		}
+		assertEquals(expected.toString(), t.toString());
+		assertTrue(t.invariantsHold());
+		try {
+			t.setSplayFallbackDepth(40);
+			fail("Did not throw IllegalStateException");
+		} catch (IllegalStateException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void test113SplayFallbackInTheMiddleOfAnEdit() {
+		for (int k = 0; k < 2; k++) {
+			EditTree t = new EditTree(BalancingPolicy.SPLAY);
+			for (int i = 0; i < 3000; i++) {
+				t.add('\u00e9');
+			}
+			t.setSplayFallbackDepth(20);
+			if (k == 0) {
+				t.add('x', 1);
+			} else {
+				assertEquals('\u00e9', t.delete(1));
+			}
+			assertEquals(BalancingPolicy.AVL, t.getBalancingPolicy());
+			assertEquals(k == 0 ? 3001 : 2999, t.size());
+			assertEquals(2 * t.size() - (k == 0 ? 1 : 0), t.utf8Length());
+			assertTrue(t.invariantsHold());
+			assertEquals(k == 0 ? 'x' : '\u00e9', t.get(1));
+		}
+	}
+
+	@Test
+	public void test114EachTreeCountsItsOwnRotations() {
+		for (BalancingPolicy policy : BalancingPolicy.values()) {
+			EditTree first = new EditTree(policy);
+			for (int i = 0; i < 200; i++) {
+				first.add('a');
+			}
+			int rotations = first.totalRotationCount();
+			assertTrue(policy.name(), rotations > 0);
+			EditTree second = new EditTree(policy);
+			assertEquals(0, second.totalRotationCount());
+			for (int i = 0; i < 200; i++) {
+				second.add('b', 0);
+			}
+			new EditTree(first);
+			assertEquals(policy.name(), rotations, first.totalRotationCount());
+			assertTrue(policy.name(), second.totalRotationCount() > 0);
+		}
+	}
+
+	@Test
+	public void test115WholeTreeMethodsWorkOnAPathAsDeepAsTheTree() throws IOException {
+		EditTree t = new EditTree(BalancingPolicy.SPLAY);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 200000; i++) {
+			char ch = i % 1000 == 0 ? '\u00e9' : (char) ('a' + i % 26);
+			t.add(ch);
+			expected.append(ch);
+		}
+		assertEquals(199999, t.fastHeight());
+		String text = expected.toString();
+		assertEquals(text, t.toString());
+		assertTrue(t.invariantsHold());
+		assertTrue(t.ranksMatchLeftSubtreeSize());
+		assertTrue(t.balanceCodesAreCorrect());
+		assertEquals(200000, t.toRankString().split(",").length);
+		assertEquals(200000, t.toDebugString().split(",").length);
+		assertEquals(3, t.codePointOffsetToCharOffset(3));
+		assertEquals(199999, t.charOffsetToCodePointOffset(199999));
+		assertEquals(200199, t.charIndexToByteOffset(199999));
+		assertEquals(199999, t.byteOffsetToCharIndex(200199));
+		EditTree copy = new EditTree(t);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		t.writeSnapshot(bytes);
+		EditTree read = EditTree.readSnapshot(new ByteArrayInputStream(bytes.toByteArray()));
+		new EditTraceRecorder(t, new ByteArrayOutputStream()).close();
+		for (EditTree other : new EditTree[] { copy, read }) {
+			assertEquals(BalancingPolicy.SPLAY, other.getBalancingPolicy());
+			assertEquals(199999, other.fastHeight());
+			assertEquals(text, other.toString());
+			assertTrue(other.invariantsHold());
+		}
+		// none of that splayed
+		assertEquals(199999, t.fastHeight());
+	}
+}
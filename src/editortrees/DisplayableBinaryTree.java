@@ -7,13 +7,19 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import javax.swing.JComponent;
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /* dependencies DisplayableTree:
  * 	Node:
@@ -71,6 +77,7 @@ public class DisplayableBinaryTree extends JComponent {
 	private double nodeY;
 	private double angle;
 	private boolean goingCrazy;
+	private Timer crazyTimer; // only while goingCrazy
 
 	/**
 	 * Constructs a new displayable binary tree, set to default to the given window
@@ -88,20 +95,51 @@ public class DisplayableBinaryTree extends JComponent {
 		// makes the size of the nodes oscillate
 		this.goingCrazy = Math.random() < 0.05;
 		this.show(visable);
-		Runnable repainter = new Runnable() {
-			@Override
-			public void run() {
-				try {
-					while (true) {
-						Thread.sleep(10);
-						repaint();
-					}
-				} catch (InterruptedException exception) {
-					// Reports interrupt
+		this.tree.addChangeListener(this.repainter);
+		if (this.goingCrazy) {
+			// the oscillation is the only thing repainted without a change
+			this.crazyTimer = new Timer(10, new ActionListener() {
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					repaint();
 				}
-			}
-		};
-		new Thread(repainter).start();
+			});
+			this.crazyTimer.start();
+		}
+	}
+
+	// Repaints only when the tree changes. A burst of changes, like typing or
+	// a loop of adds, schedules a single repaint, which happens once the event
+	// dispatch thread gets to it and shows the tree as it is by then.
+	private final AtomicBoolean repaintPending = new AtomicBoolean();
+	private final Runnable repaintNow = new Runnable() {
+		@Override
+		public void run() {
+			repaintPending.set(false);
+			repaint();
+		}
+	};
+	private final EditTreeListener repainter = new EditTreeListener() {
+		@Override
+		public void inserted(EditTree changed, int pos, char ch) {
+			scheduleRepaint();
+		}
+
+		@Override
+		public void deleted(EditTree changed, int pos, char ch) {
+			scheduleRepaint();
+		}
+
+		@Override
+		public void rotated(EditTree changed, int from, int to, boolean doubleRotation) {
+			scheduleRepaint();
+		}
+	};
+
+	private void scheduleRepaint() {
+		if (this.repaintPending.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(this.repaintNow);
+		}
 	}
 
 	public void show(boolean visable) {
@@ -123,6 +161,10 @@ public class DisplayableBinaryTree extends JComponent {
 	}
 
 	public void close() {
+		this.tree.removeChangeListener(this.repainter);
+		if (this.crazyTimer != null) {
+			this.crazyTimer.stop();
+		}
 		this.frame.dispose();
 	}
 
@@ -203,7 +245,7 @@ public class DisplayableBinaryTree extends JComponent {
 		g2.fill(new Rectangle2D.Double(this.width - 20, 80, 40, 5));
 		g2.fill(new Rectangle2D.Double(this.width - 25, 90, 50, 5));
 		// // RAISE THE BAR ^^^^^
-		DisplayableNodeWrapper current = this.tree.root.displayableNodeWrapper;
+		DisplayableNodeWrapper current = this.tree.root.getDisplayableNodeWrapper();
 		// CURRENT.POINT = THE CENTER POINT, NOT THE UPPER LEFT CORNER
 		this.paintHelper(g2, current, this.nodeY);
 		this.lineHelper(g2, current);
@@ -9,8 +9,8 @@ import java.awt.geom.Rectangle2D;
 /*
  * REQUIRES:
  * node.rank
- * node.balance
- * node.balance.toString()
+ * node.getBalance()
+ * node.getBalance().toString()
  * node.data
  */
 
@@ -42,7 +42,7 @@ public class DisplayableNodeWrapper {
 	 */
 	public DisplayableNodeWrapper getLeft() {
 		if (this.node.left != Node.NULL_NODE) {
-			return this.node.left.displayableNodeWrapper;
+			return this.node.left.getDisplayableNodeWrapper();
 		}
 		return null;
 	}
@@ -53,7 +53,7 @@ public class DisplayableNodeWrapper {
 	 */
 	public DisplayableNodeWrapper getRight() {
 		if (this.node.right != Node.NULL_NODE) {
-			return this.node.right.displayableNodeWrapper;
+			return this.node.right.getDisplayableNodeWrapper();
 		}
 		return null;
 	}
@@ -63,7 +63,7 @@ public class DisplayableNodeWrapper {
 	 * @return
 	 */
 	public DisplayableNodeWrapper getParent() {
-		return this.node.getParent().displayableNodeWrapper;
+		return this.node.getParent().getDisplayableNodeWrapper();
 	}
 	
 	public Node getNode() {
@@ -136,13 +136,7 @@ public class DisplayableNodeWrapper {
 		g2.drawString(rank, upperLeftX, upperLeftY);
 		// System.out.println(this.balance);
 
-		String balance;
-		if (this.node.balance == null) {
-			// System.out.println("bad");
-			balance = "null";
-		} else {
-			balance = this.node.balance.toString();
-		}
+		String balance = this.node.getBalance().toString();
 		bounds = g2.getFontMetrics().getStringBounds(balance, g2);
 		upperLeftX = (int) (this.point.x - bounds.getWidth() / 2);
 		upperLeftY = (int) (this.point.y + 1 * bounds.getHeight() / 4); // don't know why this 1/3 works so good
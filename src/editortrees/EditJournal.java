@@ -0,0 +1,391 @@
+package editortrees;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Makes the edits to an EditTree durable without saving the whole document
+ * after each one. Every add and delete is appended to a journal file as a small
+ * checksummed record before it is applied, and open() rebuilds the tree by
+ * replaying the journal onto the last snapshot of the document.
+ *
+ * Records are buffered and written together by commit(), which forces them to
+ * disk once for the whole group. So a crash loses at most the edits since the
+ * last commit, and each edit costs O(1) I/O. commit() is called automatically
+ * once groupSize records are waiting.
+ *
+ * Once the journal has as many records as the document has characters,
+ * commit() compacts: it writes a new snapshot and empties the journal. That
+ * keeps replay time proportional to the document, and since compaction costs
+ * O(n) only after n edits, edits stay O(1) I/O amortized.
+ *
+ * The snapshot is the tree as written by EditTree.writeSnapshot(), so open()
+ * gets back its exact shape in O(n), without adding the characters one by one.
+ *
+ * The snapshot and the journal both start with a generation number, which
+ * compaction increments. A journal whose generation doesn't match the snapshot
+ * was already folded into it, by a compaction that crashed before emptying the
+ * journal, so open() ignores it. Compaction writes the new snapshot to a
+ * temporary file, moves it over the old one atomically and forces the
+ * directory, and only then empties the journal and writes its new header, so
+ * a crash at any point leaves either the old snapshot with its journal or the
+ * new snapshot. A temporary file left by a crash is deleted by open().
+ *
+ * @author Medhansh Khattar
+ */
+public class EditJournal implements Closeable {
+
+	public static final int DEFAULT_GROUP_SIZE = 64;
+	private static final int MIN_RECORDS_BEFORE_COMPACTION = 4096;
+
+	private static final int JOURNAL_MAGIC = 0x45444a31; // "EDJ1"
+	private static final int SNAPSHOT_MAGIC = 0x45445331; // "EDS1"
+	private static final int HEADER_SIZE = 12; // magic and generation
+	private static final byte ADD = 1;
+	private static final byte DELETE = 2;
+	// op, position, character and the CRC32 of those, as an int
+	private static final int RECORD_SIZE = 11;
+
+	private final EditTree tree;
+	private final File snapshotFile;
+	private final RandomAccessFile journalFile;
+	private final FileChannel journal;
+	private final ByteBuffer pending;
+	private final CRC32 crc = new CRC32();
+	private long generation;
+	private int journaledRecords; // committed since the last compaction
+	// For tests: compact() throws as if the process died just before this
+	// step of it, 1 to 5, leaving the files as they are. 0 for never.
+	int crashBeforeStep;
+
+	private EditJournal(EditTree tree, File snapshotFile, RandomAccessFile journalFile, long generation,
+			int journaledRecords, int groupSize) {
+		this.tree = tree;
+		this.snapshotFile = snapshotFile;
+		this.journalFile = journalFile;
+		this.journal = journalFile.getChannel();
+		this.pending = ByteBuffer.allocate(groupSize * RECORD_SIZE);
+		this.generation = generation;
+		this.journaledRecords = journaledRecords;
+	}
+
+	/**
+	 * Same as open(snapshotFile, journalFile, DEFAULT_GROUP_SIZE).
+	 */
+	public static EditJournal open(File snapshotFile, File journalFile) throws IOException {
+		return open(snapshotFile, journalFile, DEFAULT_GROUP_SIZE);
+	}
+
+	/**
+	 * Recovers the document from the snapshot and the journal, either of which
+	 * may be missing for a new document. A record torn by a crash while it was
+	 * being written ends the replay, and is cut off the journal.
+	 *
+	 * @param groupSize number of records to buffer before committing them
+	 * @return a journal whose tree() is the recovered document
+	 * @throws IOException if the files can't be read or written, or the snapshot
+	 *                     is corrupt
+	 */
+	public static EditJournal open(File snapshotFile, File journalFile, int groupSize) throws IOException {
+		if (groupSize < 1) {
+			throw new IllegalArgumentException();
+		}
+		EditTree tree = new EditTree();
+		long[] generation = { 0 };
+		// from a compaction that crashed before moving it into place, so the
+		// snapshot and the journal still have everything
+		tempFile(snapshotFile).delete();
+		if (snapshotFile.exists()) {
+			tree = readSnapshot(snapshotFile, generation);
+		}
+		RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+		try {
+			FileChannel channel = file.getChannel();
+			int records = 0;
+			EditTreeEvents.BulkLoad event = EditTreeEvents.beginBulkLoad();
+			long end = replay(channel, generation[0], tree);
+			EditTreeEvents.endBulkLoad(event, "journal", tree.size());
+			if (end < 0) {
+				end = writeHeader(channel, generation[0]);
+			} else {
+				records = (int) ((end - HEADER_SIZE) / RECORD_SIZE);
+			}
+			channel.truncate(end);
+			channel.position(end);
+			channel.force(true);
+			return new EditJournal(tree, snapshotFile, file, generation[0], records, groupSize);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the document. Edit it through this journal only, or the edits
+	 *         won't be recovered.
+	 */
+	public EditTree tree() {
+		return this.tree;
+	}
+
+	/**
+	 * Journals and then applies tree().add(ch, pos).
+	 *
+	 * @throws IndexOutOfBoundsException if pos is negative or too large
+	 */
+	public void add(char ch, int pos) throws IOException {
+		if (pos < 0 || pos > this.tree.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		this.log(ADD, pos, ch);
+		this.tree.add(ch, pos);
+		this.commitIfGroupIsFull();
+	}
+
+	public void add(char ch) throws IOException {
+		this.add(ch, this.tree.size());
+	}
+
+	/**
+	 * Journals and then applies tree().delete(pos).
+	 *
+	 * @return the deleted character
+	 * @throws IndexOutOfBoundsException if pos is negative or not less than the
+	 *                                   size of the tree
+	 */
+	public char delete(int pos) throws IOException {
+		if (pos < 0 || pos >= this.tree.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		this.log(DELETE, pos, '\0');
+		char deleted = this.tree.delete(pos);
+		this.commitIfGroupIsFull();
+		return deleted;
+	}
+
+	/**
+	 * Writes the buffered records and forces them to disk, after which every
+	 * edit so far survives a crash. Compacts if the journal has grown as big as
+	 * the document.
+	 */
+	public void commit() throws IOException {
+		this.writePending();
+		if (this.journaledRecords >= Math.max(MIN_RECORDS_BEFORE_COMPACTION, this.tree.size())) {
+			this.compact();
+		}
+	}
+
+	private void writePending() throws IOException {
+		if (this.pending.position() == 0) {
+			return;
+		}
+		this.journaledRecords += this.pending.position() / RECORD_SIZE;
+		this.pending.flip();
+		while (this.pending.hasRemaining()) {
+			this.journal.write(this.pending);
+		}
+		this.pending.clear();
+		this.journal.force(false);
+	}
+
+	/**
+	 * Writes the whole document as a new snapshot and empties the journal.
+	 */
+	public void compact() throws IOException {
+		this.writePending();
+		long next = this.generation + 1;
+		File temp = tempFile(this.snapshotFile);
+		writeSnapshot(temp, this.tree, next);
+		this.crashIfAtStep(1);
+		Files.move(temp.toPath(), this.snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+		this.crashIfAtStep(2);
+		// The move has to be on disk before the journal is emptied, or a crash
+		// could leave the old snapshot next to a journal of the new generation,
+		// which open() would ignore.
+		forceDirectory(this.snapshotFile.getAbsoluteFile().getParentFile());
+		this.crashIfAtStep(3);
+		this.journal.truncate(0);
+		this.crashIfAtStep(4);
+		writeHeader(this.journal, next);
+		this.crashIfAtStep(5);
+		this.journal.force(true);
+		this.generation = next;
+		this.journaledRecords = 0;
+	}
+
+	private void crashIfAtStep(int step) throws IOException {
+		if (step == this.crashBeforeStep) {
+			throw new IOException("Crashed before step " + step + " of compacting");
+		}
+	}
+
+	private static File tempFile(File snapshotFile) {
+		return new File(snapshotFile.getPath() + ".tmp");
+	}
+
+	// Forces a directory's entries, like the one a move changed, to disk. Some
+	// platforms, like Windows, can't open a directory at all, and the move is
+	// all there is to do there.
+	private static void forceDirectory(File directory) throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+		} catch (IOException e) {
+			return;
+		}
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Commits and closes the journal.
+	 */
+	public void close() throws IOException {
+		try {
+			this.commit();
+		} finally {
+			this.journalFile.close();
+		}
+	}
+
+	// Only called after the logged edit was applied, since committing may
+	// compact, and the snapshot has to include every journaled edit.
+	private void commitIfGroupIsFull() throws IOException {
+		if (!this.pending.hasRemaining()) {
+			this.commit();
+		}
+	}
+
+	private void log(byte op, int pos, char ch) {
+		int start = this.pending.position();
+		this.pending.put(op).putInt(pos).putChar(ch);
+		this.crc.reset();
+		this.crc.update(this.pending.array(), start, RECORD_SIZE - 4);
+		this.pending.putInt((int) this.crc.getValue());
+	}
+
+	private static long writeHeader(FileChannel channel, long generation) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(JOURNAL_MAGIC).putLong(generation).flip();
+		channel.position(0);
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+		return HEADER_SIZE;
+	}
+
+	// Applies the journal's complete, intact records to tree. Returns the offset
+	// just past the last of them, or -1 if the journal is empty or belongs to
+	// another generation.
+	private static long replay(FileChannel channel, long generation, EditTree tree) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+		channel.position(0);
+		readFully(channel, buffer);
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != JOURNAL_MAGIC || buffer.getLong() != generation) {
+			return -1;
+		}
+		long end = HEADER_SIZE;
+		CRC32 crc = new CRC32();
+		while (true) {
+			if (buffer.remaining() < RECORD_SIZE) {
+				buffer.compact();
+				readFully(channel, buffer);
+				if (buffer.remaining() < RECORD_SIZE) {
+					return end;
+				}
+			}
+			int start = buffer.position();
+			byte op = buffer.get();
+			int pos = buffer.getInt();
+			char ch = buffer.getChar();
+			crc.reset();
+			crc.update(buffer.array(), start, RECORD_SIZE - 4);
+			if (buffer.getInt() != (int) crc.getValue() || !isValid(op, pos, tree)) {
+				return end;
+			}
+			if (op == ADD) {
+				tree.add(ch, pos);
+			} else {
+				tree.delete(pos);
+			}
+			end += RECORD_SIZE;
+		}
+	}
+
+	private static boolean isValid(byte op, int pos, EditTree tree) {
+		if (op == ADD) {
+			return pos >= 0 && pos <= tree.size();
+		}
+		return op == DELETE && pos >= 0 && pos < tree.size();
+	}
+
+	// Fills buffer from the channel's position until it is full or at the end
+	// of the file, and flips it for reading.
+	private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			// keep reading
+		}
+		buffer.flip();
+	}
+
+	// The snapshot file is a header, the tree as written by
+	// EditTree.writeSnapshot() and the CRC32 of everything before it.
+	private static void writeSnapshot(File file, EditTree tree, long generation) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(out), new CRC32());
+			DataOutputStream data = new DataOutputStream(checked);
+			data.writeInt(SNAPSHOT_MAGIC);
+			data.writeLong(generation);
+			tree.writeSnapshot(data);
+			data.writeInt((int) checked.getChecksum().getValue());
+			data.flush();
+			out.getChannel().force(true);
+		} finally {
+			out.close();
+		}
+	}
+
+	// Returns the snapshot's tree and sets generation[0] to its generation.
+	private static EditTree readSnapshot(File file, long[] generation) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		byte[] bytes;
+		try {
+			if (in.length() > Integer.MAX_VALUE) {
+				throw new IOException("Corrupt snapshot " + file);
+			}
+			bytes = new byte[(int) in.length()];
+			in.readFully(bytes);
+		} finally {
+			in.close();
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		if (bytes.length < HEADER_SIZE + 4 || buffer.getInt() != SNAPSHOT_MAGIC) {
+			throw new IOException("Corrupt snapshot " + file);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 4);
+		if (buffer.getInt(bytes.length - 4) != (int) crc.getValue()) {
+			throw new IOException("Corrupt snapshot " + file);
+		}
+		generation[0] = buffer.getLong();
+		return EditTree.readSnapshot(new ByteArrayInputStream(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE - 4));
+	}
+}
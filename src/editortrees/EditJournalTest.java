@@ -0,0 +1,229 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for journaling edits and recovering them after a crash, which is
+ * simulated by reopening the files without closing the old journal.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditJournalTest {
+
+	private File snapshot;
+	private File journal;
+
+	@Before
+	public void makeFiles() throws IOException {
+		this.snapshot = File.createTempFile("edittree", ".snapshot");
+		this.journal = File.createTempFile("edittree", ".journal");
+		this.snapshot.delete();
+		this.journal.delete();
+	}
+
+	@After
+	public void deleteFiles() {
+		this.snapshot.delete();
+		this.journal.delete();
+		new File(this.snapshot.getPath() + ".tmp").delete();
+	}
+
+	private static void type(EditJournal j, String s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			j.add(s.charAt(i));
+		}
+	}
+
+	private static byte[] readAll(File f) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(f, "r");
+		byte[] bytes = new byte[(int) file.length()];
+		file.readFully(bytes);
+		file.close();
+		return bytes;
+	}
+
+	@Test
+	public void test101ReopenAfterClose() throws IOException {
+		EditJournal j = EditJournal.open(this.snapshot, this.journal);
+		type(j, "hello world");
+		j.delete(5);
+		j.add(',', 5);
+		j.add(' ', 6);
+		j.close();
+		EditJournal reopened = EditJournal.open(this.snapshot, this.journal);
+		assertEquals("hello, world", reopened.tree().toString());
+		assertTrue(reopened.tree().invariantsHold());
+		reopened.close();
+	}
+
+	@Test
+	public void test102CrashLosesOnlyUncommittedEdits() throws IOException {
+		EditJournal j = EditJournal.open(this.snapshot, this.journal, 1000);
+		type(j, "abc");
+		j.commit();
+		type(j, "def"); // never committed
+		EditJournal recovered = EditJournal.open(this.snapshot, this.journal);
+		assertEquals("abc", recovered.tree().toString());
+		recovered.close();
+		j.close();
+	}
+
+	@Test
+	public void test103GroupCommitsOnItsOwn() throws IOException {
+		EditJournal j = EditJournal.open(this.snapshot, this.journal, 4);
+		type(j, "abcdefghij");
+		EditJournal recovered = EditJournal.open(this.snapshot, this.journal);
+		assertEquals("abcdefgh", recovered.tree().toString());
+		recovered.close();
+		j.close();
+	}
+
+	@Test
+	public void test104TornRecordIsCutOff() throws IOException {
+		EditJournal j = EditJournal.open(this.snapshot, this.journal);
+		type(j, "abcd");
+		j.close();
+		long length = this.journal.length();
+		RandomAccessFile file = new RandomAccessFile(this.journal, "rw");
+		file.setLength(length - 3); // a crash in the middle of writing 'd'
+		file.close();
+		EditJournal recovered = EditJournal.open(this.snapshot, this.journal);
+		assertEquals("abc", recovered.tree().toString());
+		recovered.add('x');
+		recovered.close();
+		EditJournal again = EditJournal.open(this.snapshot, this.journal);
+		assertEquals("abcx", again.tree().toString());
+		again.close();
+	}
+
+	@Test
+	public void test105CorruptRecordEndsReplay() throws IOException {
+		EditJournal j = EditJournal.open(this.snapshot, this.journal);
+		type(j, "abcd");
+		j.close();
+		RandomAccessFile file = new RandomAccessFile(this.journal, "rw");
+		file.seek(this.journal.length() - 16); // inside the record for 'c'
+		file.write(0x7f);
+		file.close();
+		EditJournal recovered = EditJournal.open(this.snapshot, this.journal);
+		assertEquals("ab", recovered.tree().toString());
+		recovered.close();
+	}
+
+	@Test
+	public void test106CompactionReplacesTheJournal() throws IOException {
+		EditJournal j = EditJournal.open(this.snapshot, this.journal);
+		type(j, "some text");
+		j.compact();
+		assertTrue(this.snapshot.exists());
+		assertEquals(12, this.journal.length());
+		j.delete(0);
+		j.close();
+		EditJournal reopened = EditJournal.open(this.snapshot, this.journal);
+		assertEquals("ome text", reopened.tree().toString());
+		reopened.close();
+	}
+
+	@Test
+	public void test107JournalFromBeforeCompactionIsIgnored() throws IOException {
+		EditJournal j = EditJournal.open(this.snapshot, this.journal);
+		type(j, "xyz");
+		j.close();
+		byte[] beforeCompaction = readAll(this.journal);
+		EditJournal compacted = EditJournal.open(this.snapshot, this.journal);
+		compacted.compact();
+		compacted.close();
+		// a crash after the new snapshot was written but before the journal was
+		// emptied leaves the old journal behind
+		RandomAccessFile file = new RandomAccessFile(this.journal, "rw");
+		file.write(beforeCompaction);
+		file.close();
+		EditJournal recovered = EditJournal.open(this.snapshot, this.journal);
+		assertEquals("xyz", recovered.tree().toString());
+		recovered.close();
+	}
+
+	@Test
+	public void test108CompactsOnItsOwn() throws IOException {
+		EditJournal j = EditJournal.open(this.snapshot, this.journal, 16);
+		for (int i = 0; i < 20000; i++) {
+			j.add((char) ('a' + i % 26), i / 2);
+			if (i % 3 == 0) {
+				j.delete(i / 3);
+			}
+		}
+		String expected = j.tree().toString();
+		j.close();
+		assertTrue(this.snapshot.exists());
+		int maxRecords = Math.max(4096, expected.length()) + 16;
+		assertTrue(this.journal.length() <= 12 + 11 * maxRecords);
+		EditJournal reopened = EditJournal.open(this.snapshot, this.journal);
+		assertEquals(expected, reopened.tree().toString());
+		assertTrue(reopened.tree().invariantsHold());
+		reopened.close();
+	}
+
+	@Test
+	public void test109CrashAtEveryStepOfCompacting() throws IOException {
+		for (int step = 1; step <= 5; step++) {
+			this.deleteFiles();
+			EditJournal j = EditJournal.open(this.snapshot, this.journal);
+			type(j, "first");
+			j.compact();
+			type(j, " second");
+			j.delete(0);
+			j.commit();
+			j.crashBeforeStep = step;
+			try {
+				j.compact();
+				fail("Did not crash before step " + step);
+			} catch (IOException e) {
+				// the simulated crash
+			}
+			EditJournal recovered = EditJournal.open(this.snapshot, this.journal);
+			assertEquals("step " + step, "irst second", recovered.tree().toString());
+			assertTrue(!new File(this.snapshot.getPath() + ".tmp").exists());
+			recovered.add('!');
+			recovered.compact();
+			recovered.add('?');
+			recovered.close();
+			EditJournal again = EditJournal.open(this.snapshot, this.journal);
+			assertEquals("step " + step, "irst second!?", again.tree().toString());
+			again.close();
+		}
+	}
+
+	@Test
+	public void test110HalfWrittenTemporarySnapshotIsDeleted() throws IOException {
+		EditJournal j = EditJournal.open(this.snapshot, this.journal);
+		type(j, "kept");
+		j.compact();
+		j.add('!');
+		j.close();
+		File temp = new File(this.snapshot.getPath() + ".tmp");
+		RandomAccessFile file = new RandomAccessFile(temp, "rw");
+		file.write(new byte[] { 0x45, 0x44, 0x53 }); // a crash while writing it
+		file.close();
+		EditJournal recovered = EditJournal.open(this.snapshot, this.journal);
+		assertEquals("kept!", recovered.tree().toString());
+		assertTrue(!temp.exists());
+		recovered.compact();
+		recovered.close();
+		EditJournal again = EditJournal.open(this.snapshot, this.journal);
+		assertEquals("kept!", again.tree().toString());
+		again.close();
+	}
+}
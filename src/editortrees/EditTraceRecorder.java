@@ -0,0 +1,149 @@
+package editortrees;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * A TextBuffer that wraps another one and writes every add, delete, get and
+ * get(pos, length) made through it to a trace, which EditTraceReplayer can
+ * replay later to benchmark or test with the workload of a real editing
+ * session. Any code written against TextBuffer can be recorded by handing it
+ * the recorder instead of the engine, and the trace replayed on any engine.
+ *
+ * The trace starts with an EditTree snapshot of the buffer's text, so it can
+ * be replayed without the document it was recorded on. Each operation is a
+ * byte for its kind, its position as a varint of the distance from the
+ * previous operation's position, and a varint argument, so typing at a cursor
+ * takes about 3 bytes per keystroke. Reads are recorded with what they
+ * returned, so a replay can check that it gets the same text back.
+ *
+ * Operations that throw are not recorded. Since TextBuffer's operations can't
+ * throw IOException, one that can't write its record throws an
+ * UncheckedIOException, after it was made on the buffer; flush() and close()
+ * throw the IOException itself.
+ *
+ * @author Medhansh Khattar
+ */
+public class EditTraceRecorder implements TextBuffer, Closeable, Flushable {
+
+	static final int MAGIC = 0x45545431; // "ETT1"
+	static final int ADD = 1;
+	static final int DELETE = 2;
+	static final int GET = 3;
+	static final int GET_RANGE = 4;
+
+	private final TextBuffer buffer;
+	private final DataOutputStream out;
+	private int previousPos;
+
+	/**
+	 * @param buffer buffer to record the operations on. Make every operation
+	 *               through this recorder while recording.
+	 * @param out    stream to write the trace to
+	 * @throws IOException if out throws one
+	 */
+	public EditTraceRecorder(TextBuffer buffer, OutputStream out) throws IOException {
+		this.buffer = buffer;
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.out.writeInt(MAGIC);
+		snapshotOf(buffer).writeSnapshot(this.out);
+	}
+
+	// Other engines are copied into a tree, since the trace starts with a
+	// tree's snapshot.
+	private static EditTree snapshotOf(TextBuffer buffer) {
+		if (buffer instanceof EditTree) {
+			return (EditTree) buffer;
+		}
+		EditTree tree = new EditTree();
+		String text = buffer.toString();
+		for (int i = 0; i < text.length(); i++) {
+			tree.add(text.charAt(i));
+		}
+		return tree;
+	}
+
+	public TextBuffer buffer() {
+		return this.buffer;
+	}
+
+	public int size() {
+		return this.buffer.size();
+	}
+
+	public void add(char ch) {
+		this.add(ch, this.buffer.size());
+	}
+
+	public void add(char ch, int pos) {
+		this.buffer.add(ch, pos);
+		this.write(ADD, pos, ch, 0);
+	}
+
+	public char delete(int pos) {
+		char deleted = this.buffer.delete(pos);
+		this.write(DELETE, pos, deleted, 0);
+		return deleted;
+	}
+
+	public char get(int pos) {
+		char ch = this.buffer.get(pos);
+		this.write(GET, pos, ch, 0);
+		return ch;
+	}
+
+	public String get(int pos, int length) {
+		String s = this.buffer.get(pos, length);
+		this.write(GET_RANGE, pos, length, s.hashCode());
+		return s;
+	}
+
+	/**
+	 * @return the buffer's text. Not recorded.
+	 */
+	public String toString() {
+		return this.buffer.toString();
+	}
+
+	public void flush() throws IOException {
+		this.out.flush();
+	}
+
+	/**
+	 * Flushes the trace and closes the stream it is written to.
+	 */
+	public void close() throws IOException {
+		this.out.close();
+	}
+
+	// hash is only written for range gets, of the String they returned.
+	private void write(int op, int pos, int argument, int hash) {
+		try {
+			this.out.writeByte(op);
+			int delta = pos - this.previousPos;
+			writeVarint(this.out, (delta << 1) ^ (delta >> 31)); // zigzag, so small negative deltas stay short
+			writeVarint(this.out, argument);
+			if (op == GET_RANGE) {
+				writeVarint(this.out, hash);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.previousPos = pos;
+	}
+
+	// Writes 7 bits per byte, lowest first, with the high bit set on every byte
+	// but the last.
+	private static void writeVarint(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+}
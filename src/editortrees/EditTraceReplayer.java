@@ -0,0 +1,146 @@
+package editortrees;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Replays a trace written by EditTraceRecorder. The whole trace is decoded into
+ * arrays when it is loaded, so that replay() only spends time in the tree,
+ * which makes it usable as the body of a benchmark: load the trace once in the
+ * setup, then replay it onto a fresh copy of initialTree() in each iteration.
+ *
+ * A replay checks every read and delete against what the recorded session got,
+ * so replaying a trace in a unit test catches any change in behavior too.
+ *
+ * @author Medhansh Khattar
+ */
+public class EditTraceReplayer {
+
+	private final EditTree initialTree;
+	private byte[] ops = new byte[1024];
+	private int[] positions = new int[1024];
+	private int[] arguments = new int[1024];
+	private int[] hashes = new int[16]; // of the results of range gets, in order
+	private int count;
+	private int rangeGets;
+
+	/**
+	 * Reads a whole trace. A trace cut off after its snapshot, e.g. because the
+	 * recorded session crashed, is read up to its last whole operation.
+	 *
+	 * @throws IOException if in throws one, or doesn't hold a trace
+	 */
+	public EditTraceReplayer(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if (data.readInt() != EditTraceRecorder.MAGIC) {
+			throw new IOException("Not an edit trace");
+		}
+		this.initialTree = EditTree.readSnapshot(data);
+		int pos = 0;
+		int op;
+		while ((op = data.read()) != -1) {
+			if (op < EditTraceRecorder.ADD || op > EditTraceRecorder.GET_RANGE) {
+				throw new IOException("Bad operation in trace");
+			}
+			int zigzag;
+			int argument;
+			int hash = 0;
+			try {
+				zigzag = readVarint(data);
+				argument = readVarint(data);
+				if (op == EditTraceRecorder.GET_RANGE) {
+					hash = readVarint(data);
+				}
+			} catch (EOFException e) {
+				break; // the session stopped while writing this operation
+			}
+			pos += (zigzag >>> 1) ^ -(zigzag & 1);
+			this.append((byte) op, pos, argument);
+			if (op == EditTraceRecorder.GET_RANGE) {
+				if (this.rangeGets == this.hashes.length) {
+					this.hashes = Arrays.copyOf(this.hashes, this.rangeGets * 2);
+				}
+				this.hashes[this.rangeGets++] = hash;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of operations in the trace
+	 */
+	public int operationCount() {
+		return this.count;
+	}
+
+	/**
+	 * @return a new copy of the tree the trace was recorded on, as it was when
+	 *         recording started
+	 */
+	public EditTree initialTree() {
+		return new EditTree(this.initialTree);
+	}
+
+	/**
+	 * Makes the trace's operations on target, which should hold the same text as
+	 * initialTree(). target can be any TextBuffer, so one trace can be replayed
+	 * on every engine, e.g. onto a BPlusEditTree filled with
+	 * initialTree().toString().
+	 *
+	 * @throws IllegalStateException if a read or delete doesn't return what it
+	 *                               did in the recorded session
+	 */
+	public void replay(TextBuffer target) {
+		int rangeGet = 0;
+		for (int i = 0; i < this.count; i++) {
+			int pos = this.positions[i];
+			int argument = this.arguments[i];
+			switch (this.ops[i]) {
+			case EditTraceRecorder.ADD:
+				target.add((char) argument, pos);
+				break;
+			case EditTraceRecorder.DELETE:
+				this.check(i, target.delete(pos) == argument);
+				break;
+			case EditTraceRecorder.GET:
+				this.check(i, target.get(pos) == argument);
+				break;
+			default:
+				this.check(i, target.get(pos, argument).hashCode() == this.hashes[rangeGet++]);
+			}
+		}
+	}
+
+	private void check(int i, boolean sameAsRecorded) {
+		if (!sameAsRecorded) {
+			throw new IllegalStateException("Operation " + i + " of the trace returned something else when recorded");
+		}
+	}
+
+	private void append(byte op, int pos, int argument) {
+		if (this.count == this.ops.length) {
+			this.ops = Arrays.copyOf(this.ops, this.count * 2);
+			this.positions = Arrays.copyOf(this.positions, this.count * 2);
+			this.arguments = Arrays.copyOf(this.arguments, this.count * 2);
+		}
+		this.ops[this.count] = op;
+		this.positions[this.count] = pos;
+		this.arguments[this.count] = argument;
+		this.count++;
+	}
+
+	private static int readVarint(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Bad varint in trace");
+	}
+}
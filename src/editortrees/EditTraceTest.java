@@ -0,0 +1,267 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for recording edit traces and replaying them.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditTraceTest {
+
+	// Bursts of typing, backspacing and reading at random cursors.
+	private static void edit(TextBuffer recorder, int bursts, long seed) {
+		Random random = new Random(seed);
+		for (int burst = 0; burst < bursts; burst++) {
+			int cursor = random.nextInt(recorder.size() + 1);
+			for (int k = 0; k < 20; k++) {
+				if (random.nextInt(5) > 0 || cursor == 0) {
+					recorder.add((char) ('a' + random.nextInt(26)), cursor++);
+				} else {
+					recorder.delete(--cursor);
+				}
+			}
+			if (recorder.size() > 10) {
+				recorder.get(random.nextInt(recorder.size()));
+				recorder.get(0, 10);
+			}
+		}
+	}
+
+	@Test
+	public void test101ReplayGivesTheSameText() throws IOException {
+		EditTree t = new EditTree();
+		for (int i = 0; i < 500; i++) {
+			t.add('x');
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EditTraceRecorder recorder = new EditTraceRecorder(t, out);
+		edit(recorder, 200, 8);
+		recorder.close();
+		EditTraceReplayer replayer = new EditTraceReplayer(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(200 * 22, replayer.operationCount());
+		EditTree replayed = replayer.initialTree();
+		assertEquals(500, replayed.size());
+		replayer.replay(replayed);
+		assertEquals(t.toString(), replayed.toString());
+		assertTrue(replayed.invariantsHold());
+		// replaying twice onto fresh copies gives the same result
+		EditTree again = replayer.initialTree();
+		replayer.replay(again);
+		assertEquals(t.toString(), again.toString());
+	}
+
+	@Test
+	public void test102TypingIsCompact() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EditTraceRecorder recorder = new EditTraceRecorder(new EditTree(), out);
+		String line = "for (int i = 0; i < n; i++) {\n";
+		for (int i = 0; i < 1000; i++) {
+			recorder.add(line.charAt(i % line.length()));
+		}
+		recorder.close();
+		assertTrue(out.size() < 8 + 3 * 1000 + 16);
+	}
+
+	@Test
+	public void test103ReplayNoticesDifferentResults() throws IOException {
+		EditTree t = new EditTree();
+		EditTree different = new EditTree();
+		for (int i = 0; i < 100; i++) {
+			t.add('x');
+			different.add('y');
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EditTraceRecorder recorder = new EditTraceRecorder(t, out);
+		edit(recorder, 50, 9);
+		recorder.close();
+		EditTraceReplayer replayer = new EditTraceReplayer(new ByteArrayInputStream(out.toByteArray()));
+		try {
+			replayer.replay(different);
+			fail("Expected an IllegalStateException");
+		} catch (IllegalStateException e) {
+			// a read saw a y where the recorded session saw an x
+		}
+	}
+
+	@Test
+	public void test104TruncatedTrace() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EditTraceRecorder recorder = new EditTraceRecorder(new EditTree(), out);
+		recorder.add('a');
+		recorder.flush();
+		int afterFirst = out.size();
+		recorder.add('b');
+		recorder.close();
+		byte[] cut = new byte[afterFirst];
+		System.arraycopy(out.toByteArray(), 0, cut, 0, afterFirst);
+		EditTraceReplayer replayer = new EditTraceReplayer(new ByteArrayInputStream(cut));
+		assertEquals(1, replayer.operationCount());
+		EditTree t = replayer.initialTree();
+		replayer.replay(t);
+		assertEquals("a", t.toString());
+	}
+
+	@Test
+	public void test105ReplayOntoOtherEngines() throws IOException {
+		EditTree t = new EditTree();
+		for (int i = 0; i < 300; i++) {
+			t.add((char) ('a' + i % 26));
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EditTraceRecorder recorder = new EditTraceRecorder(t, out);
+		edit(recorder, 300, 9);
+		recorder.close();
+		EditTraceReplayer replayer = new EditTraceReplayer(new ByteArrayInputStream(out.toByteArray()));
+		String initial = replayer.initialTree().toString();
+		TextBuffer[] engines = { new BPlusEditTree(4, 8, false), new BPlusEditTree(4, 8, true),
+				new PieceTable(initial), new EditTree(BalancingPolicy.SPLAY) };
+		for (TextBuffer engine : engines) {
+			if (engine.size() == 0) {
+				for (int i = 0; i < initial.length(); i++) {
+					engine.add(initial.charAt(i));
+				}
+			}
+			replayer.replay(engine);
+			assertEquals(t.toString(), engine.toString());
+		}
+	}
+
+	@Test
+	public void test106TraceCutOffAtEveryByte() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EditTraceRecorder recorder = new EditTraceRecorder(new EditTree(), out);
+		recorder.flush();
+		int snapshotEnd = out.size();
+		// where each operation's record ends, and the text after it
+		List<Integer> ends = new ArrayList<Integer>();
+		List<String> texts = new ArrayList<String>();
+		Random random = new Random(10);
+		for (int k = 0; k < 60; k++) {
+			int kind = recorder.size() < 5 ? 0 : random.nextInt(4);
+			if (kind == 0) {
+				// far apart, for positions of more than one byte
+				recorder.add((char) (random.nextInt(3) == 0 ? 0x4e2d : 'a' + k % 26), random.nextInt(recorder.size() + 1));
+			} else if (kind == 1) {
+				recorder.delete(random.nextInt(recorder.size()));
+			} else if (kind == 2) {
+				recorder.get(random.nextInt(recorder.size()));
+			} else {
+				recorder.get(1, recorder.size() - 2);
+			}
+			recorder.flush();
+			ends.add(out.size());
+			texts.add(recorder.buffer().toString());
+		}
+		recorder.close();
+		byte[] trace = out.toByteArray();
+		for (int length = 0; length <= trace.length; length++) {
+			byte[] cut = new byte[length];
+			System.arraycopy(trace, 0, cut, 0, length);
+			if (length < snapshotEnd) {
+				try {
+					new EditTraceReplayer(new ByteArrayInputStream(cut));
+					fail("Read a trace without its whole snapshot, " + length + " bytes");
+				} catch (EOFException e) {
+					// success
+				}
+				continue;
+			}
+			int whole = 0;
+			while (whole < ends.size() && ends.get(whole) <= length) {
+				whole++;
+			}
+			EditTraceReplayer replayer = new EditTraceReplayer(new ByteArrayInputStream(cut));
+			assertEquals("cut at " + length, whole, replayer.operationCount());
+			EditTree t = replayer.initialTree();
+			replayer.replay(t);
+			assertEquals("cut at " + length, whole == 0 ? "" : texts.get(whole - 1), t.toString());
+		}
+	}
+
+	@Test
+	public void test107RecordOtherEngines() throws IOException {
+		TextBuffer[] engines = { new BPlusEditTree(4, 8, false), new PieceTable("initial text") };
+		for (TextBuffer engine : engines) {
+			if (engine.size() == 0) {
+				for (int i = 0; i < 50; i++) {
+					engine.add((char) ('a' + i % 26));
+				}
+			}
+			String initial = engine.toString();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			EditTraceRecorder recorder = new EditTraceRecorder(engine, out);
+			edit(recorder, 100, 11);
+			recorder.close();
+			EditTraceReplayer replayer = new EditTraceReplayer(new ByteArrayInputStream(out.toByteArray()));
+			assertEquals(initial, replayer.initialTree().toString());
+			EditTree t = replayer.initialTree();
+			replayer.replay(t);
+			assertEquals(engine.toString(), t.toString());
+		}
+	}
+
+	@Test
+	public void test108RecorderIsATextBuffer() throws IOException {
+		EditTree t = new EditTree();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TextBuffer recorded = new EditTraceRecorder(t, out);
+		// code that only knows TextBuffer, like the benchmarks
+		for (int i = 0; i < 40; i++) {
+			recorded.add((char) ('a' + i % 26), i / 2);
+		}
+		recorded.delete(3);
+		assertEquals(t.toString(), recorded.toString());
+		((EditTraceRecorder) recorded).close();
+		EditTraceReplayer replayer = new EditTraceReplayer(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(41, replayer.operationCount());
+		EditTree replayed = replayer.initialTree();
+		replayer.replay(replayed);
+		assertEquals(t.toString(), replayed.toString());
+	}
+
+	@Test
+	public void test109WriteFailuresAreUnchecked() throws IOException {
+		OutputStream full = new OutputStream() {
+			private int written;
+
+			public void write(int b) throws IOException {
+				if (++this.written > 100) {
+					throw new IOException("Disk full");
+				}
+			}
+		};
+		EditTraceRecorder recorder = new EditTraceRecorder(new EditTree(), full);
+		try {
+			for (int i = 0; i < 100000; i++) {
+				recorder.add('x');
+			}
+			fail("Expected an UncheckedIOException");
+		} catch (UncheckedIOException e) {
+			assertEquals("Disk full", e.getCause().getMessage());
+		}
+		try {
+			recorder.flush();
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			// success
+		}
+	}
+}
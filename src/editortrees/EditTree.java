@@ -1,14 +1,22 @@
 package editortrees;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Stack;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
 
-import editortrees.Node.Code;
-import editortrees.Node.NodeContainer;
 /**
  * A height-balanced binary tree with rank that could be the basis for a text
  * editor.
@@ -20,21 +28,51 @@ import editortrees.Node.NodeContainer;
  * 
  * 
  */
-public class EditTree {
+public class EditTree implements TextBuffer {
 
 	private static final Node NULL_NODE = null;
+	private static final int SNAPSHOT_MAGIC = 0x45545331; // "ETS1"
+	private static final int POLICY_SNAPSHOT_MAGIC = 0x45545332; // "ETS2", for policies other than AVL
 	Node root;
 	private int size;
-	public static int totalRotations;
+	private int codePoints;
+	private int utf8Bytes;
+	int totalRotations; // since this tree was made; Node and Finger count theirs here
 	private DisplayableBinaryTree display;
+	private Finger finger = new Finger(this);
+	private TreeAuditor auditor;
+	private int pathsAuditedPerEdit;
+	private EditTreeLatencies latencies;
+	private EditTreeListener[] listeners = NO_LISTENERS;
+	private static final EditTreeListener[] NO_LISTENERS = {};
+	// not final, since a SPLAY tree can fall back to AVL
+	private BalancingPolicy policy;
+	Balancer balancer; // null for AVL, which Node and Finger do themselves
+	int splayFallbackDepth;
+	int modCount; // changed by every add and delete, for views and match iterators
+	// Changed by every restructuring that isn't part of an add or delete: a
+	// splay's rotations and the fallback to AVL. Views check both counts.
+	int structureCount;
 
 	/**
 	 * MILESTONE 1 Construct an empty tree
 	 */
 	 public EditTree() {
+	        this(BalancingPolicy.AVL);
+	    }
+
+	/**
+	 * Construct an empty tree that keeps itself balanced with policy instead of
+	 * AVL rotations.
+	 * 
+	 * @param policy
+	 */
+	 public EditTree(BalancingPolicy policy) {
 	        root = null;
 	        size = 0;
 	        this.totalRotations=0;
+	        this.policy = policy;
+	        this.balancer = Balancer.forPolicy(policy);
 	    }
 
 	/**
@@ -43,8 +81,12 @@ public class EditTree {
 	 * @param ch
 	 */
 	 public EditTree(char ch) {
+	        this.policy = BalancingPolicy.AVL;
+	        this.balancer = null;
 	        this.root = new Node(ch);
 	        this.size = 1;
+	        this.codePoints = Node.codePointWeight(ch);
+	        this.utf8Bytes = Node.utf8Length(ch);
 	        this.totalRotations=0;
 	    }
 
@@ -56,18 +98,57 @@ public class EditTree {
 	 * @param e
 	 */
 	 public EditTree(EditTree e) {
+		 EditTreeEvents.BulkLoad event = EditTreeEvents.beginBulkLoad();
+		 this.policy = e.policy;
+		 this.balancer = Balancer.forPolicy(e.policy);
 		 this.root = this.copyTrees(e.root);
+		 this.codePoints = e.codePoints;
+		 this.utf8Bytes = e.utf8Bytes;
 		 this.totalRotations = 0; // rotations never occur when copying a tree
+		 EditTreeEvents.endBulkLoad(event, "copy", this.size);
 	 }
 	
+	// Copies in pre-order with a stack of the nodes whose children are still to
+	// be copied, next to their copies, instead of recursing (see
+	// BalancingPolicy.SPLAY).
 	private Node copyTrees(Node nodeToCopy) {
 		if(nodeToCopy == Node.NULL_NODE || nodeToCopy == null) {
 			return nodeToCopy;
 		} 
-		Node copy = new Node(nodeToCopy.data, nodeToCopy.rank, nodeToCopy.balance);
+		Node root = this.copyNode(nodeToCopy);
+		Stack<Node> originals = new Stack<Node>();
+		Stack<Node> copies = new Stack<Node>();
+		originals.push(nodeToCopy);
+		copies.push(root);
+		while(!originals.isEmpty()) {
+			Node original = originals.pop();
+			Node copy = copies.pop();
+			if(original.hasLeft()) {
+				copy.left = this.copyNode(original.left);
+				originals.push(original.left);
+				copies.push(copy.left);
+			}
+			if(original.hasRight()) {
+				copy.right = this.copyNode(original.right);
+				originals.push(original.right);
+				copies.push(copy.right);
+			}
+		}
+		return root;
+	}
+
+	// A copy of everything node keeps but its children. Its subtree's hash is
+	// the same, since the whole subtree is copied.
+	private Node copyNode(Node nodeToCopy) {
+		Node copy = this.newNode(nodeToCopy.data);
+		copy.balance = nodeToCopy.balance;
+		copy.copyLeftCountsFrom(nodeToCopy);
+		if(this.balancer != null) {
+			this.balancer.copyState(nodeToCopy, copy);
+		}
+		copy.hash = nodeToCopy.hash;
+		copy.hashPower = nodeToCopy.hashPower;
 		this.size++;
-		copy.left = copyTrees(nodeToCopy.left);
-		copy.right = copyTrees(nodeToCopy.right);
 		return copy;
 	}
 
@@ -79,10 +160,14 @@ public class EditTree {
 	 * @param s
 	 */
 	public EditTree(String s) {
+		EditTreeEvents.BulkLoad event = EditTreeEvents.beginBulkLoad();
+		this.policy = BalancingPolicy.AVL;
+		this.balancer = null;
 		if(s.length() == 0) {
 			this.root = NULL_NODE;
 		}
 		this.root = createTreeFromString(s, s.length() / 2);
+		EditTreeEvents.endBulkLoad(event, "string", this.size);
 	}
 
 	private Node createTreeFromString(String s, int stringIndex) {
@@ -106,6 +191,141 @@ public class EditTree {
 		return stringIndex < 0 || stringIndex >= s.length();
 	}
 
+	/**
+	 * Writes this tree in a binary format that keeps its exact shape, so that
+	 * readSnapshot() can rebuild it in one streaming pass without adding
+	 * characters one at a time, rotating or checking anything. The nodes are
+	 * written in pre-order, like toDebugString(), each as its character and one
+	 * byte holding its balance code and which children it has. Ranks and the
+	 * other left subtree counts follow from the shape, so they aren't written.
+	 * A tree with a BalancingPolicy other than AVL is written with the policy,
+	 * that policy's use of the balance byte, and the treap's priorities.
+	 * 
+	 * @param out stream to write to. It is flushed, but not closed.
+	 * @throws IOException if out throws one
+	 */
+	public void writeSnapshot(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		if(this.balancer == null) {
+			data.writeInt(SNAPSHOT_MAGIC);
+		} else {
+			data.writeInt(POLICY_SNAPSHOT_MAGIC);
+			data.writeByte(this.policy.ordinal());
+		}
+		data.writeInt(this.size);
+		if(this.size > 0) {
+			this.root.writeSnapshotHelper(data, this.balancer);
+		}
+		data.flush();
+	}
+
+	/**
+	 * Rebuilds a tree written by writeSnapshot() in O(n) time. Reads exactly
+	 * the snapshot's bytes, one node at a time, so in should be buffered.
+	 * 
+	 * @param in stream positioned at the start of a snapshot
+	 * @return a tree with the same shape, ranks and balance codes as the one
+	 *         that was written
+	 * @throws IOException if in throws one, or doesn't hold a snapshot
+	 */
+	public static EditTree readSnapshot(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		int magic = data.readInt();
+		BalancingPolicy policy = BalancingPolicy.AVL;
+		if(magic == POLICY_SNAPSHOT_MAGIC) {
+			int ordinal = data.readUnsignedByte();
+			if(ordinal >= BalancingPolicy.values().length) {
+				throw new IOException("Unknown balancing policy in snapshot");
+			}
+			policy = BalancingPolicy.values()[ordinal];
+		} else if(magic != SNAPSHOT_MAGIC) {
+			throw new IOException("Not an EditTree snapshot");
+		}
+		int nodes = data.readInt();
+		EditTreeEvents.BulkLoad event = EditTreeEvents.beginBulkLoad();
+		EditTree tree = new EditTree(policy);
+		if(nodes > 0) {
+			tree.root = tree.readSnapshotHelper(data);
+		}
+		if(tree.size != nodes) {
+			throw new IOException("Snapshot has " + tree.size + " nodes, not " + nodes);
+		}
+		EditTreeEvents.endBulkLoad(event, "snapshot", tree.size);
+		return tree;
+	}
+
+	// Reads a subtree written in pre-order. The tree's totals are used as running
+	// counts: what they grew by while reading the left subtree is what the node
+	// keeps about it. The nodes whose subtrees are still being read are kept on
+	// a stack instead of recursing (see BalancingPolicy.SPLAY).
+	private Node readSnapshotHelper(DataInputStream in) throws IOException {
+		Stack<SnapshotFrame> stack = new Stack<SnapshotFrame>();
+		Node root = this.readSnapshotNode(in, stack);
+		while(!stack.isEmpty()) {
+			SnapshotFrame frame = stack.peek();
+			Node node = frame.node;
+			if(!frame.leftRead) {
+				frame.leftRead = true;
+				if((frame.flags & Node.SNAPSHOT_HAS_LEFT) != 0) {
+					node.left = this.readSnapshotNode(in, stack);
+					continue;
+				}
+			}
+			if(!frame.rightRead) {
+				frame.rightRead = true;
+				node.rank = this.size - frame.sizeBefore;
+				node.codePointRank = this.codePoints - frame.codePointsBefore;
+				node.byteRank = this.utf8Bytes - frame.utf8BytesBefore;
+				this.size++;
+				this.codePoints += Node.codePointWeight(node.data);
+				this.utf8Bytes += Node.utf8Length(node.data);
+				if((frame.flags & Node.SNAPSHOT_HAS_RIGHT) != 0) {
+					node.right = this.readSnapshotNode(in, stack);
+					continue;
+				}
+			}
+			node.updateHash();
+			stack.pop();
+		}
+		return root;
+	}
+
+	// Reads one node and pushes it, for its subtrees to be read next.
+	private Node readSnapshotNode(DataInputStream in, Stack<SnapshotFrame> stack) throws IOException {
+		char ch = in.readChar();
+		int flags = in.readUnsignedByte();
+		if((flags & ~(Node.SNAPSHOT_HAS_LEFT | Node.SNAPSHOT_HAS_RIGHT)) > Node.RIGHT) {
+			throw new IOException("Bad node in snapshot");
+		}
+		Node node = this.newNode(ch);
+		node.balance = (byte) (flags & ~(Node.SNAPSHOT_HAS_LEFT | Node.SNAPSHOT_HAS_RIGHT));
+		if(this.balancer != null) {
+			this.balancer.readState(node, in);
+		}
+		stack.push(new SnapshotFrame(node, flags, this.size, this.codePoints, this.utf8Bytes));
+		return node;
+	}
+
+	// A node being read, with the tree's totals from before its left subtree.
+	private static class SnapshotFrame {
+		final Node node;
+		final int flags;
+		final int sizeBefore;
+		final int codePointsBefore;
+		final int utf8BytesBefore;
+		// set when reading each subtree starts
+		boolean leftRead;
+		boolean rightRead;
+
+		SnapshotFrame(Node node, int flags, int sizeBefore, int codePointsBefore, int utf8BytesBefore) {
+			this.node = node;
+			this.flags = flags;
+			this.sizeBefore = sizeBefore;
+			this.codePointsBefore = codePointsBefore;
+			this.utf8BytesBefore = utf8BytesBefore;
+		}
+	}
+
 	/**
 	 * MILESTONE 1 return the string produced by an in-order traversal of this tree
 	 */
@@ -114,8 +334,9 @@ public class EditTree {
 		if(this.size == 0) {
 			return "";
 		}
-//		return toStringHelper(this.root);
-		return this.root.toStringHelper();
+		StringBuilder builder = new StringBuilder(this.size);
+		this.appendRange(builder, 0, this.size);
+		return builder.toString();
 	}
 
 	private String toStringHelper(Node node) {
@@ -142,14 +363,26 @@ public class EditTree {
 	 * @param ch character to add to the end of this tree.
 	 */
 	public void add(char ch) {
+		long start = this.latencies == null ? 0 : System.nanoTime();
+		EditTreeEvents.Edit event = EditTreeEvents.beginEdit();
 		if(this.size == 0) { // adding to an empty tree.
-			this.root = new Node(ch); // simply make the root have the value ch
-			this.root.balance = Code.SAME;
+			this.root = this.newNode(ch); // simply make the root have the value ch
+			this.root.balance = Node.SAME;
 		} else {
-			NodeContainer nc = new NodeContainer();
-			root = root.addSimple(ch, nc);
-		} // calls recursive method that recurses to the end of the tree
+			this.finger.insert(ch, this.size);
+		} // starts from the last edit position if it is already at the end of the tree
 		this.size++;
+		this.modCount++;
+		this.codePoints += Node.codePointWeight(ch);
+		this.utf8Bytes += Node.utf8Length(ch);
+		this.auditEdit();
+		EditTreeEvents.endEdit(event, "add", this.size - 1, 1, this.size);
+		for(int i = 0; i < this.listeners.length; i++) {
+			this.listeners[i].inserted(this, this.size - 1, ch);
+		}
+		if(this.latencies != null) {
+			this.latencies.add.record(System.nanoTime() - start);
+		}
 	}
 
 	/**
@@ -164,17 +397,29 @@ public class EditTree {
 	 *                                   tree.
 	 */
 	public void add(char ch, int pos) throws IndexOutOfBoundsException {
+		long start = this.latencies == null ? 0 : System.nanoTime();
+		EditTreeEvents.Edit event = EditTreeEvents.beginEdit();
 		// You can use your O(1) size field/method to determine if the index is valid.
 		if(pos < 0 || pos > this.size) { // checks for a valid index
 			throw new IndexOutOfBoundsException();
-		} else if(this.root == null) { // checks if we are adding to an empty tree
-			this.root = new Node(ch);
-			this.root.balance = Code.SAME;
-		} else { // calls recursive Node helper method
-			NodeContainer nc = new NodeContainer();
-			root = root.add(ch, pos, nc);
+		} else if(this.size == 0) { // checks if we are adding to an empty tree
+			this.root = this.newNode(ch);
+			this.root.balance = Node.SAME;
+		} else { // starts from the lowest remembered ancestor containing pos
+			this.finger.insert(ch, pos);
 		}
 		this.size++;
+		this.modCount++;
+		this.codePoints += Node.codePointWeight(ch);
+		this.utf8Bytes += Node.utf8Length(ch);
+		this.auditEdit();
+		EditTreeEvents.endEdit(event, "add", pos, 1, this.size);
+		for(int i = 0; i < this.listeners.length; i++) {
+			this.listeners[i].inserted(this, pos, ch);
+		}
+		if(this.latencies != null) {
+			this.latencies.add.record(System.nanoTime() - start);
+		}
 	} // commit
 
 	/**
@@ -220,7 +465,13 @@ public class EditTree {
 		if(this.root == Node.NULL_NODE) {
 			return '\0';
 		}
-		return this.root.getHelper(pos);
+		if(this.latencies == null) {
+			return this.finger.get(pos);
+		}
+		long start = System.nanoTime();
+		char ch = this.finger.get(pos);
+		this.latencies.get.record(System.nanoTime() - start);
+		return ch;
 	}
 
 	// MILESTONE 1: They next two "slow" methods are useful for testing, debugging 
@@ -271,7 +522,9 @@ public class EditTree {
 	 */
 	public boolean ranksMatchLeftSubtreeSize() {
 		BooleanContainer bc = new BooleanContainer(true);
-		root.checkRanks(bc);
+		if(this.size > 0) {
+			root.checkRanks(bc);
+		}
 		return bc.check;
 	}
 
@@ -330,11 +583,19 @@ public class EditTree {
 	 * The notes for ranksMatchLeftSubtreeSize() above apply here - this method is
 	 * to help YOU as the developer.
 	 * 
+	 * With a BalancingPolicy other than AVL, checks that policy's invariant
+	 * instead.
+	 * 
 	 * @return True iff each node's balance code is correct.
 	 */
 	public boolean balanceCodesAreCorrect() {
+		if(this.balancer != null) {
+			return this.size == 0 || this.balancer.problem(this.root) == null;
+		}
 		BooleanContainer bc = new BooleanContainer(true);
-		root.checkBalance(bc);
+		if(this.size > 0) {
+			root.checkBalance(bc);
+		}
 		return bc.check;
 	}
 
@@ -343,12 +604,135 @@ public class EditTree {
 	 * rely on correct balance codes to find the height of the tree in O(log n)
 	 * time.
 	 * 
+	 * The other BalancingPolicies don't keep anything the height can be read
+	 * from, so for them this is O(n), like slowHeight(), but without recursing
+	 * (see BalancingPolicy.SPLAY).
+	 * 
 	 * @return the height of this tree
 	 */
-	public int fastHeight() 
-	{
-//	   
-		return this.root.fastHeightHelper();
+	public int fastHeight() {
+		if(this.size == 0) {
+			return -1;
+		}
+		if(this.balancer != null) {
+			return this.levelOrderHeight();
+		}
+		return this.root.height();
+	}
+
+	private int levelOrderHeight() {
+		ArrayList<Node> level = new ArrayList<Node>();
+		level.add(this.root);
+		int height = -1;
+		while(!level.isEmpty()) {
+			ArrayList<Node> next = new ArrayList<Node>();
+			for(Node node : level) {
+				if(node.left != Node.NULL_NODE) {
+					next.add(node.left);
+				}
+				if(node.right != Node.NULL_NODE) {
+					next.add(node.right);
+				}
+			}
+			level = next;
+			height++;
+		}
+		return height;
+	}
+
+	/**
+	 * @return how this tree keeps itself balanced
+	 */
+	public BalancingPolicy getBalancingPolicy() {
+		return this.policy;
+	}
+
+	/**
+	 * Makes a SPLAY tree give up splaying the first time a get, add or delete
+	 * has to go more than depth levels below the root, which only happens when
+	 * the accesses have no locality to exploit. The tree is then rebuilt as a
+	 * balanced AVL tree in O(n) and stays one, so getBalancingPolicy() returns
+	 * AVL from then on.
+	 * 
+	 * @param depth deepest an access may go, or 0, the default, to never fall
+	 *              back
+	 * @throws IllegalStateException    if this isn't a SPLAY tree (anymore)
+	 * @throws IllegalArgumentException if depth is negative
+	 */
+	public void setSplayFallbackDepth(int depth) {
+		if(this.policy != BalancingPolicy.SPLAY) {
+			throw new IllegalStateException("Not a splay tree");
+		}
+		if(depth < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.splayFallbackDepth = depth;
+	}
+
+	// Called by the splay Balancer in the middle of an edit, which is why it is
+	// told the size.
+	void fallBackToAvl(int size) {
+		Node[] nodes = new Node[size];
+		int[] codePointsBefore = new int[size + 1];
+		int[] bytesBefore = new int[size + 1];
+		// in order, without recursing, however deep the tree is
+		Stack<Node> stack = new Stack<Node>();
+		Node node = this.root;
+		int count = 0;
+		while(node != Node.NULL_NODE || !stack.isEmpty()) {
+			if(node != Node.NULL_NODE) {
+				stack.push(node);
+				node = node.left;
+			} else {
+				node = stack.pop();
+				nodes[count] = node;
+				codePointsBefore[count + 1] = codePointsBefore[count] + Node.codePointWeight(node.data);
+				bytesBefore[count + 1] = bytesBefore[count] + Node.utf8Length(node.data);
+				count++;
+				node = node.right;
+			}
+		}
+		this.root = size == 0 ? Node.NULL_NODE : nodes[size / 2];
+		linkBalanced(nodes, 0, size, codePointsBefore, bytesBefore);
+		this.policy = BalancingPolicy.AVL;
+		this.balancer = null;
+		this.splayFallbackDepth = 0;
+		this.structureCount++;
+		this.finger.invalidate();
+		// the shape of the whole tree changed, though the text didn't
+		this.fireRotated(0, size, false);
+	}
+
+	// Makes nodes[mid] the root of nodes[low, high) with the middles of the two
+	// halves as its children, so the heights of siblings differ by at most one.
+	// Returns the height.
+	private static int linkBalanced(Node[] nodes, int low, int high, int[] codePointsBefore, int[] bytesBefore) {
+		if(low == high) {
+			return -1;
+		}
+		int mid = (low + high) / 2;
+		Node node = nodes[mid];
+		int leftHeight = linkBalanced(nodes, low, mid, codePointsBefore, bytesBefore);
+		int rightHeight = linkBalanced(nodes, mid + 1, high, codePointsBefore, bytesBefore);
+		node.left = low == mid ? Node.NULL_NODE : nodes[(low + mid) / 2];
+		node.right = mid + 1 == high ? Node.NULL_NODE : nodes[(mid + 1 + high) / 2];
+		node.rank = mid - low;
+		node.codePointRank = codePointsBefore[mid] - codePointsBefore[low];
+		node.byteRank = bytesBefore[mid] - bytesBefore[low];
+		if(leftHeight == rightHeight) {
+			node.balance = Node.SAME;
+		} else {
+			node.balance = leftHeight > rightHeight ? Node.LEFT : Node.RIGHT;
+		}
+		node.updateHash();
+		return Math.max(leftHeight, rightHeight) + 1;
+	}
+
+	Node newNode(char ch) {
+		if(this.balancer == null) {
+			return new Node(ch);
+		}
+		return this.balancer.newNode(ch);
 	}
 
 
@@ -371,10 +755,135 @@ public class EditTree {
 		} else if(this.root == Node.NULL_NODE) {
 			return '\0';
 		}
-		NodeContainer nc = new NodeContainer();
-		this.root = this.root.deleteHelper(pos, nc);
+		long start = this.latencies == null ? 0 : System.nanoTime();
+		EditTreeEvents.Edit event = EditTreeEvents.beginEdit();
+		char deleted = this.finger.delete(pos);
 		this.size--;
-		return nc.dataToReturn;
+		this.modCount++;
+		this.codePoints -= Node.codePointWeight(deleted);
+		this.utf8Bytes -= Node.utf8Length(deleted);
+		this.auditEdit();
+		EditTreeEvents.endEdit(event, "delete", pos, 1, this.size);
+		for(int i = 0; i < this.listeners.length; i++) {
+			this.listeners[i].deleted(this, pos, deleted);
+		}
+		if(this.latencies != null) {
+			this.latencies.delete.record(System.nanoTime() - start);
+		}
+		return deleted;
+	}
+
+	/**
+	 * Returns this tree's text as a CharSequence for APIs that take one, like
+	 * java.util.regex, without copying it the way toString() does. length() is
+	 * O(1), charAt() is O(log n) and amortized O(1) when reading in order, and
+	 * subSequence() is O(1), since it returns another view.
+	 * 
+	 * The view reads through to this tree, so it sees later edits, but reading
+	 * it never rotates, even in a SPLAY tree. A subsequence keeps its positions
+	 * when the tree is edited; see EditTreeCharSequence.
+	 * 
+	 * @return a read-only view of this tree's text
+	 */
+	public CharSequence asCharSequence() {
+		return new EditTreeCharSequence(this);
+	}
+
+	/**
+	 * Finds the first match of pattern in the text from position from to
+	 * position to, without copying the text: only the characters the matcher
+	 * reads are touched. Searching on from the end of the last match, or from
+	 * a cursor, is how to find the next one. ^, $, \b and lookarounds see the
+	 * text around the range, as if the whole text were searched.
+	 * 
+	 * @param pattern pattern to find
+	 * @param from    position the match may start at, at the earliest
+	 * @param to      position the match must end by
+	 * @return the match, with positions in this tree, or null if there is none
+	 * @throws IndexOutOfBoundsException unless 0 <= from <= to <= size()
+	 */
+	public MatchResult find(Pattern pattern, int from, int to) throws IndexOutOfBoundsException {
+		Iterator<MatchResult> matches = this.findAll(pattern, from, to);
+		return matches.hasNext() ? matches.next() : null;
+	}
+
+	/**
+	 * Like find(), but returns every match in the range, in order, found one at
+	 * a time as the iterator is advanced. The iterator and its MatchResults
+	 * throw ConcurrentModificationException once this tree is edited.
+	 * 
+	 * @param pattern pattern to find
+	 * @param from    position matches may start at, at the earliest
+	 * @param to      position matches must end by
+	 * @return the matches, with positions in this tree
+	 * @throws IndexOutOfBoundsException unless 0 <= from <= to <= size()
+	 */
+	public Iterator<MatchResult> findAll(Pattern pattern, int from, int to) throws IndexOutOfBoundsException {
+		if(from < 0 || from > to || to > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return new EditTreeMatches(this, pattern, from, to);
+	}
+
+	/**
+	 * Returns a polynomial hash of the length characters from pos, in O(log n)
+	 * however long the range is: every node keeps the hash of its subtree, so
+	 * only the nodes on the paths to the ends of the range are read. The same
+	 * text has the same hash wherever it is and in any tree, for as long as the
+	 * JVM runs, so this is for finding duplicate lines or checking whether a
+	 * region changed. Two different texts of the same length have the same
+	 * hash with probability at most length / 2^61.
+	 *
+	 * @param pos    position of the first character
+	 * @param length number of characters
+	 * @return the hash, from 0 to 2^61 - 2
+	 * @throws IndexOutOfBoundsException unless 0 <= pos, 0 <= length and
+	 *                                   pos + length <= size()
+	 */
+	public long hash(int pos, int length) throws IndexOutOfBoundsException {
+		if(pos < 0 || length < 0 || pos + length > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		// the prefix up to pos, shifted past the range, is what the longer
+		// prefix has on top of the range's hash
+		long shifted = Node.multiplyModulo(this.prefixHash(pos), Node.hashPower(length));
+		return Node.reduceModulo(this.prefixHash(pos + length) + Node.HASH_MODULUS - shifted);
+	}
+
+	/**
+	 * Whether the length characters from pos1 are the same as those from pos2,
+	 * by comparing their hashes, so in O(log n). It can be wrong only by
+	 * answering true, with the probability given at hash(). The ranges may
+	 * overlap.
+	 *
+	 * @throws IndexOutOfBoundsException unless both ranges are in this tree
+	 */
+	public boolean regionEquals(int pos1, int pos2, int length) throws IndexOutOfBoundsException {
+		if(pos1 < 0 || pos2 < 0 || length < 0 || pos1 + length > this.size || pos2 + length > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return pos1 == pos2 || this.hash(pos1, length) == this.hash(pos2, length);
+	}
+
+	// The hash of the first length characters, combining the hashes of the
+	// subtrees to the left of the path down to position length.
+	private long prefixHash(int length) {
+		long hash = 0;
+		Node node = this.root;
+		while(length > 0) {
+			if(length < node.rank) {
+				node = node.left;
+				continue;
+			}
+			hash = Node.concatHashes(hash, node.left.hashPower, node.left.hash);
+			if(length == node.rank) {
+				break;
+			}
+			hash = Node.concatHashes(hash, Node.HASH_BASE, node.data + 1);
+			length -= node.rank + 1;
+			node = node.right;
+		}
+		return hash;
 	}
 
 	/**
@@ -396,13 +905,298 @@ public class EditTree {
 		if(pos < 0 || length < 0 || pos + length > this.size()) {
 			throw new IndexOutOfBoundsException();
 		}
-		StringBuilder builder = new StringBuilder();
-		for(int i = 0; i < length; i++) {
-			builder.append(this.get(i + pos));
+		long start = this.latencies == null ? 0 : System.nanoTime();
+		EditTreeEvents.Edit event = EditTreeEvents.beginEdit();
+		StringBuilder builder = new StringBuilder(length);
+		this.appendRange(builder, pos, length);
+		EditTreeEvents.endEdit(event, "get", pos, length, this.size);
+		if(this.latencies != null) {
+			this.latencies.getRange.record(System.nanoTime() - start);
 		}
 		return builder.toString();
 	}
 
+	// Appends the length characters from pos in one in-order walk. The path
+	// down to pos is kept on a stack, but only the nodes whose characters come
+	// after pos, which are then visited in order by popping them. It doesn't
+	// recurse (see BalancingPolicy.SPLAY), and doesn't splay either.
+	private void appendRange(StringBuilder builder, int pos, int length) {
+		if(length == 0) {
+			return;
+		}
+		Node[] stack = new Node[64];
+		int top = 0;
+		Node node = this.root;
+		int offset = pos;
+		while(offset != node.rank) {
+			if(offset < node.rank) {
+				if(top == stack.length) {
+					stack = Arrays.copyOf(stack, top * 2);
+				}
+				stack[top++] = node;
+				node = node.left;
+			} else {
+				offset -= node.rank + 1;
+				node = node.right;
+			}
+		}
+		for(int i = 0; i < length; i++) {
+			builder.append(node.data);
+			for(Node next = node.right; next != Node.NULL_NODE; next = next.left) {
+				if(top == stack.length) {
+					stack = Arrays.copyOf(stack, top * 2);
+				}
+				stack[top++] = next;
+			}
+			if(top > 0) {
+				node = stack[--top];
+			}
+		}
+	}
+
+	/**
+	 * Positions in this tree count UTF-16 chars, so a character outside the
+	 * Basic Multilingual Plane takes two positions. The methods below count
+	 * code points instead, where a surrogate pair counts once. Each node keeps
+	 * the number of code points in its left subtree next to its rank, so these
+	 * are all O(log n).
+	 * 
+	 * @return the number of code points in this tree. This is O(1).
+	 */
+	public int codePointCount() {
+		return this.codePoints;
+	}
+
+	/**
+	 * @param codePointOffset number of code points before the position, from 0
+	 *                        to codePointCount() inclusive
+	 * @return the position of the char that starts that code point, or size()
+	 *         if codePointOffset is codePointCount()
+	 * @throws IndexOutOfBoundsException if codePointOffset is negative or too big
+	 */
+	public int codePointOffsetToCharOffset(int codePointOffset) throws IndexOutOfBoundsException {
+		if(codePointOffset < 0 || codePointOffset > this.codePoints) {
+			throw new IndexOutOfBoundsException();
+		} else if(codePointOffset == this.codePoints) {
+			return this.size;
+		}
+		return this.root.charOffsetHelper(codePointOffset);
+	}
+
+	/**
+	 * @param pos position from 0 to size() inclusive
+	 * @return the number of code points that start before pos
+	 * @throws IndexOutOfBoundsException if pos is negative or too big
+	 */
+	public int charOffsetToCodePointOffset(int pos) throws IndexOutOfBoundsException {
+		if(pos < 0 || pos > this.size) {
+			throw new IndexOutOfBoundsException();
+		} else if(pos == this.size) {
+			return this.codePoints;
+		}
+		return this.root.codePointOffsetHelper(pos);
+	}
+
+	/**
+	 * Adds a code point so that codePointOffset code points come before it. A
+	 * supplementary code point is added as a surrogate pair, and never lands
+	 * between the two halves of another pair.
+	 * 
+	 * @param codePoint       Unicode code point to add
+	 * @param codePointOffset from 0 to codePointCount() inclusive
+	 * @throws IndexOutOfBoundsException if codePointOffset is negative or too big
+	 * @throws IllegalArgumentException  if codePoint isn't a valid code point
+	 */
+	public void addCodePoint(int codePoint, int codePointOffset) throws IndexOutOfBoundsException {
+		if(!Character.isValidCodePoint(codePoint)) {
+			throw new IllegalArgumentException();
+		}
+		int pos = this.codePointOffsetToCharOffset(codePointOffset);
+		char[] chars = Character.toChars(codePoint);
+		for(int i = 0; i < chars.length; i++) {
+			this.add(chars[i], pos + i);
+		}
+	}
+
+	/**
+	 * Deletes a whole code point, both chars of it if it is a surrogate pair.
+	 * 
+	 * @param codePointOffset number of code points before the one to delete
+	 * @return the deleted code point
+	 * @throws IndexOutOfBoundsException if codePointOffset is negative or not
+	 *                                   less than codePointCount()
+	 */
+	public int deleteCodePoint(int codePointOffset) throws IndexOutOfBoundsException {
+		if(codePointOffset < 0 || codePointOffset >= this.codePoints) {
+			throw new IndexOutOfBoundsException();
+		}
+		int pos = this.codePointOffsetToCharOffset(codePointOffset);
+		char high = this.delete(pos);
+		if(Character.isHighSurrogate(high) && pos < this.size && Character.isLowSurrogate(this.get(pos))) {
+			return Character.toCodePoint(high, this.delete(pos));
+		}
+		return high;
+	}
+
+	/**
+	 * @param codePointOffset number of code points before the one to return
+	 * @return the code point, put back together if it is a surrogate pair
+	 * @throws IndexOutOfBoundsException if codePointOffset is negative or not
+	 *                                   less than codePointCount()
+	 */
+	public int codePointAt(int codePointOffset) throws IndexOutOfBoundsException {
+		if(codePointOffset < 0 || codePointOffset >= this.codePoints) {
+			throw new IndexOutOfBoundsException();
+		}
+		int pos = this.codePointOffsetToCharOffset(codePointOffset);
+		char high = this.get(pos);
+		if(Character.isHighSurrogate(high) && pos + 1 < this.size && Character.isLowSurrogate(this.get(pos + 1))) {
+			return Character.toCodePoint(high, this.get(pos + 1));
+		}
+		return high;
+	}
+
+	/**
+	 * Language servers and file patches give offsets in UTF-8 bytes. Each node
+	 * keeps the UTF-8 length of its left subtree next to its rank, so the
+	 * conversions below are O(log n) and finding where a position is in a saved
+	 * file doesn't need to encode everything before it.
+	 * 
+	 * @return the length of this tree's text encoded as UTF-8. This is O(1).
+	 */
+	public int utf8Length() {
+		return this.utf8Bytes;
+	}
+
+	/**
+	 * @param pos position from 0 to size() inclusive
+	 * @return the number of bytes before pos when this tree is encoded as UTF-8
+	 * @throws IndexOutOfBoundsException if pos is negative or too big
+	 */
+	public int charIndexToByteOffset(int pos) throws IndexOutOfBoundsException {
+		if(pos < 0 || pos > this.size) {
+			throw new IndexOutOfBoundsException();
+		} else if(pos == this.size) {
+			return this.utf8Bytes;
+		}
+		return this.root.byteOffsetHelper(pos);
+	}
+
+	/**
+	 * @param byteOffset offset into the UTF-8 encoding of this tree, from 0 to
+	 *                   utf8Length() inclusive
+	 * @return the position of the character whose encoding contains that byte
+	 *         (for a surrogate pair, its high surrogate), or size() if
+	 *         byteOffset is utf8Length()
+	 * @throws IndexOutOfBoundsException if byteOffset is negative or too big
+	 */
+	public int byteOffsetToCharIndex(int byteOffset) throws IndexOutOfBoundsException {
+		if(byteOffset < 0 || byteOffset > this.utf8Bytes) {
+			throw new IndexOutOfBoundsException();
+		} else if(byteOffset == this.utf8Bytes) {
+			return this.size;
+		}
+		return this.root.charIndexHelper(byteOffset);
+	}
+
+	/**
+	 * Checks rank, the code point and UTF-8 counts, balance codes and the cached
+	 * totals together, in one O(n) pass with O(height) memory, so unlike calling
+	 * ranksMatchLeftSubtreeSize() and balanceCodesAreCorrect() it is cheap enough
+	 * to run on real documents.
+	 * 
+	 * @return true iff every invariant of this tree holds
+	 */
+	public boolean invariantsHold() {
+		return this.getAuditor().auditAll();
+	}
+
+	/**
+	 * Turns on sampled auditing: after every add and delete, this many random
+	 * root-to-leaf paths are checked, each in O(log n). 0 turns it off again.
+	 * 
+	 * @param paths number of paths to check per edit
+	 * @throws IllegalArgumentException if paths is negative
+	 */
+	public void setPathsAuditedPerEdit(int paths) {
+		if(paths < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.pathsAuditedPerEdit = paths;
+	}
+
+	// Throws IllegalStateException as soon as a sampled path shows the tree is
+	// corrupt, so the edit that broke it is still on the stack.
+	private void auditEdit() {
+		for(int i = 0; i < this.pathsAuditedPerEdit; i++) {
+			if(!this.getAuditor().auditRandomPath()) {
+				throw new IllegalStateException("Corrupt tree: " + this.auditor.problem());
+			}
+		}
+	}
+
+	/**
+	 * Adds a listener that is told about every add, delete and rotation from now
+	 * on. Listeners are kept in an array that is copied when one is added or
+	 * removed, so that a change doesn't allocate anything to notify them.
+	 * 
+	 * @param listener listener to add
+	 */
+	public void addChangeListener(EditTreeListener listener) {
+		if(listener == null) {
+			throw new NullPointerException();
+		}
+		EditTreeListener[] more = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+		more[this.listeners.length] = listener;
+		this.listeners = more;
+	}
+
+	/**
+	 * @param listener listener to stop telling about changes. Does nothing if it
+	 *                 wasn't added.
+	 */
+	public void removeChangeListener(EditTreeListener listener) {
+		for(int i = 0; i < this.listeners.length; i++) {
+			if(this.listeners[i] == listener) {
+				EditTreeListener[] fewer = new EditTreeListener[this.listeners.length - 1];
+				System.arraycopy(this.listeners, 0, fewer, 0, i);
+				System.arraycopy(this.listeners, i + 1, fewer, i, fewer.length - i);
+				this.listeners = fewer;
+				return;
+			}
+		}
+	}
+
+	void fireRotated(int from, int to, boolean doubleRotation) {
+		for(int i = 0; i < this.listeners.length; i++) {
+			this.listeners[i].rotated(this, from, to, doubleRotation);
+		}
+	}
+
+	/**
+	 * Starts or stops recording how long add, delete, get and get(pos, length)
+	 * take on this tree.
+	 * 
+	 * @param latencies histograms to record into, or null to stop recording
+	 */
+	public void setLatencies(EditTreeLatencies latencies) {
+		this.latencies = latencies;
+	}
+
+	/**
+	 * @return the histograms this tree records into, or null if it doesn't
+	 */
+	public EditTreeLatencies getLatencies() {
+		return this.latencies;
+	}
+
+	private TreeAuditor getAuditor() {
+		if(this.auditor == null) {
+			this.auditor = new TreeAuditor(this, System.nanoTime());
+		}
+		return this.auditor;
+	}
+
 	// Feel free to add whatever other methods and helpers you need,
 	// like for the graphical debugger.
 	
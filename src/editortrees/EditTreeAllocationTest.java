@@ -0,0 +1,69 @@
+package editortrees;
+
+import static editortrees.EditTreeFixtures.treeOfLetters;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Checks that add and delete don't allocate anything besides the added node,
+ * by reading the bytes the JVM has allocated on this thread.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditTreeAllocationTest {
+
+	private static final int NUM_EDITS = 100000;
+	// A node is a header, a char, a byte, three ints, two longs for its subtree
+	// hash and three references, which is 56 bytes with compressed references
+	// and at most 72 without.
+	private static final long MAX_BYTES_PER_NODE = 72;
+
+	private static long allocatedBytes() {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static void addAndDelete(EditTree t, int count, int seed) {
+		int cursor = seed % t.size();
+		for (int k = 0; k < count; k++) {
+			cursor = (cursor * 31 + 7) % t.size();
+			t.add('x', cursor);
+			t.delete((cursor * 17) % t.size());
+		}
+	}
+
+	@Test
+	public void test101AddAndDeleteOnlyAllocateTheAddedNode() {
+		EditTree t = treeOfLetters(10000);
+		addAndDelete(t, NUM_EDITS, 1); // warm up, so the JIT doesn't count
+		long before = allocatedBytes();
+		addAndDelete(t, NUM_EDITS, 2);
+		long used = allocatedBytes() - before;
+		assertTrue("Allocated " + used + " bytes for " + NUM_EDITS + " adds and deletes",
+				used <= NUM_EDITS * MAX_BYTES_PER_NODE + 4096);
+		assertEquals(10000, t.size());
+		assertTrue("Expected: true", t.ranksMatchLeftSubtreeSize());
+		assertTrue("Expected: true", t.balanceCodesAreCorrect());
+	}
+
+	@Test
+	public void test102DeleteAllocatesNothing() {
+		EditTree t = treeOfLetters(3 * NUM_EDITS);
+		t.delete(0); // warm up
+		long before = allocatedBytes();
+		for (int k = 0; k < NUM_EDITS; k++) {
+			t.delete((k * 7919) % t.size());
+		}
+		long used = allocatedBytes() - before;
+		assertTrue("Allocated " + used + " bytes for " + NUM_EDITS + " deletes", used <= 4096);
+		assertTrue("Expected: true", t.ranksMatchLeftSubtreeSize());
+	}
+}
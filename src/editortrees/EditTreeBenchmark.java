@@ -0,0 +1,71 @@
+package editortrees;
+
+import java.util.Random;
+
+/**
+ * Measures per-keystroke latency of typing into large documents. Each burst
+ * moves the cursor to a random position and then types characters one after
+ * another at that cursor, the way a user does, so after the first keystroke of
+ * a burst every add starts from the finger instead of the root.
+ *
+ * Run with the document sizes (in characters) to measure as arguments, e.g.
+ * java -Xmx12g editortrees.EditTreeBenchmark 1000000 10000000 100000000
+ * Every character is a node, so a 100 MB document needs a big heap.
+ *
+ * @author Medhansh Khattar
+ */
+public class EditTreeBenchmark {
+
+	private static final int[] DEFAULT_SIZES = { 1 << 16, 1 << 18, 1 << 20, 1 << 22 };
+	private static final int BURSTS = 2000;
+	private static final int KEYSTROKES_PER_BURST = 64;
+
+	public static void main(String[] args) {
+		int[] sizes = DEFAULT_SIZES;
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		System.out.printf("%12s %12s %18s %18s%n", "size", "height", "ns/keystroke", "ns/random add");
+		for (int size : sizes) {
+			EditTree t = buildDocument(size);
+			typeBursts(t, new Random(1)); // warm up
+			long typing = typeBursts(t, new Random(2));
+			long random = addAtRandomPositions(t, new Random(3));
+			int keystrokes = BURSTS * KEYSTROKES_PER_BURST;
+			System.out.printf("%12d %12d %18.1f %18.1f%n", size, t.slowHeight(), (double) typing / keystrokes,
+					(double) random / keystrokes);
+		}
+	}
+
+	private static EditTree buildDocument(int size) {
+		EditTree t = new EditTree();
+		for (int i = 0; i < size; i++) {
+			t.add((char) ('a' + i % 26));
+		}
+		return t;
+	}
+
+	// Returns the total time in nanoseconds.
+	private static long typeBursts(EditTree t, Random random) {
+		long start = System.nanoTime();
+		for (int burst = 0; burst < BURSTS; burst++) {
+			int cursor = random.nextInt(t.size() + 1);
+			for (int k = 0; k < KEYSTROKES_PER_BURST; k++) {
+				t.add('x', cursor++);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	// Same number of adds, but with no locality, so every add starts at the root.
+	private static long addAtRandomPositions(EditTree t, Random random) {
+		long start = System.nanoTime();
+		for (int k = 0; k < BURSTS * KEYSTROKES_PER_BURST; k++) {
+			t.add('x', random.nextInt(t.size() + 1));
+		}
+		return System.nanoTime() - start;
+	}
+}
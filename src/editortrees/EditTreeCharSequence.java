@@ -0,0 +1,67 @@
+package editortrees;
+
+/**
+ * The CharSequence returned by EditTree.asCharSequence(), which reads through
+ * to the tree instead of copying it. Each view has a read-only Finger, shared
+ * with the views subSequence() makes from it, so charAt() is O(log n) at a new
+ * position but amortized O(1) when reading in order, which is how regex
+ * matchers and parsers mostly read.
+ *
+ * Views see edits made after they were created. The view of the whole tree
+ * always ends where the tree does, while a subsequence keeps its positions,
+ * so an edit before it shifts what it holds, and charAt() throws once the
+ * tree is shorter than its end. Like the tree, views aren't thread-safe.
+ *
+ * @author Medhansh Khattar
+ */
+final class EditTreeCharSequence implements CharSequence {
+
+	private final EditTree tree;
+	private final Finger finger;
+	private final int start;
+	private final int end; // -1 for wherever the tree ends
+
+	EditTreeCharSequence(EditTree tree) {
+		this(tree, new Finger(tree, true), 0, -1);
+	}
+
+	private EditTreeCharSequence(EditTree tree, Finger finger, int start, int end) {
+		this.tree = tree;
+		this.finger = finger;
+		this.start = start;
+		this.end = end;
+	}
+
+	public int length() {
+		return (this.end < 0 ? this.tree.size() : this.end) - this.start;
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= this.length() || this.start + index >= this.tree.size()) {
+			throw new IndexOutOfBoundsException("index " + index + ", length " + this.length());
+		}
+		return this.finger.get(this.start + index);
+	}
+
+	/**
+	 * O(1): the subsequence is another view, not a copy.
+	 */
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || start > end || end > this.length()) {
+			throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + this.length());
+		}
+		return new EditTreeCharSequence(this.tree, this.finger, this.start + start, this.start + end);
+	}
+
+	/**
+	 * @return a copy of the characters in this view
+	 */
+	public String toString() {
+		int length = this.length();
+		StringBuilder builder = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			builder.append(this.charAt(i));
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,180 @@
+package editortrees;
+
+import static editortrees.EditTreeFixtures.treeOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for EditTree.asCharSequence().
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditTreeCharSequenceTest {
+
+	@Test
+	public void test101MatchesToString() {
+		EditTree t = treeOf("the quick brown fox");
+		CharSequence chars = t.asCharSequence();
+		assertEquals(19, chars.length());
+		assertEquals("the quick brown fox", chars.toString());
+		for (int i = 0; i < chars.length(); i++) {
+			assertEquals(t.get(i), chars.charAt(i));
+		}
+		assertEquals(0, new EditTree().asCharSequence().length());
+		assertEquals("", new EditTree().asCharSequence().toString());
+	}
+
+	@Test
+	public void test102SubSequences() {
+		EditTree t = treeOf("the quick brown fox");
+		CharSequence quick = t.asCharSequence().subSequence(4, 15);
+		assertEquals("quick brown", quick.toString());
+		assertEquals(11, quick.length());
+		assertEquals('q', quick.charAt(0));
+		CharSequence brown = quick.subSequence(6, 11);
+		assertEquals("brown", brown.toString());
+		assertEquals("", brown.subSequence(5, 5).toString());
+		try {
+			quick.subSequence(3, 12);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			quick.subSequence(4, 3);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			brown.charAt(5);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			brown.charAt(-1);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void test103SeesEdits() {
+		EditTree t = treeOf("abcdef");
+		CharSequence chars = t.asCharSequence();
+		CharSequence middle = chars.subSequence(2, 4);
+		assertEquals('c', chars.charAt(2));
+		assertEquals("cd", middle.toString());
+		t.add('X', 0);
+		// the whole view grows, the subsequence keeps its positions
+		assertEquals("Xabcdef", chars.toString());
+		assertEquals("bc", middle.toString());
+		assertEquals('b', chars.charAt(2));
+		for (int i = 0; i < 5; i++) {
+			t.delete(0);
+		}
+		assertEquals("ef", chars.toString());
+		try {
+			middle.charAt(0);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void test104RandomReadsBetweenEdits() {
+		Random random = new Random(53);
+		EditTree t = new EditTree();
+		StringBuilder expected = new StringBuilder();
+		CharSequence chars = t.asCharSequence();
+		for (int k = 0; k < 20000; k++) {
+			if (expected.length() > 0 && random.nextInt(3) == 0) {
+				int pos = random.nextInt(expected.length());
+				assertEquals(expected.charAt(pos), chars.charAt(pos));
+				if (random.nextBoolean()) {
+					t.delete(pos);
+					expected.deleteCharAt(pos);
+				}
+			} else {
+				int pos = random.nextInt(expected.length() + 1);
+				char ch = (char) ('a' + random.nextInt(26));
+				t.add(ch, pos);
+				expected.insert(pos, ch);
+			}
+		}
+		assertEquals(expected.toString(), chars.toString());
+	}
+
+	@Test
+	public void test105RegexRunsOnTheView() {
+		EditTree t = treeOf("error at 12:04, warning at 12:05, error at 13:30");
+		Matcher m = Pattern.compile("error at (\\d+):(\\d+)").matcher(t.asCharSequence());
+		assertTrue(m.find());
+		assertEquals("12", m.group(1));
+		assertTrue(m.find());
+		assertEquals(34, m.start());
+		assertEquals("30", m.group(2));
+		assertTrue(!m.find());
+	}
+
+	@Test
+	public void test106ReadingASplayTreeDoesNotRotate() {
+		EditTree t = new EditTree(BalancingPolicy.SPLAY);
+		Random random = new Random(59);
+		for (int i = 0; i < 2000; i++) {
+			t.add((char) ('a' + i % 26), random.nextInt(t.size() + 1));
+		}
+		String text = t.toString();
+		String shape = t.toDebugString();
+		int rotations = t.totalRotationCount();
+		CharSequence chars = t.asCharSequence();
+		for (int k = 0; k < 1000; k++) {
+			int pos = random.nextInt(text.length());
+			assertEquals(text.charAt(pos), chars.charAt(pos));
+		}
+		assertEquals(rotations, t.totalRotationCount());
+		assertEquals(shape, t.toDebugString());
+		// reads through the tree itself splay, and the view notices
+		t.get(1000);
+		for (int k = 0; k < 1000; k++) {
+			int pos = random.nextInt(text.length());
+			assertEquals(text.charAt(pos), chars.charAt(pos));
+		}
+	}
+
+	@Test
+	public void test107SplayingReadsBetweenViewReads() {
+		Random random = new Random(61);
+		for (int trial = 0; trial < 200; trial++) {
+			EditTree t = new EditTree(BalancingPolicy.SPLAY);
+			for (int i = 0; i < 300; i++) {
+				t.add((char) ('a' + random.nextInt(26)), random.nextInt(t.size() + 1));
+			}
+			String text = t.toString();
+			CharSequence chars = t.asCharSequence();
+			for (int k = 0; k < 50; k++) {
+				int pos = random.nextInt(text.length());
+				assertEquals(text.charAt(pos), chars.charAt(pos));
+				assertEquals(text.charAt(pos + 1 - pos % 2), chars.charAt(pos + 1 - pos % 2));
+				// splaying back to the old root leaves the root the same, but not
+				// what is below it
+				int rootPos = t.root.rank;
+				t.get(random.nextInt(text.length()));
+				t.get(rootPos);
+			}
+		}
+	}
+}
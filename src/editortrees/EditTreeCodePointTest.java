@@ -0,0 +1,122 @@
+package editortrees;
+
+import static editortrees.EditTreeFixtures.treeOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for the code point counts kept next to rank and the code point
+ * versions of add, delete and get.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditTreeCodePointTest {
+
+	private static final int GRINNING_FACE = 0x1F600;
+	private static final int G_CLEF = 0x1D11E;
+
+	@Test
+	public void test101BmpOnly() {
+		EditTree t = treeOf("abcdefg");
+		assertEquals(7, t.codePointCount());
+		for (int i = 0; i <= 7; i++) {
+			assertEquals(i, t.codePointOffsetToCharOffset(i));
+			assertEquals(i, t.charOffsetToCodePointOffset(i));
+		}
+	}
+
+	@Test
+	public void test102SurrogatePairsCountOnce() {
+		String s = "a" + new String(Character.toChars(GRINNING_FACE)) + "b" + new String(Character.toChars(G_CLEF));
+		EditTree t = treeOf(s);
+		assertEquals(6, t.size());
+		assertEquals(4, t.codePointCount());
+		assertEquals(0, t.codePointOffsetToCharOffset(0));
+		assertEquals(1, t.codePointOffsetToCharOffset(1));
+		assertEquals(3, t.codePointOffsetToCharOffset(2));
+		assertEquals(4, t.codePointOffsetToCharOffset(3));
+		assertEquals(6, t.codePointOffsetToCharOffset(4));
+		assertEquals(GRINNING_FACE, t.codePointAt(1));
+		assertEquals('b', t.codePointAt(2));
+		assertEquals(G_CLEF, t.codePointAt(3));
+	}
+
+	@Test
+	public void test103AddAndDeleteCodePoints() {
+		EditTree t = treeOf("xyz");
+		t.addCodePoint(GRINNING_FACE, 1);
+		t.addCodePoint(G_CLEF, 2);
+		t.addCodePoint('w', 0);
+		assertEquals("wx" + new String(Character.toChars(GRINNING_FACE)) + new String(Character.toChars(G_CLEF))
+				+ "yz", t.toString());
+		assertEquals(6, t.codePointCount());
+		assertEquals(GRINNING_FACE, t.deleteCodePoint(2));
+		assertEquals("wx" + new String(Character.toChars(G_CLEF)) + "yz", t.toString());
+		assertEquals(5, t.codePointCount());
+		assertEquals('z', t.deleteCodePoint(4));
+		assertTrue("Expected: true", t.ranksMatchLeftSubtreeSize());
+	}
+
+	@Test
+	public void test104ThrowsCodePointIndexExceptions() {
+		EditTree t = treeOf("ab");
+		t.addCodePoint(GRINNING_FACE, 2);
+		try {
+			t.codePointOffsetToCharOffset(4);
+			fail("Did not throw IndexOutOfBoundsException for code point offset past the end");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.deleteCodePoint(3);
+			fail("Did not throw IndexOutOfBoundsException for deleting past the end");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.charOffsetToCodePointOffset(-1);
+			fail("Did not throw IndexOutOfBoundsException for negative position");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void test105RandomEditsMatchString() {
+		Random random = new Random(30);
+		EditTree t = new EditTree();
+		StringBuilder expected = new StringBuilder();
+		for (int k = 0; k < 5000; k++) {
+			int count = expected.codePointCount(0, expected.length());
+			if (random.nextInt(3) < 2 || count == 0) {
+				int codePoint = random.nextBoolean() ? 'a' + random.nextInt(26) : GRINNING_FACE + random.nextInt(50);
+				int offset = random.nextInt(count + 1);
+				t.addCodePoint(codePoint, offset);
+				expected.insert(expected.offsetByCodePoints(0, offset), Character.toChars(codePoint));
+			} else {
+				int offset = random.nextInt(count);
+				int pos = expected.offsetByCodePoints(0, offset);
+				int codePoint = expected.codePointAt(pos);
+				assertEquals(codePoint, t.deleteCodePoint(offset));
+				expected.delete(pos, pos + Character.charCount(codePoint));
+			}
+		}
+		assertEquals(expected.toString(), t.toString());
+		int count = expected.codePointCount(0, expected.length());
+		assertEquals(count, t.codePointCount());
+		for (int offset = 0; offset <= count; offset++) {
+			assertEquals(expected.offsetByCodePoints(0, offset), t.codePointOffsetToCharOffset(offset));
+		}
+		for (int pos = 0; pos <= expected.length(); pos++) {
+			assertEquals(expected.codePointCount(0, pos), t.charOffsetToCodePointOffset(pos));
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package editortrees;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder events for EditTree operations, so a recording shows which
+ * buffers are edited where and how long it takes. They are disabled by default;
+ * turn them on in a recording's settings, e.g. with
+ * -XX:StartFlightRecording:settings=profile,+editortrees.Edit#enabled=true
+ *
+ * Events are only allocated while a recording has them enabled, so when they
+ * are off an operation just reads one flag, and add and delete still allocate
+ * nothing but their node.
+ *
+ * @author Medhansh Khattar
+ */
+final class EditTreeEvents {
+
+	@Name("editortrees.Edit")
+	@Label("Edit Tree Operation")
+	@Category("Editor Trees")
+	@Description("An add, delete or range get on an EditTree")
+	@Enabled(false)
+	@StackTrace(false)
+	static class Edit extends Event {
+		@Label("Operation")
+		String operation;
+		@Label("Position")
+		int position;
+		@Label("Length")
+		int length;
+		@Label("Tree Size")
+		@Description("Number of characters in the tree after the operation")
+		int size;
+	}
+
+	@Name("editortrees.Rotation")
+	@Label("Edit Tree Rotation")
+	@Category("Editor Trees")
+	@Description("A rotation while rebalancing an EditTree after an add or delete")
+	@Enabled(false)
+	@StackTrace(false)
+	static class Rotation extends Event {
+		@Label("Kind")
+		@Description("single or double")
+		String kind;
+		@Label("Depth")
+		@Description("Depth of the node that was rotated, 0 for the root")
+		int depth;
+		@Label("Low")
+		@Description("Position of the first character in the rotated subtree")
+		int low;
+		@Label("High")
+		@Description("Position one past the last character in the rotated subtree")
+		int high;
+		@Label("Tree Size")
+		int size;
+	}
+
+	@Name("editortrees.BulkLoad")
+	@Label("Edit Tree Bulk Load")
+	@Category("Editor Trees")
+	@Description("Building a whole EditTree at once")
+	@Enabled(false)
+	@StackTrace(false)
+	static class BulkLoad extends Event {
+		@Label("Source")
+		String source;
+		@Label("Tree Size")
+		int size;
+	}
+
+	private static final EventType EDIT = EventType.getEventType(Edit.class);
+	private static final EventType ROTATION = EventType.getEventType(Rotation.class);
+	private static final EventType BULK_LOAD = EventType.getEventType(BulkLoad.class);
+
+	private EditTreeEvents() {
+	}
+
+	/**
+	 * @return a started event, or null if no recording has edit events enabled
+	 */
+	static Edit beginEdit() {
+		if (!EDIT.isEnabled()) {
+			return null;
+		}
+		Edit event = new Edit();
+		event.begin();
+		return event;
+	}
+
+	static void endEdit(Edit event, String operation, int position, int length, int size) {
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = operation;
+			event.position = position;
+			event.length = length;
+			event.size = size;
+			event.commit();
+		}
+	}
+
+	static boolean rotationsEnabled() {
+		return ROTATION.isEnabled();
+	}
+
+	static void rotation(int rotations, int depth, int low, int high, int size) {
+		Rotation event = new Rotation();
+		event.kind = rotations == 2 ? "double" : "single";
+		event.depth = depth;
+		event.low = low;
+		event.high = high;
+		event.size = size;
+		event.commit();
+	}
+
+	/**
+	 * @return a started event, or null if no recording has bulk load events
+	 *         enabled
+	 */
+	static BulkLoad beginBulkLoad() {
+		if (!BULK_LOAD.isEnabled()) {
+			return null;
+		}
+		BulkLoad event = new BulkLoad();
+		event.begin();
+		return event;
+	}
+
+	static void endBulkLoad(BulkLoad event, String source, int size) {
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.source = source;
+			event.size = size;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests that EditTree operations show up in flight recordings, but only when
+ * the recording enables their events.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditTreeEventsTest {
+
+	private static List<RecordedEvent> eventsOf(Recording recording) throws IOException {
+		recording.stop();
+		Path file = Files.createTempFile("edittree", ".jfr");
+		try {
+			recording.dump(file);
+			return RecordingFile.readAllEvents(file);
+		} finally {
+			recording.close();
+			Files.delete(file);
+		}
+	}
+
+	private static int count(List<RecordedEvent> events, String name) {
+		int count = 0;
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals(name)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void test101EditEvents() throws IOException {
+		Recording recording = new Recording();
+		recording.enable("editortrees.Edit").withoutThreshold();
+		recording.start();
+		EditTree t = new EditTree();
+		t.add('a');
+		t.add('c');
+		t.add('b', 1);
+		t.delete(0);
+		t.get(0, 2);
+		List<RecordedEvent> events = eventsOf(recording);
+		assertEquals(5, count(events, "editortrees.Edit"));
+		RecordedEvent last = null;
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals("editortrees.Edit")
+					&& event.getString("operation").equals("delete")) {
+				last = event;
+			}
+		}
+		assertEquals(0, last.getInt("position"));
+		assertEquals(1, last.getInt("length"));
+		assertEquals(2, last.getInt("size"));
+	}
+
+	@Test
+	public void test102RotationEvents() throws IOException {
+		Recording recording = new Recording();
+		recording.enable("editortrees.Rotation");
+		recording.start();
+		EditTree t = new EditTree();
+		t.add('a');
+		t.add('b');
+		t.add('c'); // single rotation at the root
+		t.add('e');
+		t.add('d', 3); // double rotation below the root
+		List<RecordedEvent> events = eventsOf(recording);
+		assertEquals(2, count(events, "editortrees.Rotation"));
+		for (RecordedEvent event : events) {
+			if (event.getString("kind").equals("single")) {
+				assertEquals(0, event.getInt("depth"));
+				assertEquals(0, event.getInt("low"));
+				assertEquals(3, event.getInt("high"));
+			} else {
+				assertEquals("double", event.getString("kind"));
+				assertEquals(1, event.getInt("depth"));
+				// c, d and e, right of the root b
+				assertEquals(2, event.getInt("low"));
+				assertEquals(5, event.getInt("high"));
+			}
+		}
+	}
+
+	@Test
+	public void test103BulkLoadEvents() throws IOException {
+		EditTree t = new EditTree();
+		for (int i = 0; i < 1000; i++) {
+			t.add('x');
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		t.writeSnapshot(out);
+		Recording recording = new Recording();
+		recording.enable("editortrees.BulkLoad").withoutThreshold();
+		recording.start();
+		new EditTree(t);
+		EditTree.readSnapshot(new ByteArrayInputStream(out.toByteArray()));
+		List<RecordedEvent> events = eventsOf(recording);
+		assertEquals(2, count(events, "editortrees.BulkLoad"));
+		for (RecordedEvent event : events) {
+			assertEquals(1000, event.getInt("size"));
+			assertTrue(event.getString("source").equals("copy") || event.getString("source").equals("snapshot"));
+		}
+	}
+
+	@Test
+	public void test104DisabledByDefault() throws IOException {
+		Recording recording = new Recording();
+		recording.start();
+		EditTree t = new EditTree();
+		for (int i = 0; i < 100; i++) {
+			t.add('x', i / 2);
+		}
+		t.get(0, 10);
+		List<RecordedEvent> events = eventsOf(recording);
+		assertEquals(0, count(events, "editortrees.Edit"));
+		assertEquals(0, count(events, "editortrees.Rotation"));
+	}
+
+	@Test
+	public void test105StringConstructorIsABulkLoad() throws IOException {
+		Recording recording = new Recording();
+		recording.enable("editortrees.BulkLoad").withoutThreshold();
+		recording.start();
+		new EditTree("a");
+		List<RecordedEvent> events = eventsOf(recording);
+		assertEquals(1, count(events, "editortrees.BulkLoad"));
+		for (RecordedEvent event : events) {
+			assertEquals("string", event.getString("source"));
+			assertEquals(1, event.getInt("size"));
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package editortrees;
+
+import static editortrees.EditTreeFixtures.treeOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for EditTree.find() and findAll().
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditTreeFindTest {
+
+	private static final String LOG = "12:00 INFO start\n12:01 ERROR disk full\n12:02 INFO retry\n"
+			+ "12:03 ERROR disk full\n12:04 WARN slow\n";
+
+	// What java.util.regex finds in the same region of the String.
+	private static void assertSameMatches(String text, EditTree t, Pattern pattern, int from, int to) {
+		Matcher expected = pattern.matcher(text);
+		expected.region(from, to);
+		expected.useTransparentBounds(true);
+		expected.useAnchoringBounds(false);
+		Iterator<MatchResult> actual = t.findAll(pattern, from, to);
+		while (expected.find()) {
+			assertTrue(actual.hasNext());
+			MatchResult match = actual.next();
+			assertEquals(expected.groupCount(), match.groupCount());
+			for (int group = 0; group <= expected.groupCount(); group++) {
+				assertEquals(expected.start(group), match.start(group));
+				assertEquals(expected.end(group), match.end(group));
+				assertEquals(expected.group(group), match.group(group));
+			}
+		}
+		assertTrue(!actual.hasNext());
+	}
+
+	@Test
+	public void test101FindFirstAndNext() {
+		EditTree t = treeOf(LOG);
+		Pattern error = Pattern.compile("(\\d\\d:\\d\\d) ERROR (.*)");
+		MatchResult first = t.find(error, 0, t.size());
+		assertEquals(17, first.start());
+		assertEquals("12:01", first.group(1));
+		assertEquals("disk full", first.group(2));
+		MatchResult next = t.find(error, first.end(), t.size());
+		assertEquals("12:03", next.group(1));
+		assertNull(t.find(error, next.end(), t.size()));
+		assertNull(t.find(Pattern.compile("FATAL"), 0, t.size()));
+		assertNull(new EditTree().find(error, 0, 0));
+	}
+
+	@Test
+	public void test102RangeLimitsTheMatches() {
+		EditTree t = treeOf(LOG);
+		Pattern info = Pattern.compile("INFO");
+		// a match must end by to
+		assertNull(t.find(info, 0, 9));
+		assertEquals(6, t.find(info, 0, 10).start());
+		// and start at from or later
+		assertEquals(45, t.find(info, 7, t.size()).start());
+	}
+
+	@Test
+	public void test103BoundsAreTransparent() {
+		EditTree t = treeOf("say hello, then hello");
+		// a range starting inside a word doesn't make a word boundary there
+		assertEquals(16, t.find(Pattern.compile("\\bhello"), 5, t.size()).start());
+		// lookbehind sees before the range
+		assertEquals(4, t.find(Pattern.compile("(?<=say )hello"), 4, t.size()).start());
+		// ^ means the start of the text or a line, not of the range
+		assertNull(t.find(Pattern.compile("^then"), 11, t.size()));
+		EditTree log = treeOf(LOG);
+		assertEquals(17, log.find(Pattern.compile("(?m)^12"), 1, log.size()).start());
+	}
+
+	@Test
+	public void test104SameAsStringMatcher() {
+		Random random = new Random(61);
+		String[] patterns = { "ab+", "a*", "(a|b)(c)?", "\\bba", "(?<=c)a", "$", "b{2,3}", "(?m)^c" };
+		for (int k = 0; k < 200; k++) {
+			StringBuilder text = new StringBuilder();
+			int length = random.nextInt(200);
+			for (int i = 0; i < length; i++) {
+				text.append("abc \n".charAt(random.nextInt(5)));
+			}
+			EditTree t = treeOf(text.toString());
+			int from = random.nextInt(length + 1);
+			int to = from + random.nextInt(length - from + 1);
+			for (String pattern : patterns) {
+				assertSameMatches(text.toString(), t, Pattern.compile(pattern), from, to);
+			}
+		}
+	}
+
+	@Test
+	public void test105EditsStopIteration() {
+		EditTree t = treeOf(LOG);
+		Iterator<MatchResult> matches = t.findAll(Pattern.compile("ERROR"), 0, t.size());
+		MatchResult match = matches.next();
+		assertEquals("ERROR", match.group());
+		t.add('x', 0);
+		try {
+			matches.hasNext();
+			fail("Did not throw ConcurrentModificationException");
+		} catch (ConcurrentModificationException e) {
+			// success
+		}
+		try {
+			match.group();
+			fail("Did not throw ConcurrentModificationException");
+		} catch (ConcurrentModificationException e) {
+			// success
+		}
+		// the positions are still there
+		assertEquals(23, match.start());
+	}
+
+	@Test
+	public void test106IteratorContract() {
+		EditTree t = treeOf("aaa");
+		Iterator<MatchResult> matches = t.findAll(Pattern.compile("a"), 0, 3);
+		assertTrue(matches.hasNext());
+		assertTrue(matches.hasNext());
+		assertEquals(0, matches.next().start());
+		assertEquals(1, matches.next().start());
+		assertEquals(2, matches.next().start());
+		assertTrue(!matches.hasNext());
+		try {
+			matches.next();
+			fail("Did not throw NoSuchElementException");
+		} catch (NoSuchElementException e) {
+			// success
+		}
+		MatchResult optional = t.find(Pattern.compile("(b)?a"), 0, 3);
+		assertNull(optional.group(1));
+		assertEquals(-1, optional.start(1));
+		try {
+			optional.group(2);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void test107BadRanges() {
+		EditTree t = treeOf("abc");
+		int[][] ranges = { { -1, 2 }, { 2, 1 }, { 0, 4 } };
+		for (int[] range : ranges) {
+			try {
+				t.find(Pattern.compile("a"), range[0], range[1]);
+				fail("Did not throw IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {
+				// success
+			}
+		}
+	}
+
+	@Test
+	public void test108SearchingASplayTreeDoesNotRotate() {
+		EditTree t = new EditTree(BalancingPolicy.SPLAY);
+		for (int i = 0; i < 20; i++) {
+			for (int j = 0; j < LOG.length(); j++) {
+				t.add(LOG.charAt(j));
+			}
+		}
+		int rotations = t.totalRotationCount();
+		int errors = 0;
+		Iterator<MatchResult> matches = t.findAll(Pattern.compile("ERROR"), 0, t.size());
+		while (matches.hasNext()) {
+			matches.next();
+			errors++;
+		}
+		assertEquals(40, errors);
+		assertEquals(rotations, t.totalRotationCount());
+	}
+
+	@Test
+	public void test109SplaysAndFallbackDoNotStopIteration() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			builder.append(LOG);
+		}
+		String text = builder.toString();
+		EditTree t = new EditTree(BalancingPolicy.SPLAY);
+		for (int i = 0; i < text.length(); i++) {
+			t.add(text.charAt(i));
+		}
+		t.setSplayFallbackDepth(60);
+		Matcher expected = Pattern.compile("ERROR (\\w+)").matcher(text);
+		Iterator<MatchResult> actual = t.findAll(Pattern.compile("ERROR (\\w+)"), 0, t.size());
+		Random random = new Random(67);
+		int count = 0;
+		while (expected.find()) {
+			assertTrue(actual.hasNext());
+			MatchResult match = actual.next();
+			// reads through the tree splay it, and one of them falls back to AVL
+			t.get(random.nextInt(t.size()));
+			t.get(count == 50 ? 0 : match.start());
+			assertEquals(expected.start(), match.start());
+			assertEquals(expected.group(1), match.group(1));
+			count++;
+		}
+		assertTrue(!actual.hasNext());
+		assertEquals(200, count);
+		assertEquals(BalancingPolicy.AVL, t.getBalancingPolicy());
+	}
+}
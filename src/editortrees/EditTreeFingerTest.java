@@ -0,0 +1,121 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests that operations starting from the finger (the remembered path to the
+ * last edit position) leave the tree exactly as a descent from the root would.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditTreeFingerTest {
+
+	@Test
+	public void test101TypingAtCursorKeepsRanksAndBalanceCodes() {
+		EditTree t = new EditTree();
+		StringBuilder expected = new StringBuilder();
+		Random random = new Random(17);
+		int cursor = 0;
+		for (int k = 0; k < 20000; k++) {
+			if (k % 50 == 0) {
+				cursor = random.nextInt(expected.length() + 1);
+			}
+			char ch = (char) ('a' + k % 26);
+			t.add(ch, cursor);
+			expected.insert(cursor, ch);
+			cursor++;
+		}
+		assertEquals(expected.toString(), t.toString());
+		assertTrue("Expected: true", t.ranksMatchLeftSubtreeSize());
+		assertTrue("Expected: true", t.balanceCodesAreCorrect());
+	}
+
+	@Test
+	public void test102SameShapeAsAddingFromRoot() {
+		// Gets move the finger around the tree between the adds.
+		EditTree t = new EditTree();
+		t.add('a');
+		t.add('b');
+		assertEquals('a', t.get(0));
+		t.add('c');
+		assertEquals('c', t.get(2));
+		t.add('d');
+		t.add('e', 0);
+		assertEquals('b', t.get(2));
+		t.add('f', 3);
+		assertEquals("[b2=, a1/, e0=, c1=, f0=, d0=]", t.toDebugString());
+		assertEquals(1, t.totalRotationCount());
+	}
+
+	@Test
+	public void test103SequentialGets() {
+		EditTree t = new EditTree();
+		String s = "the quick brown fox jumps over the lazy dog";
+		for (int i = 0; i < s.length(); i++) {
+			t.add(s.charAt(i));
+		}
+		for (int i = 0; i < s.length(); i++) {
+			assertEquals(s.charAt(i), t.get(i));
+		}
+		for (int i = s.length() - 1; i >= 0; i--) {
+			assertEquals(s.charAt(i), t.get(i));
+		}
+		assertEquals("quick brown", t.get(4, 11));
+	}
+
+	@Test
+	public void test104AddAfterDelete() {
+		EditTree t = new EditTree();
+		for (int i = 0; i < 100; i++) {
+			t.add((char) ('0' + i % 10));
+		}
+		StringBuilder expected = new StringBuilder(t.toString());
+		for (int i = 0; i < 30; i++) {
+			t.delete(40);
+			expected.deleteCharAt(40);
+			t.add('x', 40);
+			expected.insert(40, 'x');
+			t.add('y', 41);
+			expected.insert(41, 'y');
+		}
+		assertEquals(expected.toString(), t.toString());
+		assertTrue("Expected: true", t.ranksMatchLeftSubtreeSize());
+	}
+
+	@Test
+	public void test105RandomEditsNearEachOther() {
+		Random random = new Random(335);
+		for (int trial = 0; trial < 200; trial++) {
+			EditTree t = new EditTree();
+			StringBuilder expected = new StringBuilder();
+			int cursor = 0;
+			for (int k = 0; k < 200; k++) {
+				cursor = Math.max(0, Math.min(expected.length(), cursor + random.nextInt(7) - 3));
+				if (random.nextInt(3) < 2 || expected.length() == 0) {
+					char ch = (char) ('a' + random.nextInt(26));
+					t.add(ch, cursor);
+					expected.insert(cursor, ch);
+				} else {
+					int pos = Math.min(cursor, expected.length() - 1);
+					assertEquals(expected.charAt(pos), t.delete(pos));
+					expected.deleteCharAt(pos);
+				}
+				if (expected.length() > 0) {
+					int pos = random.nextInt(expected.length());
+					assertEquals(expected.charAt(pos), t.get(pos));
+				}
+			}
+			assertEquals(expected.toString(), t.toString());
+			assertTrue("Expected: true", t.ranksMatchLeftSubtreeSize());
+			assertTrue("Expected: true", t.balanceCodesAreCorrect());
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package editortrees;
+
+/**
+ * Trees that many of the tests start from, built the way an editor would:
+ * one add at a time, at the end.
+ *
+ * @author Medhansh Khattar
+ */
+final class EditTreeFixtures {
+
+	private EditTreeFixtures() {
+	}
+
+	/**
+	 * @return an AVL tree whose text is text
+	 */
+	static EditTree treeOf(String text) {
+		return treeOf(text, BalancingPolicy.AVL);
+	}
+
+	/**
+	 * @return a tree with this policy whose text is text
+	 */
+	static EditTree treeOf(String text, BalancingPolicy policy) {
+		EditTree t = new EditTree(policy);
+		for (int i = 0; i < text.length(); i++) {
+			t.add(text.charAt(i));
+		}
+		return t;
+	}
+
+	/**
+	 * @return an AVL tree of size characters, the alphabet over and over
+	 */
+	static EditTree treeOfLetters(int size) {
+		EditTree t = new EditTree();
+		for (int i = 0; i < size; i++) {
+			t.add((char) ('a' + i % 26));
+		}
+		return t;
+	}
+}
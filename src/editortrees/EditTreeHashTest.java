@@ -0,0 +1,208 @@
+package editortrees;
+
+import static editortrees.EditTreeFixtures.treeOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for EditTree.hash() and regionEquals(), and that the subtree hashes
+ * survive edits, rotations, copies and snapshots.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditTreeHashTest {
+
+	// Checks hash() and regionEquals() against the text on random ranges, which
+	// a two-letter alphabet makes equal often.
+	private static void assertHashesMatchText(EditTree t, String text, Random random) {
+		for (int k = 0; k < 300; k++) {
+			int length = random.nextInt(Math.min(text.length(), 12) + 1);
+			int pos1 = random.nextInt(text.length() - length + 1);
+			int pos2 = random.nextInt(text.length() - length + 1);
+			boolean equal = text.regionMatches(pos1, text, pos2, length);
+			assertEquals(equal, t.hash(pos1, length) == t.hash(pos2, length));
+			assertEquals(equal, t.regionEquals(pos1, pos2, length));
+		}
+	}
+
+	@Test
+	public void test101EqualTextHasEqualHashes() {
+		EditTree t = treeOf("abcabcxabc", BalancingPolicy.AVL);
+		assertEquals(t.hash(0, 3), t.hash(3, 3));
+		assertEquals(t.hash(0, 3), t.hash(7, 3));
+		assertTrue(t.hash(0, 3) != t.hash(1, 3));
+		assertTrue(t.regionEquals(0, 7, 3));
+		assertFalse(t.regionEquals(0, 4, 3));
+		assertEquals(0, t.hash(5, 0));
+		assertTrue(t.regionEquals(0, 10, 0));
+		// the same text in another tree, of another shape
+		EditTree other = treeOf("xxabc", BalancingPolicy.TREAP);
+		assertEquals(t.hash(0, 3), other.hash(2, 3));
+		assertEquals(t.hash(6, 4), other.hash(1, 4));
+	}
+
+	@Test
+	public void test102NullCharsAreNotNothing() {
+		EditTree t = treeOf("\0a\0\0a", BalancingPolicy.AVL);
+		assertFalse(t.hash(0, 2) == t.hash(1, 1));
+		assertFalse(t.regionEquals(0, 2, 2));
+		assertTrue(t.regionEquals(0, 3, 2));
+	}
+
+	@Test
+	public void test103HashesSurviveRandomEditsWithEveryPolicy() {
+		for (BalancingPolicy policy : BalancingPolicy.values()) {
+			Random random = new Random(43);
+			EditTree t = new EditTree(policy);
+			StringBuilder expected = new StringBuilder();
+			for (int k = 0; k < 6000; k++) {
+				if (expected.length() > 0 && random.nextInt(3) == 0) {
+					int pos = random.nextInt(expected.length());
+					t.delete(pos);
+					expected.deleteCharAt(pos);
+				} else if (expected.length() > 0 && random.nextInt(3) == 0) {
+					t.get(random.nextInt(expected.length()));
+				} else {
+					int pos = random.nextInt(expected.length() + 1);
+					char ch = random.nextBoolean() ? 'a' : 'b';
+					t.add(ch, pos);
+					expected.insert(pos, ch);
+				}
+				if (k % 1000 == 999) {
+					assertTrue(policy.name(), t.invariantsHold());
+					assertHashesMatchText(t, expected.toString(), random);
+				}
+			}
+			// a fresh tree of the same text has the same hashes
+			String text = expected.toString();
+			EditTree fresh = treeOf(text, BalancingPolicy.AVL);
+			for (int k = 0; k < 100; k++) {
+				int pos = random.nextInt(text.length());
+				int length = random.nextInt(text.length() - pos + 1);
+				assertEquals(policy.name(), fresh.hash(pos, length), t.hash(pos, length));
+			}
+			assertEquals(fresh.hash(0, text.length()), t.hash(0, t.size()));
+		}
+	}
+
+	@Test
+	public void test104CopiesSnapshotsAndFallbackKeepHashes() throws IOException {
+		Random random = new Random(47);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			text.append(random.nextBoolean() ? 'a' : 'b');
+		}
+		EditTree t = treeOf(text.toString(), BalancingPolicy.RED_BLACK);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		t.writeSnapshot(bytes);
+		EditTree read = EditTree.readSnapshot(new ByteArrayInputStream(bytes.toByteArray()));
+		EditTree splayed = treeOf(text.toString(), BalancingPolicy.SPLAY);
+		splayed.setSplayFallbackDepth(30);
+		splayed.get(0);
+		assertEquals(BalancingPolicy.AVL, splayed.getBalancingPolicy());
+		for (EditTree other : new EditTree[] { new EditTree(t), read, splayed }) {
+			assertTrue(other.invariantsHold());
+			assertEquals(t.hash(0, t.size()), other.hash(0, other.size()));
+			assertHashesMatchText(other, text.toString(), random);
+		}
+	}
+
+	@Test
+	public void test105FindsDuplicateLines() {
+		String text = "int a;\nint b;\nint a;\n\nreturn;\nint b;\n\nint a;\n";
+		EditTree t = treeOf(text, BalancingPolicy.AVL);
+		// the first line each line duplicates, found by hashing lines
+		HashMap<Long, Integer> firstLineWithHash = new HashMap<Long, Integer>();
+		StringBuilder duplicates = new StringBuilder();
+		int start = 0;
+		int line = 0;
+		for (int end = text.indexOf('\n'); end >= 0; end = text.indexOf('\n', start)) {
+			Long hash = t.hash(start, end - start + 1);
+			Integer first = firstLineWithHash.get(hash);
+			if (first == null) {
+				firstLineWithHash.put(hash, line);
+			} else {
+				duplicates.append(line).append('=').append(first).append(' ');
+			}
+			start = end + 1;
+			line++;
+		}
+		assertEquals("2=0 5=1 6=3 7=0 ", duplicates.toString());
+		// and change detection: an edit inside the region changes its hash
+		long before = t.hash(7, 7);
+		t.delete(11);
+		t.add('c', 11);
+		assertFalse(before == t.hash(7, 7));
+		assertFalse(t.regionEquals(7, 35, 7));
+		t.delete(11);
+		t.add('b', 11);
+		assertEquals(before, t.hash(7, 7));
+	}
+
+	@Test
+	public void test106OverlappingRegions() {
+		EditTree t = treeOf("aaaaaaab", BalancingPolicy.WEIGHT_BALANCED);
+		assertTrue(t.regionEquals(0, 1, 6));
+		assertFalse(t.regionEquals(0, 1, 7));
+		assertTrue(t.regionEquals(3, 3, 5));
+	}
+
+	@Test
+	public void test107BadRanges() {
+		EditTree t = treeOf("abcdef", BalancingPolicy.AVL);
+		int[][] hashRanges = { { -1, 2 }, { 0, -1 }, { 5, 2 }, { 7, 0 } };
+		for (int[] range : hashRanges) {
+			try {
+				t.hash(range[0], range[1]);
+				fail("Did not throw IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {
+				// success
+			}
+		}
+		int[][] regions = { { -1, 0, 1 }, { 0, -1, 1 }, { 0, 0, -1 }, { 0, 4, 3 }, { 4, 0, 3 } };
+		for (int[] region : regions) {
+			try {
+				t.regionEquals(region[0], region[1], region[2]);
+				fail("Did not throw IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {
+				// success
+			}
+		}
+		assertEquals(0, new EditTree().hash(0, 0));
+		assertEquals(t.hash(0, 6), t.hash(0, t.size()));
+	}
+
+	@Test
+	public void test108ModularArithmeticNearTheLimits() {
+		BigInteger modulus = BigInteger.valueOf(Node.HASH_MODULUS);
+		long[] values = { 0, 1, 2, 0x7fffffffL, 1L << 31, 1L << 60, Node.HASH_MODULUS - 2, Node.HASH_MODULUS - 1,
+				Node.HASH_BASE };
+		for (long a : values) {
+			for (long b : values) {
+				BigInteger expected = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).mod(modulus);
+				assertEquals(a + " * " + b, expected.longValue(), Node.multiplyModulo(a, b));
+			}
+		}
+		// read as unsigned, like the sums multiplyModulo reduces
+		long[] sums = { -1, Long.MIN_VALUE, Long.MIN_VALUE + (1L << 32), Long.MAX_VALUE, Node.HASH_MODULUS,
+				2 * Node.HASH_MODULUS + 1 };
+		for (long x : sums) {
+			BigInteger unsigned = new BigInteger(Long.toUnsignedString(x));
+			assertEquals(Long.toUnsignedString(x), unsigned.mod(modulus).longValue(), Node.reduceModulo(x));
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests that fastHeight(), which follows the balance codes down the taller
+ * side, agrees with the height found by visiting every node.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditTreeHeightTest {
+
+	@Test
+	public void test101FastHeightFollowsBalanceCodes() {
+		Random random = new Random(4);
+		EditTree t = new EditTree();
+		assertEquals(-1, t.fastHeight());
+		for (int k = 0; k < 20000; k++) {
+			if (random.nextInt(4) < 3 || t.size() == 0) {
+				t.add('x', random.nextInt(t.size() + 1));
+			} else {
+				t.delete(random.nextInt(t.size()));
+			}
+			if (k % 1000 == 0) {
+				assertEquals(t.slowHeight(), t.fastHeight());
+			}
+		}
+		assertEquals(t.slowHeight(), t.fastHeight());
+		assertTrue("Expected: true", t.balanceCodesAreCorrect());
+	}
+}
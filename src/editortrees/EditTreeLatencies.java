@@ -0,0 +1,44 @@
+package editortrees;
+
+/**
+ * Latency histograms for the operations on an EditTree, for dashboards to
+ * scrape. Attach one with EditTree.setLatencies(); a tree without one doesn't
+ * read the clock at all.
+ *
+ * One instance can be shared by several trees to get totals for all of them.
+ *
+ * @author Medhansh Khattar
+ */
+public class EditTreeLatencies {
+
+	public final LatencyHistogram add = new LatencyHistogram();
+	public final LatencyHistogram delete = new LatencyHistogram();
+	public final LatencyHistogram get = new LatencyHistogram();
+	public final LatencyHistogram getRange = new LatencyHistogram();
+
+	public void reset() {
+		this.add.reset();
+		this.delete.reset();
+		this.get.reset();
+		this.getRange.reset();
+	}
+
+	/**
+	 * @param prefix start of every metric name, e.g. "edittree"
+	 * @return all four histograms in the Prometheus text format, with
+	 *         latencies in nanoseconds
+	 */
+	public String toText(String prefix) {
+		StringBuilder out = new StringBuilder();
+		appendSummary(out, prefix + "_add_nanos", this.add.snapshot());
+		appendSummary(out, prefix + "_delete_nanos", this.delete.snapshot());
+		appendSummary(out, prefix + "_get_nanos", this.get.snapshot());
+		appendSummary(out, prefix + "_get_range_nanos", this.getRange.snapshot());
+		return out.toString();
+	}
+
+	private static void appendSummary(StringBuilder out, String name, LatencyHistogram.Snapshot snapshot) {
+		out.append("# TYPE ").append(name).append(" summary\n");
+		snapshot.appendText(out, name);
+	}
+}
@@ -0,0 +1,35 @@
+package editortrees;
+
+/**
+ * Gets told about every change to an EditTree it is added to with
+ * EditTree.addChangeListener(). The methods are called on the thread that made
+ * the change, right after it, so they should be quick.
+ *
+ * @author Medhansh Khattar
+ */
+public interface EditTreeListener {
+
+	/**
+	 * ch was added at in-order position pos. Any rotations the add caused have
+	 * already been reported.
+	 */
+	void inserted(EditTree tree, int pos, char ch);
+
+	/**
+	 * ch was deleted from in-order position pos. Any rotations the delete caused
+	 * have already been reported.
+	 */
+	void deleted(EditTree tree, int pos, char ch);
+
+	/**
+	 * A subtree was rotated while rebalancing. The text didn't change, but the
+	 * shape of the tree did. A SPLAY tree that falls back to AVL is rebuilt
+	 * whole, which is reported as one single rotation from 0 to its size.
+	 *
+	 * @param from           in-order position of the first character in the
+	 *                       rotated subtree
+	 * @param to             one past the position of its last character
+	 * @param doubleRotation whether it was a double rotation
+	 */
+	void rotated(EditTree tree, int from, int to, boolean doubleRotation);
+}
@@ -0,0 +1,90 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for telling listeners about changes to an EditTree.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditTreeListenerTest {
+
+	private static class Recorder implements EditTreeListener {
+		final List<String> events = new ArrayList<String>();
+
+		public void inserted(EditTree tree, int pos, char ch) {
+			this.events.add("+" + ch + pos);
+		}
+
+		public void deleted(EditTree tree, int pos, char ch) {
+			this.events.add("-" + ch + pos);
+		}
+
+		public void rotated(EditTree tree, int from, int to, boolean doubleRotation) {
+			this.events.add((doubleRotation ? "double " : "single ") + from + "-" + to);
+		}
+	}
+
+	@Test
+	public void test101InsertsAndDeletes() {
+		EditTree t = new EditTree();
+		Recorder recorder = new Recorder();
+		t.addChangeListener(recorder);
+		t.add('a');
+		t.add('c');
+		t.add('b', 1); // double rotation at the root
+		t.delete(0);
+		assertEquals("[+a0, +c1, double 0-3, +b1, -a0]", recorder.events.toString());
+	}
+
+	@Test
+	public void test102RotationRanges() {
+		EditTree t = new EditTree();
+		for (char ch = 'a'; ch <= 'e'; ch++) {
+			t.add(ch);
+		}
+		Recorder recorder = new Recorder();
+		t.addChangeListener(recorder);
+		t.add('f'); // single rotation at the root
+		t.add('g'); // single rotation of e, f and g
+		assertEquals("[single 0-6, +f5, single 4-7, +g6]", recorder.events.toString());
+	}
+
+	@Test
+	public void test103RemovedListenersHearNothing() {
+		EditTree t = new EditTree();
+		Recorder first = new Recorder();
+		Recorder second = new Recorder();
+		t.addChangeListener(first);
+		t.addChangeListener(second);
+		t.add('x');
+		t.removeChangeListener(first);
+		t.add('y');
+		t.removeChangeListener(first);
+		t.delete(0);
+		assertEquals("[+x0]", first.events.toString());
+		assertEquals("[+x0, +y1, -x0]", second.events.toString());
+	}
+
+	@Test
+	public void test104FallingBackToAvlIsReported() {
+		EditTree t = new EditTree(BalancingPolicy.SPLAY);
+		for (int i = 0; i < 100; i++) {
+			t.add((char) ('a' + i % 26));
+		}
+		Recorder recorder = new Recorder();
+		t.addChangeListener(recorder);
+		t.setSplayFallbackDepth(30);
+		t.get(0); // the first character is 99 deep
+		assertEquals(BalancingPolicy.AVL, t.getBalancingPolicy());
+		assertEquals("[single 0-100]", recorder.events.toString());
+	}
+}
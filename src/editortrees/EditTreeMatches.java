@@ -0,0 +1,133 @@
+package editortrees;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The Iterator returned by EditTree.findAll(). One Matcher runs over the
+ * tree's CharSequence view with its region set to the range searched, so
+ * nothing is copied and only the characters the matcher reads are touched,
+ * reading in order through the view's Finger. The bounds of the region are
+ * transparent and not anchoring, so ^, $, \b and lookarounds see the text
+ * around the range as if the whole document were being searched.
+ *
+ * The MatchResults keep only positions, and copy a group's text when it is
+ * asked for. Both the iterator and its results throw
+ * ConcurrentModificationException once the tree is edited, but not when
+ * reading a SPLAY tree restructures it, since that leaves the text and so the
+ * matches the same.
+ *
+ * @author Medhansh Khattar
+ */
+final class EditTreeMatches implements Iterator<MatchResult> {
+
+	private final EditTree tree;
+	private final CharSequence text;
+	private final Matcher matcher;
+	private final int modCount;
+	private Match next;
+	private boolean searched; // whether next is the match after the last one returned
+
+	EditTreeMatches(EditTree tree, Pattern pattern, int from, int to) {
+		this.tree = tree;
+		this.text = tree.asCharSequence();
+		this.matcher = pattern.matcher(this.text);
+		this.matcher.region(from, to);
+		this.matcher.useTransparentBounds(true);
+		this.matcher.useAnchoringBounds(false);
+		this.modCount = tree.modCount;
+	}
+
+	public boolean hasNext() {
+		if (!this.searched) {
+			this.checkForEdits();
+			this.next = this.matcher.find() ? new Match(this) : null;
+			this.searched = true;
+		}
+		return this.next != null;
+	}
+
+	public MatchResult next() {
+		if (!this.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		this.searched = false;
+		return this.next;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	// Only adds and deletes count: splays and the AVL fallback change just the
+	// tree's structureCount, after which the view's finger starts over from the
+	// root by itself.
+	private void checkForEdits() {
+		if (this.tree.modCount != this.modCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	// Matcher.toMatchResult() would copy the whole text with toString().
+	private static final class Match implements MatchResult {
+		private final EditTreeMatches matches;
+		private final int[] starts;
+		private final int[] ends;
+
+		Match(EditTreeMatches matches) {
+			Matcher matcher = matches.matcher;
+			this.matches = matches;
+			this.starts = new int[matcher.groupCount() + 1];
+			this.ends = new int[this.starts.length];
+			for (int i = 0; i < this.starts.length; i++) {
+				this.starts[i] = matcher.start(i);
+				this.ends[i] = matcher.end(i);
+			}
+		}
+
+		public int start() {
+			return this.starts[0];
+		}
+
+		public int start(int group) {
+			this.checkGroup(group);
+			return this.starts[group];
+		}
+
+		public int end() {
+			return this.ends[0];
+		}
+
+		public int end(int group) {
+			this.checkGroup(group);
+			return this.ends[group];
+		}
+
+		public String group() {
+			return this.group(0);
+		}
+
+		public String group(int group) {
+			this.checkGroup(group);
+			if (this.starts[group] < 0) {
+				return null; // the group didn't take part in the match
+			}
+			this.matches.checkForEdits();
+			return this.matches.text.subSequence(this.starts[group], this.ends[group]).toString();
+		}
+
+		public int groupCount() {
+			return this.starts.length - 1;
+		}
+
+		private void checkGroup(int group) {
+			if (group < 0 || group >= this.starts.length) {
+				throw new IndexOutOfBoundsException("No group " + group);
+			}
+		}
+	}
+}
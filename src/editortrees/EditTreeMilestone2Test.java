@@ -1432,7 +1432,7 @@ public class EditTreeMilestone2Test {
 		t.add('!');
 		assertTrue("Expected: true", t.balanceCodesAreCorrect());
 		// Make a balance code incorrect. It should have been SAME before this:
-		t.root.left.right.balance = Code.LEFT;
+		t.root.left.right.setBalance(Code.LEFT);
 		assertFalse("Expected: false", t.balanceCodesAreCorrect());
 
 		m2points += 2 * m2weight;
@@ -0,0 +1,99 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for writing a tree as a binary snapshot and reading it back.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditTreeSnapshotTest {
+
+	private static EditTree roundTrip(EditTree t) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		t.writeSnapshot(out);
+		assertEquals(8 + 3 * t.size(), out.size());
+		return EditTree.readSnapshot(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Test
+	public void test101EmptyTree() throws IOException {
+		EditTree copy = roundTrip(new EditTree());
+		assertEquals(0, copy.size());
+		assertEquals("", copy.toString());
+		copy.add('a');
+		assertEquals("[a0=]", copy.toDebugString());
+	}
+
+	@Test
+	public void test102SameShape() throws IOException {
+		EditTree t = new EditTree();
+		for (char ch = 'a'; ch <= 'k'; ch++) {
+			t.add(ch);
+		}
+		t.delete(3);
+		t.add('\u00e9', 0);
+		t.add('\ud83d', 5);
+		t.add('\ude00', 6);
+		EditTree copy = roundTrip(t);
+		assertEquals(t.toDebugString(), copy.toDebugString());
+		assertEquals(t.toString(), copy.toString());
+		assertEquals(t.size(), copy.size());
+		assertEquals(t.codePointCount(), copy.codePointCount());
+		assertEquals(t.utf8Length(), copy.utf8Length());
+		assertTrue(copy.invariantsHold());
+	}
+
+	@Test
+	public void test103NoRotationsWhenReading() throws IOException {
+		Random random = new Random(12);
+		EditTree t = new EditTree();
+		for (int i = 0; i < 100000; i++) {
+			t.add((char) ('a' + random.nextInt(26)), random.nextInt(t.size() + 1));
+		}
+		int rotations = t.totalRotationCount();
+		EditTree copy = roundTrip(t);
+		assertEquals(0, copy.totalRotationCount());
+		assertEquals(rotations, t.totalRotationCount());
+		assertEquals(t.toString(), copy.toString());
+		assertEquals(t.slowHeight(), copy.fastHeight());
+		assertTrue(copy.invariantsHold());
+		copy.add('x', 5000);
+		copy.delete(77);
+		assertTrue(copy.invariantsHold());
+	}
+
+	@Test
+	public void test104ReadsOnlyTheSnapshot() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new EditTree('a').writeSnapshot(out);
+		out.write(42);
+		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+		EditTree copy = EditTree.readSnapshot(in);
+		assertEquals("a", copy.toString());
+		assertTrue(copy.invariantsHold());
+		assertEquals(42, in.read());
+	}
+
+	@Test
+	public void test105RejectsOtherData() {
+		try {
+			EditTree.readSnapshot(new ByteArrayInputStream("hello, world".getBytes()));
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			// not a snapshot
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package editortrees;
+
+import static editortrees.EditTreeFixtures.treeOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for the UTF-8 lengths kept next to rank and the conversions between
+ * positions and UTF-8 byte offsets.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EditTreeUtf8OffsetTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static int encodedLength(String s) {
+		return s.getBytes(UTF8).length;
+	}
+
+	@Test
+	public void test101OneToFourByteCharacters() {
+		// 1, 2, 3 and 4 bytes
+		String s = "a\u00e9\u20ac" + new String(Character.toChars(0x1F600));
+		EditTree t = treeOf(s);
+		assertEquals(10, t.utf8Length());
+		assertEquals(0, t.charIndexToByteOffset(0));
+		assertEquals(1, t.charIndexToByteOffset(1));
+		assertEquals(3, t.charIndexToByteOffset(2));
+		assertEquals(6, t.charIndexToByteOffset(3));
+		assertEquals(10, t.charIndexToByteOffset(5));
+		assertEquals(0, t.byteOffsetToCharIndex(0));
+		assertEquals(1, t.byteOffsetToCharIndex(1));
+		assertEquals(1, t.byteOffsetToCharIndex(2));
+		assertEquals(2, t.byteOffsetToCharIndex(3));
+		assertEquals(3, t.byteOffsetToCharIndex(6));
+		assertEquals(3, t.byteOffsetToCharIndex(9));
+		assertEquals(5, t.byteOffsetToCharIndex(10));
+	}
+
+	@Test
+	public void test102ThrowsByteOffsetExceptions() {
+		EditTree t = treeOf("\u00e9t\u00e9");
+		try {
+			t.byteOffsetToCharIndex(6);
+			fail("Did not throw IndexOutOfBoundsException for byte offset past the end");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.charIndexToByteOffset(4);
+			fail("Did not throw IndexOutOfBoundsException for position past the end");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void test103RandomEditsMatchEncoder() {
+		Random random = new Random(31);
+		char[] alphabet = { 'a', 'z', '\n', '\u00e9', '\u03bb', '\u20ac', '\u4e2d' };
+		EditTree t = new EditTree();
+		StringBuilder expected = new StringBuilder();
+		for (int k = 0; k < 3000; k++) {
+			if (random.nextInt(4) < 3 || expected.length() == 0) {
+				int pos = random.nextInt(expected.length() + 1);
+				char ch = alphabet[random.nextInt(alphabet.length)];
+				t.add(ch, pos);
+				expected.insert(pos, ch);
+			} else {
+				int pos = random.nextInt(expected.length());
+				t.delete(pos);
+				expected.deleteCharAt(pos);
+			}
+		}
+		t.addCodePoint(0x1F600, 100);
+		expected.insert(expected.offsetByCodePoints(0, 100), Character.toChars(0x1F600));
+		String s = expected.toString();
+		assertEquals(s, t.toString());
+		assertEquals(encodedLength(s), t.utf8Length());
+		for (int pos = 0; pos <= s.length(); pos++) {
+			if (pos == s.length() || !Character.isLowSurrogate(s.charAt(pos))) {
+				int byteOffset = encodedLength(s.substring(0, pos));
+				assertEquals(byteOffset, t.charIndexToByteOffset(pos));
+				assertEquals(pos, t.byteOffsetToCharIndex(byteOffset));
+			}
+		}
+	}
+}
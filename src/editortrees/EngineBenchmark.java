@@ -0,0 +1,117 @@
+package editortrees;
+
+import java.util.Random;
+
+/**
+ * Compares the TextBuffer engines, the AVL EditTree, BPlusEditTree (with and
+ * without gap buffer leaves) and PieceTable, on the same documents: reading
+ * at random positions, reading every character in order, adding at random
+ * positions, typing bursts at a cursor like EditTreeBenchmark, and deleting
+ * at random positions. Another engine only needs a line in main().
+ *
+ * Run with the document sizes (in characters) to measure as arguments, e.g.
+ * java -Xmx12g editortrees.EngineBenchmark 1000000 10000000 100000000
+ * The EditTree needs a node per character, so a 100 MB document needs a big
+ * heap.
+ *
+ * @author Medhansh Khattar
+ */
+public class EngineBenchmark {
+
+	private static final int[] DEFAULT_SIZES = { 1 << 16, 1 << 20, 1 << 22 };
+	private static final int OPERATIONS = 1 << 17;
+	private static final int KEYSTROKES_PER_BURST = 64;
+
+	public static void main(String[] args) {
+		int[] sizes = DEFAULT_SIZES;
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		System.out.printf("%8s %12s %14s %14s %14s %14s %14s%n", "engine", "size", "ns/random get", "ns/next get",
+				"ns/random add", "ns/keystroke", "ns/delete");
+		for (int size : sizes) {
+			measure("AVL", new EditTree(), size);
+			measure("B+", new BPlusEditTree(false), size);
+			measure("B+ gap", new BPlusEditTree(true), size);
+			measure("pieces", new PieceTable(), size);
+		}
+	}
+
+	private static void measure(String name, TextBuffer engine, int size) {
+		for (int i = 0; i < size; i++) {
+			engine.add((char) ('a' + i % 26), i);
+		}
+		getAtRandomPositions(engine, new Random(1)); // warm up
+		long randomGets = getAtRandomPositions(engine, new Random(2));
+		long sequentialGets = getInOrder(engine);
+		long randomAdds = addAtRandomPositions(engine, new Random(3));
+		long typing = typeBursts(engine, new Random(4));
+		long deletes = deleteAtRandomPositions(engine, new Random(5));
+		System.out.printf("%8s %12d %14.1f %14.1f %14.1f %14.1f %14.1f%n", name, size,
+				(double) randomGets / OPERATIONS, (double) sequentialGets / size,
+				(double) randomAdds / OPERATIONS, (double) typing / OPERATIONS, (double) deletes / OPERATIONS);
+	}
+
+	// Each of these returns the total time in nanoseconds.
+	private static long getAtRandomPositions(TextBuffer engine, Random random) {
+		int sum = 0;
+		long start = System.nanoTime();
+		for (int k = 0; k < OPERATIONS; k++) {
+			sum += engine.get(random.nextInt(engine.size()));
+		}
+		long time = System.nanoTime() - start;
+		consume(sum);
+		return time;
+	}
+
+	private static long getInOrder(TextBuffer engine) {
+		int sum = 0;
+		long start = System.nanoTime();
+		for (int pos = 0; pos < engine.size(); pos++) {
+			sum += engine.get(pos);
+		}
+		long time = System.nanoTime() - start;
+		consume(sum);
+		return time;
+	}
+
+	private static long addAtRandomPositions(TextBuffer engine, Random random) {
+		long start = System.nanoTime();
+		for (int k = 0; k < OPERATIONS; k++) {
+			engine.add('x', random.nextInt(engine.size() + 1));
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long typeBursts(TextBuffer engine, Random random) {
+		long start = System.nanoTime();
+		for (int k = 0; k < OPERATIONS; k += KEYSTROKES_PER_BURST) {
+			int cursor = random.nextInt(engine.size() + 1);
+			for (int i = 0; i < KEYSTROKES_PER_BURST; i++) {
+				engine.add('x', cursor++);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long deleteAtRandomPositions(TextBuffer engine, Random random) {
+		int sum = 0;
+		long start = System.nanoTime();
+		for (int k = 0; k < OPERATIONS && engine.size() > 0; k++) {
+			sum += engine.delete(random.nextInt(engine.size()));
+		}
+		long time = System.nanoTime() - start;
+		consume(sum);
+		return time;
+	}
+
+	// Keeps the JIT from dropping the reads.
+	private static void consume(int sum) {
+		if (sum == 42) {
+			System.out.print("");
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package editortrees;
+
+import java.util.Arrays;
+
+import editortrees.Node.NodeContainer;
+
+/**
+ * Remembers the path from the root of an EditTree down to the node touched by
+ * the last operation, so that the next operation near the same position can
+ * start from the lowest remembered ancestor whose subtree contains it instead
+ * of descending from the root again.
+ *
+ * Since nodes don't have parent pointers, the path is kept in arrays, along
+ * with the range of in-order positions that each node's subtree covers. Typing
+ * at a cursor keeps hitting the bottom of the path, so the descent is amortized
+ * O(1); walking back up only touches the arrays, plus the rank of the ancestors
+ * whose left subtree grew.
+ *
+ * Views of the tree (EditTreeCharSequence) have read-only fingers of their
+ * own. Those never rotate, even in a SPLAY tree, since that would leave the
+ * tree's own finger with a stale path, and they start over from the root
+ * whenever the tree has been edited or restructured since they last read it:
+ * a splay can rotate below a root that stays the same, so checking the root
+ * isn't enough.
+ *
+ * @author Medhansh Khattar
+ */
+class Finger {
+
+	private static final int INITIAL_DEPTH = 64;
+
+	private final EditTree tree;
+	private Node[] path;
+	// low[i] is the in-order position of the first character in path[i]'s subtree,
+	// high[i] is one past its last character.
+	private int[] low;
+	private int[] high;
+	private int depth;
+	private final NodeContainer nc;
+	private final boolean readOnly;
+	// the tree's counts when a read-only finger last read it
+	private int modCount;
+	private int structureCount;
+
+	public Finger(EditTree tree) {
+		this(tree, false);
+	}
+
+	Finger(EditTree tree, boolean readOnly) {
+		this.tree = tree;
+		this.path = new Node[INITIAL_DEPTH];
+		this.low = new int[INITIAL_DEPTH];
+		this.high = new int[INITIAL_DEPTH];
+		this.depth = 0;
+		this.nc = new NodeContainer();
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Forgets the remembered path. Must be called whenever the tree is
+	 * restructured by something other than this finger.
+	 */
+	public void invalidate() {
+		this.depth = 0;
+	}
+
+	/**
+	 * @param pos in-order position of a character in the tree
+	 * @return the character at pos
+	 */
+	public char get(int pos) {
+		if (this.readOnly
+				&& (this.modCount != this.tree.modCount || this.structureCount != this.tree.structureCount)) {
+			this.depth = 0;
+			this.modCount = this.tree.modCount;
+			this.structureCount = this.tree.structureCount;
+		}
+		this.depth = this.deepestLevelContaining(pos, false) + 1;
+		while (true) {
+			Node node = this.path[this.depth - 1];
+			int offset = pos - this.low[this.depth - 1];
+			if (offset == node.rank) {
+				if (this.tree.balancer != null && !this.readOnly) {
+					this.tree.balancer.afterGet(this);
+				}
+				return node.data;
+			}
+			this.pushChildToward(node, offset);
+		}
+	}
+
+	/**
+	 * Adds ch at in-order position pos of a non-empty tree, rebalancing on the
+	 * way back up the remembered path exactly like a recursive add from the root
+	 * would.
+	 *
+	 * @param ch  character to add
+	 * @param pos in-order position, from 0 to the size of the tree inclusive
+	 */
+	public void insert(char ch, int pos) {
+		this.depth = this.deepestLevelContaining(pos, true) + 1;
+		Node parent = this.path[this.depth - 1];
+		int offset = pos - this.low[this.depth - 1];
+		while (offset <= parent.rank ? parent.left != Node.NULL_NODE : parent.right != Node.NULL_NODE) {
+			this.pushChildToward(parent, offset);
+			parent = this.path[this.depth - 1];
+			offset = pos - this.low[this.depth - 1];
+		}
+		Node newNode = this.tree.newNode(ch);
+		if (offset <= parent.rank) {
+			parent.left = newNode;
+		} else {
+			parent.right = newNode;
+		}
+		this.push(newNode, pos, pos);
+
+		if (this.tree.balancer != null) {
+			for (int level = this.depth - 1; level >= 0; level--) {
+				this.high[level]++;
+				if (level < this.depth - 1 && this.path[level].left == this.path[level + 1]) {
+					this.path[level].adjustLeftCounts(ch, 1);
+				}
+				this.path[level].updateHash();
+			}
+			this.tree.balancer.afterInsert(this);
+			return;
+		}
+		this.nc.reset();
+		Node child = newNode;
+		for (int level = this.depth - 1; level >= 0; level--) {
+			this.high[level]++;
+			if (level == this.depth - 1 && this.path[level] == newNode) {
+				continue;
+			}
+			Node node = this.path[level];
+			byte traversalDirection = node.left == child ? Node.LEFT : Node.RIGHT;
+			if (traversalDirection == Node.LEFT) {
+				node.adjustLeftCounts(ch, 1);
+			}
+			if (!this.nc.isBalanced) {
+				int rotations = this.tree.totalRotations;
+				Node subtreeRoot = node.balanceAfterInsert(traversalDirection, this.nc, this.tree);
+				if (subtreeRoot != node) {
+					this.replace(level, node, subtreeRoot);
+					node = subtreeRoot;
+					this.recordRotation(this.tree.totalRotations - rotations, level);
+				}
+			}
+			node.updateHash();
+			child = node;
+		}
+	}
+
+	/**
+	 * Deletes the character at in-order position pos. A node with two children
+	 * is replaced by relinking its in-order successor into its place, so no
+	 * nodes are allocated.
+	 *
+	 * @param pos in-order position of a character in the tree
+	 * @return the deleted character
+	 */
+	public char delete(int pos) {
+		this.depth = this.deepestLevelContaining(pos, false) + 1;
+		Node node = this.path[this.depth - 1];
+		int offset = pos - this.low[this.depth - 1];
+		while (offset != node.rank) {
+			this.pushChildToward(node, offset);
+			node = this.path[this.depth - 1];
+			offset = pos - this.low[this.depth - 1];
+		}
+		int level = this.depth - 1;
+		char successorData = node.data;
+		byte shrunkSide;
+		byte removedBalance = node.balance;
+		boolean relinked = node.hasLeft() && node.hasRight();
+		if (relinked) {
+			Node successor = this.relinkSuccessor(level, node);
+			successorData = successor.data;
+			removedBalance = successor.balance;
+			successor.balance = node.balance;
+			// the successor's old parent lost its left child, unless that parent
+			// was the deleted node itself
+			shrunkSide = this.depth - 1 == level ? Node.RIGHT : Node.LEFT;
+		} else {
+			shrunkSide = this.sideOf(level, node);
+			this.replace(level, node, node.hasLeft() ? node.left : node.right);
+			this.depth = level;
+		}
+		byte bottomSide = shrunkSide;
+
+		this.nc.reset();
+		for (int i = this.depth - 1; i >= 0; i--) {
+			// Every subtree left on the path lost exactly one character. Below the
+			// deleted node that is the successor, which was their first character,
+			// so no low position changes.
+			Node ancestor = this.path[i];
+			this.high[i]--;
+			if (i < this.depth - 1) {
+				shrunkSide = ancestor.left == this.path[i + 1] ? Node.LEFT : Node.RIGHT;
+			}
+			if (shrunkSide == Node.LEFT) {
+				// below the deleted node's level the successor is what moved out
+				ancestor.adjustLeftCounts(i > level ? successorData : node.data, -1);
+			}
+			if (this.tree.balancer == null && !this.nc.isBalanced) {
+				int rotations = this.tree.totalRotations;
+				Node subtreeRoot = ancestor.balanceAfterDelete(shrunkSide, this.nc, this.tree);
+				if (subtreeRoot != ancestor) {
+					this.replace(i, ancestor, subtreeRoot);
+					this.recordRotation(this.tree.totalRotations - rotations, i);
+				}
+			}
+			this.path[i].updateHash();
+		}
+		if (this.tree.balancer != null) {
+			this.tree.balancer.afterDelete(this, level, relinked, removedBalance, bottomSide);
+		}
+		return node.data;
+	}
+
+	// Unlinks the in-order successor of the node at this level and puts it in the
+	// node's place. The path then ends at the successor's old parent.
+	private Node relinkSuccessor(int level, Node node) {
+		this.pushChildToward(node, node.rank + 1);
+		while (this.path[this.depth - 1].hasLeft()) {
+			this.pushChildToward(this.path[this.depth - 1], 0);
+		}
+		Node successor = this.path[this.depth - 1];
+		this.replace(this.depth - 1, successor, successor.right);
+		this.depth--;
+
+		successor.left = node.left;
+		successor.right = node.right;
+		successor.copyLeftCountsFrom(node);
+		int successorDepth = this.depth;
+		this.replace(level, node, successor);
+		this.depth = successorDepth;
+		return successor;
+	}
+
+	// The rest is for the Balancers of the policies other than AVL, which
+	// rebalance by walking back up the path after the counts are updated.
+
+	int depth() {
+		return this.depth;
+	}
+
+	Node root() {
+		return this.tree.root;
+	}
+
+	EditTree tree() {
+		return this.tree;
+	}
+
+	Node node(int level) {
+		return this.path[level];
+	}
+
+	// the number of characters in the subtree at this level
+	int size(int level) {
+		return this.high[level] - this.low[level];
+	}
+
+	void truncate(int depth) {
+		this.depth = depth;
+	}
+
+	// Extends the path to the left or right child of its last node.
+	void descend(boolean left) {
+		Node node = this.path[this.depth - 1];
+		this.pushChildToward(node, left ? 0 : node.rank + 1);
+	}
+
+	// Rotates child, which must be a child of the node at this level, up into
+	// its place. The path then ends at child.
+	Node rotate(int level, Node child) {
+		Node node = this.path[level];
+		Node newRoot = node.left == child ? Node.rotateRight(node, child) : Node.rotateLeft(node, child);
+		this.tree.totalRotations++;
+		this.tree.structureCount++;
+		this.replace(level, node, newRoot);
+		this.recordRotation(1, level);
+		return newRoot;
+	}
+
+	private void recordRotation(int rotations, int level) {
+		if (EditTreeEvents.rotationsEnabled()) {
+			EditTreeEvents.rotation(rotations, level, this.low[level], this.high[level], this.tree.size());
+		}
+		this.tree.fireRotated(this.low[level], this.high[level], rotations == 2);
+	}
+
+	private byte sideOf(int level, Node node) {
+		if (level > 0 && this.path[level - 1].left == node) {
+			return Node.LEFT;
+		}
+		return Node.RIGHT;
+	}
+
+	// Returns the deepest level of the path whose subtree contains pos, starting
+	// over from the root if the path no longer belongs to the tree.
+	private int deepestLevelContaining(int pos, boolean inserting) {
+		if (this.depth == 0 || this.path[0] != this.tree.root) {
+			this.depth = 0;
+			this.push(this.tree.root, 0, this.tree.size());
+		}
+		int level = this.depth - 1;
+		while (level > 0 && !this.covers(level, pos, inserting)) {
+			level--;
+		}
+		return level;
+	}
+
+	private boolean covers(int level, int pos, boolean inserting) {
+		if (pos < this.low[level]) {
+			return false;
+		}
+		return pos < this.high[level] || (inserting && pos == this.high[level]);
+	}
+
+	private void pushChildToward(Node node, int offset) {
+		int nodeLow = this.low[this.depth - 1];
+		if (offset <= node.rank) {
+			this.push(node.left, nodeLow, nodeLow + node.rank);
+		} else {
+			this.push(node.right, nodeLow + node.rank + 1, this.high[this.depth - 1]);
+		}
+	}
+
+	private void push(Node node, int nodeLow, int nodeHigh) {
+		if (this.depth == this.path.length) {
+			this.path = Arrays.copyOf(this.path, this.depth * 2);
+			this.low = Arrays.copyOf(this.low, this.depth * 2);
+			this.high = Arrays.copyOf(this.high, this.depth * 2);
+		}
+		this.path[this.depth] = node;
+		this.low[this.depth] = nodeLow;
+		this.high[this.depth] = nodeHigh;
+		this.depth++;
+	}
+
+	// A rotation at this level changed the root of its subtree: link the new root
+	// into the parent and drop the now-stale part of the path below it.
+	private void replace(int level, Node oldSubtreeRoot, Node newSubtreeRoot) {
+		if (level == 0) {
+			this.tree.root = newSubtreeRoot;
+		} else if (this.path[level - 1].left == oldSubtreeRoot) {
+			this.path[level - 1].left = newSubtreeRoot;
+		} else {
+			this.path[level - 1].right = newSubtreeRoot;
+		}
+		this.path[level] = newSubtreeRoot;
+		this.depth = level + 1;
+	}
+}
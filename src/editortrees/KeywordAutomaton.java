@@ -0,0 +1,266 @@
+package editortrees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds every occurrence of any of a set of keywords in one pass over the
+ * text, with an Aho-Corasick automaton, instead of searching for each keyword
+ * in turn. Its states are the prefixes of the keywords; each character read
+ * moves to the longest prefix that the text read so far ends with, falling
+ * back along failure links when the next character doesn't extend it, so a
+ * scan is O(length of the text + number of matches) however many keywords
+ * there are.
+ *
+ * scan() goes in order over the Nodes of an EditTree range without copying
+ * it. It takes the state to start from and returns the state it ended in, so
+ * a scan can be split into pieces, and after an edit only the text from
+ * the last state saved before the edit on needs to be scanned again: the
+ * state at a position depends only on the text before it. Matches are
+ * reported as they are found, and with the start state, START, a scan of a
+ * range reports exactly the matches inside it.
+ *
+ * The automaton is compiled into flat arrays, with the edges out of each
+ * state sorted by character, so it takes a few ints per keyword character
+ * and can be shared by any number of scans at once.
+ *
+ * @author Medhansh Khattar
+ */
+public class KeywordAutomaton {
+
+	/**
+	 * The state to start a scan from at the start of a text, or anywhere the
+	 * text before doesn't matter.
+	 */
+	public static final int START = 0;
+
+	/**
+	 * Told about each match as it is found, in the order the matches end.
+	 * Matches that end at the same position are reported longest first.
+	 */
+	public interface Handler {
+		/**
+		 * @param keyword index of the keyword in the array it was given in
+		 * @param start   position of the first character of the match
+		 * @param end     one past the position of its last character
+		 */
+		void found(int keyword, int start, int end);
+	}
+
+	private final int[] keywordLengths;
+	private final int maxKeywordLength;
+	// The edges out of state s are edges[firstEdge[s]] up to
+	// edges[firstEdge[s + 1]], sorted by their labels.
+	private final int[] firstEdge;
+	private final char[] labels;
+	private final int[] edges;
+	private final int[] failure; // state for the longest proper suffix that is a prefix
+	private final int[] keyword; // keyword that ends in this state, or -1
+	private final int[] nextMatch; // nearest state on the failure chain with a keyword, or -1
+
+	/**
+	 * @param keywords strings to find. A keyword given more than once is
+	 *                 reported once, as the first of its indexes.
+	 * @throws IllegalArgumentException if a keyword is empty
+	 */
+	public KeywordAutomaton(String... keywords) {
+		this.keywordLengths = new int[keywords.length];
+		int longest = 0;
+		// the trie, with sorted maps while it is being built
+		ArrayList<TreeMap<Character, Integer>> children = new ArrayList<TreeMap<Character, Integer>>();
+		ArrayList<Integer> keywordOf = new ArrayList<Integer>();
+		children.add(new TreeMap<Character, Integer>());
+		keywordOf.add(-1);
+		int edgeCount = 0;
+		for (int k = 0; k < keywords.length; k++) {
+			String word = keywords[k];
+			if (word.length() == 0) {
+				throw new IllegalArgumentException("Keyword " + k + " is empty");
+			}
+			this.keywordLengths[k] = word.length();
+			longest = Math.max(longest, word.length());
+			int state = START;
+			for (int i = 0; i < word.length(); i++) {
+				Integer next = children.get(state).get(word.charAt(i));
+				if (next == null) {
+					next = children.size();
+					children.get(state).put(word.charAt(i), next);
+					children.add(new TreeMap<Character, Integer>());
+					keywordOf.add(-1);
+					edgeCount++;
+				}
+				state = next;
+			}
+			if (keywordOf.get(state) < 0) {
+				keywordOf.set(state, k);
+			}
+		}
+		this.maxKeywordLength = longest;
+
+		int states = children.size();
+		this.firstEdge = new int[states + 1];
+		this.labels = new char[edgeCount];
+		this.edges = new int[edgeCount];
+		this.keyword = new int[states];
+		int edge = 0;
+		for (int state = 0; state < states; state++) {
+			this.firstEdge[state] = edge;
+			for (Map.Entry<Character, Integer> entry : children.get(state).entrySet()) {
+				this.labels[edge] = entry.getKey();
+				this.edges[edge] = entry.getValue();
+				edge++;
+			}
+			this.keyword[state] = keywordOf.get(state);
+		}
+		this.firstEdge[states] = edge;
+
+		// Failure links in breadth-first order, so a state's is known before
+		// its children's are needed.
+		this.failure = new int[states];
+		this.nextMatch = new int[states];
+		this.nextMatch[START] = -1;
+		int[] queue = new int[states];
+		int head = 0;
+		int tail = 0;
+		for (int e = this.firstEdge[START]; e < this.firstEdge[START + 1]; e++) {
+			this.failure[this.edges[e]] = START;
+			this.nextMatch[this.edges[e]] = -1;
+			queue[tail++] = this.edges[e];
+		}
+		while (head < tail) {
+			int state = queue[head++];
+			for (int e = this.firstEdge[state]; e < this.firstEdge[state + 1]; e++) {
+				int child = this.edges[e];
+				int fallback = this.step(this.failure[state], this.labels[e]);
+				this.failure[child] = fallback;
+				this.nextMatch[child] = this.keyword[fallback] >= 0 ? fallback : this.nextMatch[fallback];
+				queue[tail++] = child;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of states, which are numbered from START up
+	 */
+	public int stateCount() {
+		return this.keyword.length;
+	}
+
+	/**
+	 * @return the length of the longest keyword. A match ending after a
+	 *         position can start at most this many characters minus one before
+	 *         it.
+	 */
+	public int maxKeywordLength() {
+		return this.maxKeywordLength;
+	}
+
+	/**
+	 * Reports every match that ends in the range from position from to position
+	 * to of tree, reading each character in it once. The handler mustn't edit
+	 * tree.
+	 *
+	 * @param state   START, or the state a scan that ended at from returned
+	 * @param handler told about each match
+	 * @return the state at to, to resume scanning from there
+	 * @throws IndexOutOfBoundsException unless 0 <= from <= to <= tree.size()
+	 * @throws IllegalArgumentException  if state isn't one of this automaton's
+	 */
+	public int scan(EditTree tree, int from, int to, int state, Handler handler)
+			throws IndexOutOfBoundsException {
+		this.checkArguments(from, to, tree.size(), state);
+		if (from == to) {
+			return state;
+		}
+		// The path down to from, keeping only the nodes whose characters come at
+		// or after it, which are then visited in order by popping them.
+		Node[] stack = new Node[64];
+		int top = 0;
+		Node node = tree.root;
+		int offset = from;
+		while (offset != node.rank) {
+			if (offset < node.rank) {
+				if (top == stack.length) {
+					stack = Arrays.copyOf(stack, top * 2);
+				}
+				stack[top++] = node;
+				node = node.left;
+			} else {
+				offset -= node.rank + 1;
+				node = node.right;
+			}
+		}
+		for (int pos = from; pos < to; pos++) {
+			state = this.step(state, node.data);
+			this.report(state, pos + 1, handler);
+			// on to the next node in order
+			for (Node next = node.right; next != Node.NULL_NODE; next = next.left) {
+				if (top == stack.length) {
+					stack = Arrays.copyOf(stack, top * 2);
+				}
+				stack[top++] = next;
+			}
+			if (top > 0) {
+				node = stack[--top];
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * Like scan() on an EditTree, for any other text.
+	 */
+	public int scan(CharSequence text, int from, int to, int state, Handler handler)
+			throws IndexOutOfBoundsException {
+		this.checkArguments(from, to, text.length(), state);
+		for (int pos = from; pos < to; pos++) {
+			state = this.step(state, text.charAt(pos));
+			this.report(state, pos + 1, handler);
+		}
+		return state;
+	}
+
+	private void checkArguments(int from, int to, int size, int state) {
+		if (from < 0 || from > to || to > size) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (state < START || state >= this.stateCount()) {
+			throw new IllegalArgumentException("No state " + state);
+		}
+	}
+
+	// The state after reading ch in state.
+	private int step(int state, char ch) {
+		while (true) {
+			int low = this.firstEdge[state];
+			int high = this.firstEdge[state + 1] - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (this.labels[mid] < ch) {
+					low = mid + 1;
+				} else if (this.labels[mid] > ch) {
+					high = mid - 1;
+				} else {
+					return this.edges[mid];
+				}
+			}
+			if (state == START) {
+				return START;
+			}
+			state = this.failure[state];
+		}
+	}
+
+	private void report(int state, int end, Handler handler) {
+		if (this.keyword[state] < 0) {
+			state = this.nextMatch[state];
+		}
+		while (state >= 0) {
+			int k = this.keyword[state];
+			handler.found(k, end - this.keywordLengths[k], end);
+			state = this.nextMatch[state];
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for KeywordAutomaton.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class KeywordAutomatonTest {
+
+	// Collects matches as "keyword@start-end".
+	private static class Collector implements KeywordAutomaton.Handler {
+		final ArrayList<String> found = new ArrayList<String>();
+
+		public void found(int keyword, int start, int end) {
+			this.found.add(keyword + "@" + start + "-" + end);
+		}
+	}
+
+	private static EditTree treeOf(String text, BalancingPolicy policy) {
+		EditTree t = new EditTree(policy);
+		Random random = new Random(text.length());
+		// added out of order so that the tree isn't built the same way each time
+		StringBuilder added = new StringBuilder();
+		for (int i = 0; i < text.length(); i++) {
+			int pos = random.nextInt(added.length() + 1);
+			added.insert(pos, 'x');
+			t.add('x', pos);
+		}
+		for (int i = 0; i < text.length(); i++) {
+			t.delete(i);
+			t.add(text.charAt(i), i);
+		}
+		return t;
+	}
+
+	// Every occurrence of every keyword, by indexOf, in the order the automaton
+	// reports them.
+	private static ArrayList<String> bruteForce(String[] keywords, String text, int from, int to) {
+		ArrayList<String> found = new ArrayList<String>();
+		for (int end = from + 1; end <= to; end++) {
+			ArrayList<Integer> endingHere = new ArrayList<Integer>();
+			for (int k = 0; k < keywords.length; k++) {
+				int start = end - keywords[k].length();
+				if (start >= from && text.startsWith(keywords[k], start)
+						&& firstIndexOf(keywords, keywords[k]) == k) {
+					endingHere.add(k);
+				}
+			}
+			// longest first
+			for (int length = to; length > 0; length--) {
+				for (int k : endingHere) {
+					if (keywords[k].length() == length) {
+						found.add(k + "@" + (end - length) + "-" + end);
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	private static int firstIndexOf(String[] keywords, String keyword) {
+		for (int k = 0; k < keywords.length; k++) {
+			if (keywords[k].equals(keyword)) {
+				return k;
+			}
+		}
+		return -1;
+	}
+
+	@Test
+	public void test101TextbookExample() {
+		KeywordAutomaton automaton = new KeywordAutomaton("he", "she", "his", "hers");
+		EditTree t = treeOf("ushers", BalancingPolicy.AVL);
+		Collector collector = new Collector();
+		automaton.scan(t, 0, t.size(), KeywordAutomaton.START, collector);
+		assertEquals("[1@1-4, 0@2-4, 3@2-6]", collector.found.toString());
+		assertEquals(4, automaton.maxKeywordLength());
+		assertEquals(10, automaton.stateCount());
+	}
+
+	@Test
+	public void test102SameAsIndexOf() {
+		Random random = new Random(67);
+		for (int k = 0; k < 100; k++) {
+			String[] keywords = new String[1 + random.nextInt(20)];
+			for (int i = 0; i < keywords.length; i++) {
+				StringBuilder word = new StringBuilder();
+				int length = 1 + random.nextInt(4);
+				for (int j = 0; j < length; j++) {
+					word.append((char) ('a' + random.nextInt(3)));
+				}
+				keywords[i] = word.toString();
+			}
+			StringBuilder text = new StringBuilder();
+			int length = random.nextInt(300);
+			for (int i = 0; i < length; i++) {
+				text.append((char) ('a' + random.nextInt(4)));
+			}
+			KeywordAutomaton automaton = new KeywordAutomaton(keywords);
+			EditTree t = treeOf(text.toString(), BalancingPolicy.values()[k % BalancingPolicy.values().length]);
+			int from = random.nextInt(length + 1);
+			int to = from + random.nextInt(length - from + 1);
+			Collector inTree = new Collector();
+			automaton.scan(t, from, to, KeywordAutomaton.START, inTree);
+			Collector inString = new Collector();
+			automaton.scan(text, from, to, KeywordAutomaton.START, inString);
+			ArrayList<String> expected = bruteForce(keywords, text.toString(), from, to);
+			assertEquals(expected, inTree.found);
+			assertEquals(expected, inString.found);
+		}
+	}
+
+	@Test
+	public void test103ScanInPieces() {
+		String[] keywords = { "password", "pass", "secret", "et" };
+		KeywordAutomaton automaton = new KeywordAutomaton(keywords);
+		String text = "my password is secret, my secretpass is passwordless";
+		EditTree t = treeOf(text, BalancingPolicy.AVL);
+		Collector whole = new Collector();
+		automaton.scan(t, 0, t.size(), KeywordAutomaton.START, whole);
+		for (int split = 0; split <= text.length(); split++) {
+			Collector pieces = new Collector();
+			int state = automaton.scan(t, 0, split, KeywordAutomaton.START, pieces);
+			automaton.scan(t, split, t.size(), state, pieces);
+			assertEquals(whole.found, pieces.found);
+		}
+	}
+
+	@Test
+	public void test104RescanOnlyAfterAnEdit() {
+		String[] keywords = { "TODO", "FIXME", "XXX", "DO" };
+		KeywordAutomaton automaton = new KeywordAutomaton(keywords);
+		Random random = new Random(71);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			text.append("TODOFIXME X".charAt(random.nextInt(11)));
+		}
+		EditTree t = treeOf(text.toString(), BalancingPolicy.AVL);
+		// states saved every 100 characters, as a highlighter would
+		int[] saved = new int[t.size() / 100 + 1];
+		int state = KeywordAutomaton.START;
+		for (int i = 0; i < saved.length; i++) {
+			saved[i] = state;
+			state = automaton.scan(t, i * 100, Math.min(t.size(), i * 100 + 100), state, new Collector());
+		}
+		for (int k = 0; k < 50; k++) {
+			int pos = random.nextInt(t.size());
+			t.add("TOXF".charAt(random.nextInt(4)), pos);
+			text.insert(pos, t.get(pos));
+			// the text before the last checkpoint at or before pos didn't change
+			int checkpoint = pos / 100;
+			Collector rescanned = new Collector();
+			automaton.scan(t, checkpoint * 100, t.size(), saved[checkpoint], rescanned);
+			ArrayList<String> expected = new ArrayList<String>();
+			for (String match : bruteForce(keywords, text.toString(), 0, text.length())) {
+				int end = Integer.parseInt(match.substring(match.indexOf('-') + 1));
+				if (end > checkpoint * 100) {
+					expected.add(match);
+				}
+			}
+			assertEquals(expected, rescanned.found);
+			// save the new states after the checkpoint
+			saved = Arrays.copyOf(saved, t.size() / 100 + 1);
+			state = saved[checkpoint];
+			for (int i = checkpoint; i < saved.length; i++) {
+				saved[i] = state;
+				state = automaton.scan(t, i * 100, Math.min(t.size(), i * 100 + 100), state, new Collector());
+			}
+		}
+	}
+
+	@Test
+	public void test105ScanningDoesNotChangeTheTree() {
+		EditTree t = treeOf("abcabcabc", BalancingPolicy.SPLAY);
+		String shape = t.toDebugString();
+		int rotations = t.totalRotationCount();
+		Collector collector = new Collector();
+		new KeywordAutomaton("bca").scan(t, 0, t.size(), KeywordAutomaton.START, collector);
+		assertEquals("[0@1-4, 0@4-7]", collector.found.toString());
+		assertEquals(shape, t.toDebugString());
+		assertEquals(rotations, t.totalRotationCount());
+	}
+
+	@Test
+	public void test106BadArguments() {
+		try {
+			new KeywordAutomaton("a", "");
+			fail("Did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		KeywordAutomaton automaton = new KeywordAutomaton("ab");
+		EditTree t = treeOf("abc", BalancingPolicy.AVL);
+		try {
+			automaton.scan(t, 2, 4, KeywordAutomaton.START, new Collector());
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			automaton.scan(t, 0, 3, automaton.stateCount(), new Collector());
+			fail("Did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		assertEquals(KeywordAutomaton.START, automaton.scan(new EditTree(), 0, 0, KeywordAutomaton.START,
+				new Collector()));
+		// a keyword given twice is reported as the first
+		Collector collector = new Collector();
+		new KeywordAutomaton("b", "ab", "b").scan("abab", 0, 4, KeywordAutomaton.START, collector);
+		assertEquals("[1@0-2, 0@1-2, 1@2-4, 0@3-4]", collector.found.toString());
+	}
+}
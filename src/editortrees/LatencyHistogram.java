@@ -0,0 +1,167 @@
+package editortrees;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in buckets whose width grows with the latency, so that it
+ * can take any number of samples in a fixed 4 KB and still give each
+ * percentile to within 1/16 of its value. Every power of two is split into 8
+ * buckets, and latencies below 8 ns get a bucket each.
+ *
+ * Recording is lock-free: it increments one bucket, and adds to the sum and
+ * the maximum with atomic operations, so any number of threads can record into
+ * one histogram while another takes snapshots of it.
+ *
+ * @author Medhansh Khattar
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param nanos latency to count. Negative latencies, which System.nanoTime()
+	 *              can't give but a caller's arithmetic might, count as 0.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		this.counts.incrementAndGet(bucketOf(nanos));
+		this.sum.addAndGet(nanos);
+		long oldMax = this.max.get();
+		while (nanos > oldMax && !this.max.compareAndSet(oldMax, nanos)) {
+			oldMax = this.max.get();
+		}
+	}
+
+	/**
+	 * @return the counts so far. Samples recorded while the snapshot is taken
+	 *         may or may not be in it.
+	 */
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = this.counts.get(i);
+		}
+		return new Snapshot(copy, this.sum.get(), this.max.get());
+	}
+
+	/**
+	 * Takes a snapshot and empties the histogram at the same time, so that each
+	 * sample ends up in exactly one of the snapshots taken this way.
+	 */
+	public Snapshot snapshotAndReset() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = this.counts.getAndSet(i, 0);
+		}
+		return new Snapshot(copy, this.sum.getAndSet(0), this.max.getAndSet(0));
+	}
+
+	public void reset() {
+		this.snapshotAndReset();
+	}
+
+	static int bucketOf(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long lowestValueIn(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+	}
+
+	/**
+	 * The counts of a histogram at one moment, which don't change as more
+	 * samples are recorded.
+	 */
+	public static class Snapshot {
+
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+
+		Snapshot(long[] counts, long sum, long max) {
+			this.counts = counts;
+			long total = 0;
+			for (int i = 0; i < counts.length; i++) {
+				total += counts[i];
+			}
+			this.count = total;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		public long count() {
+			return this.count;
+		}
+
+		public long max() {
+			return this.max;
+		}
+
+		public double mean() {
+			if (this.count == 0) {
+				return 0;
+			}
+			return (double) this.sum / this.count;
+		}
+
+		/**
+		 * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+		 * @return the middle of the bucket holding that quantile, or 0 if there
+		 *         are no samples. It is never more than the maximum.
+		 */
+		public long percentile(double quantile) {
+			if (quantile < 0 || quantile > 1) {
+				throw new IllegalArgumentException();
+			}
+			long rank = (long) Math.ceil(quantile * this.count);
+			long seen = 0;
+			for (int i = 0; i < this.counts.length; i++) {
+				seen += this.counts[i];
+				if (seen >= rank && seen > 0) {
+					if (i == this.counts.length - 1) {
+						return this.max;
+					}
+					long low = lowestValueIn(i);
+					long middle = low + (lowestValueIn(i + 1) - low) / 2;
+					return Math.min(middle, this.max);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Appends this snapshot as a Prometheus summary: lines for the 50th, 99th
+		 * and 99.9th percentiles and the maximum, then the sum and the count.
+		 *
+		 * @param name metric name, e.g. edittree_add_nanos
+		 */
+		public void appendText(StringBuilder out, String name) {
+			out.append(name).append("{quantile=\"0.5\"} ").append(this.percentile(0.5)).append('\n');
+			out.append(name).append("{quantile=\"0.99\"} ").append(this.percentile(0.99)).append('\n');
+			out.append(name).append("{quantile=\"0.999\"} ").append(this.percentile(0.999)).append('\n');
+			out.append(name).append("{quantile=\"1\"} ").append(this.max).append('\n');
+			out.append(name).append("_sum ").append(this.sum).append('\n');
+			out.append(name).append("_count ").append(this.count).append('\n');
+		}
+	}
+}
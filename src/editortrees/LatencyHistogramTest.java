@@ -0,0 +1,117 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for the latency histograms and recording them on an EditTree.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LatencyHistogramTest {
+
+	@Test
+	public void test101BucketsCoverEveryValue() {
+		int previous = -1;
+		for (long v = 0; v < 100000; v++) {
+			int bucket = LatencyHistogram.bucketOf(v);
+			assertTrue(bucket == previous || bucket == previous + 1);
+			assertTrue(LatencyHistogram.lowestValueIn(bucket) <= v);
+			assertTrue(v < LatencyHistogram.lowestValueIn(bucket + 1));
+			previous = bucket;
+		}
+		assertEquals(LatencyHistogram.bucketOf(Long.MAX_VALUE), LatencyHistogram.bucketOf(Long.MAX_VALUE - 1));
+	}
+
+	@Test
+	public void test102Percentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			h.record(i * 1000L);
+		}
+		LatencyHistogram.Snapshot s = h.snapshot();
+		assertEquals(1000, s.count());
+		assertEquals(1000000, s.max());
+		assertEquals(500500.0, s.mean(), 0.001);
+		assertEquals(500000, s.percentile(0.5), 500000 / 16);
+		assertEquals(990000, s.percentile(0.99), 990000 / 16);
+		assertEquals(999000, s.percentile(0.999), 999000 / 16);
+		assertEquals(1000000, s.percentile(1));
+		assertEquals(0, new LatencyHistogram().snapshot().percentile(0.99));
+	}
+
+	@Test
+	public void test103SnapshotAndReset() {
+		LatencyHistogram h = new LatencyHistogram();
+		h.record(5);
+		h.record(-3);
+		LatencyHistogram.Snapshot s = h.snapshotAndReset();
+		assertEquals(2, s.count());
+		assertEquals(5, s.max());
+		assertEquals(0, h.snapshot().count());
+		h.record(7);
+		assertEquals(7, h.snapshot().percentile(0.5));
+		assertEquals(2, s.count());
+	}
+
+	@Test
+	public void test104ConcurrentRecording() throws InterruptedException {
+		final LatencyHistogram h = new LatencyHistogram();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int seed = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 100000; i++) {
+						h.record((i * 31 + seed) % 5000);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		long drained = 0;
+		while (threads[0].isAlive()) {
+			drained += h.snapshotAndReset().count();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		drained += h.snapshotAndReset().count();
+		assertEquals(400000, drained);
+	}
+
+	@Test
+	public void test105EditTreeRecordsEachOperation() {
+		EditTree t = new EditTree();
+		assertNull(t.getLatencies());
+		EditTreeLatencies latencies = new EditTreeLatencies();
+		t.setLatencies(latencies);
+		for (int i = 0; i < 100; i++) {
+			t.add('a');
+		}
+		t.add('b', 50);
+		t.delete(3);
+		t.get(7);
+		assertEquals("aaaaa", t.get(10, 5));
+		assertEquals(101, latencies.add.snapshot().count());
+		assertEquals(1, latencies.delete.snapshot().count());
+		assertEquals(1, latencies.get.snapshot().count());
+		assertEquals(1, latencies.getRange.snapshot().count());
+		String text = latencies.toText("edittree");
+		assertTrue(text.contains("# TYPE edittree_add_nanos summary\n"));
+		assertTrue(text.contains("edittree_add_nanos_count 101\n"));
+		assertTrue(text.contains("edittree_get_range_nanos{quantile=\"0.99\"} "));
+		t.setLatencies(null);
+		t.add('c');
+		assertEquals(101, latencies.add.snapshot().count());
+		latencies.reset();
+		assertEquals(0, latencies.add.snapshot().count());
+	}
+}
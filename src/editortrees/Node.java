@@ -1,6 +1,9 @@
 package editortrees;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Random;
 import java.util.Stack;
 
 import editortrees.EditTree.BooleanContainer;
@@ -11,7 +14,7 @@ import editortrees.EditTree.BooleanContainer;
  * 
  * @author <<You>>
  */
-public class Node {
+public class Node extends BalancedNode<Node> {
 
 	enum Code {
 		SAME, LEFT, RIGHT;
@@ -29,29 +32,40 @@ public class Node {
 				throw new IllegalStateException();
 			}
 		}
+	}
 
-		boolean isOpposite(Code traversalDirection) {
-			return (this.equals(Code.RIGHT) && traversalDirection.equals(Code.LEFT)) || (this.equals(Code.LEFT) && traversalDirection.equals(Code.RIGHT));
-		}
+	// Balance codes are stored in a byte instead of a reference to a Code, which
+	// makes every node 8 bytes smaller and the rebalancing code compare ints.
+	// The values are the ordinals of the matching Codes.
+	static final byte SAME = 0;
+	static final byte LEFT = 1;
+	static final byte RIGHT = 2;
+	private static final Code[] CODES = Code.values();
+	// bits of the byte that snapshots write after a node's balance code
+	static final int SNAPSHOT_HAS_LEFT = 4;
+	static final int SNAPSHOT_HAS_RIGHT = 8;
+	// Subtree hashes are polynomials in a random base, modulo the prime
+	// 2^61 - 1, so two different strings of length n have the same hash with
+	// probability at most n / 2^61 whatever the text is. The base is picked
+	// once per JVM, so hashes can't be compared across runs.
+	static final long HASH_MODULUS = (1L << 61) - 1;
+	static final long HASH_BASE = 0x10000 + (new Random().nextLong() >>> 3) % (HASH_MODULUS - 0x20000);
 
-		Code getOppositeCode() {
-			if(this.equals(Code.LEFT)) {
-				return Code.RIGHT;
-			}
-			return Code.LEFT;
-		}
+	static byte opposite(byte side) {
+		return (byte) (LEFT + RIGHT - side);
 	}
 
-
 	// The fields would normally be private, but for the purposes of this class,
 	// we want to be able to test the results of the algorithms in addition to the
 	// "publicly visible" effects
 
 	char data;
-	Node left, right; // subtrees
-	int rank; // i see this as the inorder position of this node within its own subtree.
-	Code balance;
-	DisplayableNodeWrapper displayableNodeWrapper;
+	// left, right, rank and balance are in BalancedNode
+	int codePointRank; // number of code points in the left subtree, kept next to rank
+	int byteRank; // length of the left subtree encoded as UTF-8
+	long hash; // of the whole subtree's text, see updateHash()
+	long hashPower; // HASH_BASE to the size of the subtree
+	DisplayableNodeWrapper displayableNodeWrapper; // only created once the tree is displayed
 	
 
 	// Feel free to add other fields that you find useful.
@@ -61,6 +75,10 @@ public class Node {
 	// but they could be anything since you shouldn't ever actually refer to them in
 	// your code.
 	static final Node NULL_NODE = new Node('\0', null, null);
+	static {
+		// the hash of the empty string, which appending to changes nothing
+		NULL_NODE.hashPower = 1;
+	}
 	// Node parent; You may want parent, but think twice: keeping it up-to-date
 	// takes effort too, maybe more than it's worth.
 
@@ -69,22 +87,22 @@ public class Node {
 		this.left = null;
 		this.right = null;
 		this.rank = -1;
-		this.balance = null;
-		displayableNodeWrapper = new DisplayableNodeWrapper(this);
+		this.balance = SAME;
 	}
 	
 	public Node(char data, Node left, Node right) {
 		this.data = data;
 		this.left = left;
 		this.right = right;
-		displayableNodeWrapper = new DisplayableNodeWrapper(this);
+		if(left != null && right != null) {
+			this.updateHash();
+		}
 	}
 
 	public Node(char data) {
 		// Make a leaf node
 		this(data, NULL_NODE, NULL_NODE);
-		this.balance = Code.SAME;
-		displayableNodeWrapper = new DisplayableNodeWrapper(this);
+		this.balance = SAME;
 	}
 
 	public Node(char data2, int rank2) {
@@ -92,24 +110,34 @@ public class Node {
 		this.left = NULL_NODE;
 		this.right =NULL_NODE;
 		this.rank = rank2;
-		this.balance = Code.SAME;
-		displayableNodeWrapper = new DisplayableNodeWrapper(this);
+		this.balance = SAME;
+		this.updateHash();
 	}
 	
 	public Node(char data, int rank, Code balanceCode) {
 		this.data = data;
 		this.rank = rank;
-		this.balance = balanceCode;
+		this.setBalance(balanceCode);
 		this.left = NULL_NODE;
 		this.right =NULL_NODE;
-		displayableNodeWrapper = new DisplayableNodeWrapper(this);
+		this.updateHash();
 	}
 
+	Code getBalance() {
+		return CODES[this.balance];
+	}
+
+	void setBalance(Code balanceCode) {
+		this.balance = (byte) balanceCode.ordinal();
+	}
+
+	// Follows the balance codes down the taller side, so this is O(log n) as
+	// long as they are correct.
 	public int height() {
 		if(this == NULL_NODE) {
 			return -1;
 		}
-		if(this.balance == Code.LEFT) {
+		if(this.balance == LEFT) {
 			return 1 + this.left.height();
 		}
 		else {
@@ -156,287 +184,374 @@ public class Node {
 	// delete(): 20 lines of code other than } lines. Other than delete() and one of
 	// its helpers, the others were less than 10 lines long. Well-named helper
 	// methods are more effective than comments in writing clean code
-	public Node addSimple(char ch, NodeContainer nc) {
-		if(nc == null)
-		{
-			return NULL_NODE;
-		}
-		
-		if(this == NULL_NODE) {
-			Node newNode = new Node(ch);
-			newNode.balance = Code.SAME;
-			return newNode;
-		}
-		this.right = this.right.addSimple(ch, nc);
-//		return this; // used to make sure M1 still works
-		if(nc.isBalanced) {
-			return this;
-		}
-		return this.balanceAfterInsert(Code.RIGHT, nc);
-	}
 
-	public Node add(char ch, int pos, NodeContainer nc) {
-		if(this == NULL_NODE) {
-			Node newNode = new Node(ch);
-			newNode.balance = Code.SAME;
-			return newNode;
-		}
-		if(pos <= this.rank) {
-			this.rank++;
-			this.left = this.left.add(ch, pos, nc);
-			if(nc.isBalanced) {
-				return this;
-			}
-			return this.balanceAfterInsert(Code.LEFT, nc);
-		} else {
-			this.right = this.right.add(ch, pos - (1 + this.rank), nc);
-			if(nc.isBalanced) {
-				return this;
-			}
-			return this.balanceAfterInsert(Code.RIGHT, nc);
-		}
-		// commit
-	}
-	
+	// Carries whether the rebalancing is done back up the path, and how many
+	// rotations its last step made. Each tree reuses one of these for every add
+	// and delete, so they don't allocate.
 	public static class NodeContainer {
 		boolean isBalanced;
-		char dataToReturn;
-		boolean isLeafNode;
-		boolean hasOneChild;
-		boolean hasTwoChildren;
-		Code traversalDirection;
-		boolean isDeleted;
+		int rotations;
 		
 		public NodeContainer() {
 			this.isBalanced = false;
-			this.dataToReturn = '\0';
-			this.isLeafNode = false;
-			this.hasOneChild = false;
-			this.hasTwoChildren = false;
-			this.traversalDirection = null;
-			this.isDeleted = false;
-		}
-
-		public void updateParameters(int numChildren, char data) {
-			this.dataToReturn = data;
-			if(numChildren == 0) {
-				this.isLeafNode = true;
-			} else if(numChildren == 1) {
-				this.hasOneChild = true;
-			} else {
-				this.hasTwoChildren = true;
-			}
+		}
+
+		public void reset() {
+			this.isBalanced = false;
+			this.rotations = 0;
 		}
 		
 	}
 	
-	public Node getChild() {
-		if(this.left == NULL_NODE) {
-			return this.right;
-		} else if(this.right == NULL_NODE) {
-			return this.left;
-		}
-		return NULL_NODE;
+	// tree is the tree this node is in, which counts the rotations.
+	Node balanceAfterInsert(byte traversalDirection, NodeContainer nc, EditTree tree) {
+		Node newRoot = this.rebalanceAfterInsert(traversalDirection, nc);
+		tree.totalRotations += nc.rotations;
+		return newRoot;
 	}
 	
-	private Node getInorderSuccessor() {
-		return this.right.getLeftmostChild();
+	// shrunkSide is the side of this node whose subtree just got one shorter.
+	Node balanceAfterDelete(byte shrunkSide, NodeContainer nc, EditTree tree) {
+		Node newRoot = this.rebalanceAfterDelete(shrunkSide, nc);
+		tree.totalRotations += nc.rotations;
+		return newRoot;
+	}
+
+	int weight() {
+		return 1;
 	}
 
+	// Keeps the other left subtree counts and the hashes right. A rotation
+	// doesn't change the text of the subtree, so the hashes above it stay right.
+	void rotatedAbove(Node parent, boolean leftRotation) {
+		if(leftRotation) {
+			this.addLeftCountsOf(parent, 1);
+		} else {
+			parent.addLeftCountsOf(this, -1);
+		}
+		parent.updateHash();
+		this.updateHash();
+	}
+
+	// The traversals from here on loop with a Stack instead of recursing (see
+	// BalancingPolicy.SPLAY).
+
+	public void rankArrayListHelper(ArrayList<String> rankArrayList) {
+		Stack<Node> stack = this.preOrderStack();
+		while(!stack.isEmpty()) {
+			Node node = stack.pop();
+			rankArrayList.add(String.valueOf(node.data) + node.rank);
+			node.pushChildren(stack);
+		}
+	}
 	
-	private Node getLeftmostChild() {
-		if(this.left == NULL_NODE) {
-			return this;
+	public void rankArrayListDebugHelper(ArrayList<String> debugArrayList) {
+		Stack<Node> stack = this.preOrderStack();
+		while(!stack.isEmpty()) {
+			Node node = stack.pop();
+			debugArrayList.add(String.valueOf(node.data) + node.rank + node.getBalance());
+			node.pushChildren(stack);
 		}
-		return this.left.getLeftmostChild();
 	}
 	
-	private Node getSecondLeftmostChild() {
-		if(this.left.left == NULL_NODE || this.left == NULL_NODE) {
-			return this;
+	// Writes this subtree in pre-order, each node as its character and a byte
+	// with its balance code and which children it has, then anything else the
+	// tree's balancer keeps about it.
+	void writeSnapshotHelper(DataOutput out, Balancer balancer) throws IOException {
+		Stack<Node> stack = this.preOrderStack();
+		while(!stack.isEmpty()) {
+			Node node = stack.pop();
+			int flags = node.balance;
+			if(node.hasLeft()) {
+				flags |= SNAPSHOT_HAS_LEFT;
+			}
+			if(node.hasRight()) {
+				flags |= SNAPSHOT_HAS_RIGHT;
+			}
+			out.writeChar(node.data);
+			out.writeByte(flags);
+			if(balancer != null) {
+				balancer.writeState(node, out);
+			}
+			node.pushChildren(stack);
 		}
-		this.left.rank--;
-		return this.left.getSecondLeftmostChild();
 	}
 
-	private Node balanceAfterInsert(Code traversalDirection, NodeContainer nc) {
-		if(this.balance.equals(Code.SAME)) {
-			this.balance = traversalDirection;
-		} else if(this.balance.equals(traversalDirection)) {
-			nc.isBalanced = true;
-			return this.rotation();
-		} else { // need to stop recursing upward here!!!
-			this.balance = Code.SAME;
-			nc.isBalanced = true;
+	// A stack for a pre-order traversal of this subtree: pop a node, visit it,
+	// then pushChildren().
+	private Stack<Node> preOrderStack() {
+		Stack<Node> stack = new Stack<Node>();
+		if(this != NULL_NODE) {
+			stack.push(this);
 		}
-		return this;
+		return stack;
 	}
-	
-	
-	private Node rotation()  {
-		if(this.balance.equals(Code.LEFT)) {
-			if(this.balance.equals(this.left.balance)) {
-				EditTree.totalRotations++;
-				return this.singleRightRotation(this, this.left);
+
+	// Right first, so the left subtree is popped first.
+	private void pushChildren(Stack<Node> stack) {
+		if(this.hasRight()) {
+			stack.push(this.right);
+		}
+		if(this.hasLeft()) {
+			stack.push(this.left);
+		}
+	}
+
+	public char getHelper(int pos) {
+		Node node = this;
+		while(node.rank != pos) {
+			if(node.rank < pos) {
+				pos -= node.rank + 1;
+				node = node.right;
 			} else {
-				EditTree.totalRotations += 2;
-				return this.doubleRightRotation(this, this.left);
+				node = node.left;
 			}
-		} else {
-			if(this.balance.equals(this.right.balance)) {
-				EditTree.totalRotations++;
-				return this.singleLeftRotation(this, this.right);
-			} else {
-				EditTree.totalRotations += 2;
-				return this.doubleLeftRotation(this, this.right);
+		}
+		return node.data;
+	}
+
+	// Besides rank, each node keeps counts about its left subtree for the code
+	// point and UTF-8 offsets. These add (sign 1) or remove (sign -1) ch there.
+	void adjustLeftCounts(char ch, int sign) {
+		this.rank += sign;
+		this.codePointRank += sign * codePointWeight(ch);
+		this.byteRank += sign * utf8Length(ch);
+	}
+
+	void copyLeftCountsFrom(Node node) {
+		this.rank = node.rank;
+		this.codePointRank = node.codePointRank;
+		this.byteRank = node.byteRank;
+	}
+
+	// For rotations, which move node and its left subtree into or out of this
+	// node's left subtree. Rank is updated by the rotations themselves.
+	private void addLeftCountsOf(Node node, int sign) {
+		this.codePointRank += sign * (node.codePointRank + codePointWeight(node.data));
+		this.byteRank += sign * (node.byteRank + utf8Length(node.data));
+	}
+
+	// Recomputes hash and hashPower from the children's. The hash of a string
+	// s of length n is the sum of (s[i] + 1) * HASH_BASE^(n - 1 - i), so
+	// appending t to s takes hash(s) * HASH_BASE^|t| + hash(t); adding 1 to
+	// each char keeps \0 from hashing like nothing. The children must be up to
+	// date, so after an edit this goes up the path from the bottom.
+	void updateHash() {
+		this.hash = concatHashes(concatHashes(this.left.hash, HASH_BASE, this.data + 1), this.right.hashPower,
+				this.right.hash);
+		this.hashPower = multiplyModulo(multiplyModulo(this.left.hashPower, HASH_BASE), this.right.hashPower);
+	}
+
+	// For the auditor: whether updateHash() would change nothing.
+	boolean hashMatchesChildren() {
+		long hash = this.hash;
+		long hashPower = this.hashPower;
+		this.updateHash();
+		boolean matches = hash == this.hash && hashPower == this.hashPower;
+		this.hash = hash;
+		this.hashPower = hashPower;
+		return matches;
+	}
+
+	// The hash of s followed by t, given their hashes and HASH_BASE^|t|.
+	static long concatHashes(long hash, long power, long nextHash) {
+		return reduceModulo(multiplyModulo(hash, power) + nextHash);
+	}
+
+	// HASH_BASE^exponent, by repeated squaring.
+	static long hashPower(int exponent) {
+		long power = 1;
+		long square = HASH_BASE;
+		for(int e = exponent; e > 0; e >>>= 1) {
+			if((e & 1) != 0) {
+				power = multiplyModulo(power, square);
 			}
+			square = multiplyModulo(square, square);
 		}
-		
+		return power;
 	}
-	
-	private Node singleLeftRotation(Node parent, Node child) {
-		
-		int parentRank = parent.rank;
-		int childRank = child.rank;
-		parent.right = child.left;
-		child.left = parent;
-		parent.balance = Code.SAME;
-		child.balance = Code.SAME;
-		child.rank = childRank + parentRank + 1;
-		return child;
-		
+
+	// a * b modulo HASH_MODULUS, for a and b below it. The 122-bit product is
+	// put together from 31-bit and 30-bit halves so nothing overflows, then
+	// folded using 2^61 = 1.
+	static long multiplyModulo(long a, long b) {
+		long aHigh = a >>> 31;
+		long aLow = a & 0x7fffffffL;
+		long bHigh = b >>> 31;
+		long bLow = b & 0x7fffffffL;
+		long middle = aLow * bHigh + aHigh * bLow;
+		return reduceModulo((aHigh * bHigh << 1) + (middle >>> 30) + ((middle & 0x3fffffffL) << 31) + aLow * bLow);
 	}
-	
-	private Node singleRightRotation(Node parent, Node child) {
-		int parentRank = parent.rank;
-		int childRank = child.rank;
-		parent.left = child.right;
-		child.right = parent;
-		parent.balance = Code.SAME;
-		child.balance = Code.SAME;
-		parent.rank = parentRank - childRank - 1;
-		child.rank = childRank;
-		
-		return child;
-		
+
+	// x modulo HASH_MODULUS, with x read as an unsigned 64-bit value: folding
+	// with 2^61 = 1 leaves less than twice HASH_MODULUS, whatever x is, so one
+	// subtraction is enough. multiplyModulo relies on this, since its sum can
+	// reach about 2^63 + 2^32, which is a negative long.
+	static long reduceModulo(long x) {
+		long reduced = (x >>> 61) + (x & HASH_MODULUS);
+		return reduced >= HASH_MODULUS ? reduced - HASH_MODULUS : reduced;
 	}
 
-	// right-left rotation
-	private Node doubleLeftRotation(Node parent, Node child) {
-		Node parentTemp = parent;
-		Node childTemp = child;
-		Node grandchild = child.left;
-		Code grandchildCode = grandchild.balance;
-		child = singleRightRotation(child, child.left);
-		Node newRoot = singleLeftRotation(parent, child);
-		if(grandchildCode.equals(Code.LEFT)) {
-			parentTemp.balance = Code.SAME;
-			childTemp.balance = Code.RIGHT;
-		} else if(grandchildCode.equals(Code.RIGHT)) {
-			parentTemp.balance = Code.LEFT;
-			childTemp.balance = Code.SAME;
-		} else {
-			parentTemp.balance = Code.SAME;
-			childTemp.balance = Code.SAME;
-			grandchild.balance = Code.SAME;
+	// A low surrogate is counted with the high surrogate before it, so that a
+	// surrogate pair is one code point. That assumes well-formed UTF-16, which
+	// the code point methods of EditTree never break.
+	static int codePointWeight(char ch) {
+		if(Character.isLowSurrogate(ch)) {
+			return 0;
 		}
-		
-		return newRoot;
+		return 1;
 	}
 
-	// left-right rotation.
-	private Node doubleRightRotation(Node parent, Node child) {
-		Node parentTemp = parent;
-		Node childTemp = child;
-		Node grandchild = child.right;
-		Code grandchildCode = grandchild.balance;
-		child = singleLeftRotation(child, child.right);
-		Node newRoot = singleRightRotation(parent, child);
-		if(grandchildCode.equals(Code.RIGHT)) {
-			parentTemp.balance = Code.SAME;
-			childTemp.balance = Code.LEFT;
-		} else if(grandchildCode.equals(Code.LEFT)) {
-			parentTemp.balance = Code.RIGHT;
-			childTemp.balance = Code.SAME;
-		} else {
-			parentTemp.balance = Code.SAME;
-			childTemp.balance = Code.SAME;
-			grandchild.balance = Code.SAME;
+	// Like code points, the four bytes of a surrogate pair are all counted for
+	// its high surrogate.
+	static int utf8Length(char ch) {
+		if(ch < 0x80) {
+			return 1;
+		} else if(ch < 0x800) {
+			return 2;
+		} else if(Character.isHighSurrogate(ch)) {
+			return 4;
+		} else if(Character.isLowSurrogate(ch)) {
+			return 0;
 		}
-		
-		return newRoot;
+		return 3;
 	}
 
-	public void rankArrayListHelper(ArrayList<String> rankArrayList) {
-		if(this == NULL_NODE) {
-			return;
+	// Returns the position of the character that starts the given code point.
+	public int charOffsetHelper(int codePointOffset) {
+		Node node = this;
+		int before = 0; // chars to the left of node's subtree
+		while(true) {
+			int weight = codePointWeight(node.data);
+			if(codePointOffset < node.codePointRank) {
+				node = node.left;
+			} else if(codePointOffset == node.codePointRank && weight == 1) {
+				return before + node.rank;
+			} else {
+				codePointOffset -= node.codePointRank + weight;
+				before += node.rank + 1;
+				node = node.right;
+			}
 		}
-		String currentDataAndRank = String.valueOf(this.data) + this.rank;
-		rankArrayList.add(currentDataAndRank);
-		this.left.rankArrayListHelper(rankArrayList);
-		this.right.rankArrayListHelper(rankArrayList);
 	}
-	
-	public void rankArrayListDebugHelper(ArrayList<String> debugArrayList) {
-		if(this == NULL_NODE) {
-			return;
+
+	// Returns the number of code points that start before pos.
+	public int codePointOffsetHelper(int pos) {
+		int codePoints = 0;
+		for(Node node = this; node != NULL_NODE;) {
+			if(pos <= node.rank) {
+				node = node.left;
+			} else {
+				codePoints += node.codePointRank + codePointWeight(node.data);
+				pos -= node.rank + 1;
+				node = node.right;
+			}
 		}
-		String dataRankCode = String.valueOf(this.data) + this.rank + this.balance;
-		debugArrayList.add(dataRankCode);
-		this.left.rankArrayListDebugHelper(debugArrayList);
-		this.right.rankArrayListDebugHelper(debugArrayList);
+		return codePoints;
 	}
-	
-	public char getHelper(int pos) {
-		if(this.rank == pos) {
-			return this.data;
-		} else if(this.rank < pos) {
-			return this.right.getHelper(pos - (1 + this.rank));
+
+	// Returns the position of the character whose UTF-8 encoding contains the
+	// given byte.
+	public int charIndexHelper(int byteOffset) {
+		Node node = this;
+		int before = 0;
+		while(true) {
+			int length = utf8Length(node.data);
+			if(byteOffset < node.byteRank) {
+				node = node.left;
+			} else if(byteOffset < node.byteRank + length) {
+				return before + node.rank;
+			} else {
+				byteOffset -= node.byteRank + length;
+				before += node.rank + 1;
+				node = node.right;
+			}
 		}
-		return this.left.getHelper(pos);
 	}
 
-	public int checkRanks(BooleanContainer bc) {
-		if(this == NULL_NODE) {
-			return 0;
+	// Returns the number of UTF-8 bytes before pos.
+	public int byteOffsetHelper(int pos) {
+		int bytes = 0;
+		for(Node node = this; node != NULL_NODE;) {
+			if(pos <= node.rank) {
+				node = node.left;
+			} else {
+				bytes += node.byteRank + utf8Length(node.data);
+				pos -= node.rank + 1;
+				node = node.right;
+			}
 		}
-		int leftRank = this.left.checkRanks(bc);
-		if(leftRank != this.rank) {
-			bc.check = false;
+		return bytes;
+	}
+
+	// Returns the size of this subtree, counting the nodes in order: a node's
+	// left subtree is what was counted between pushing and popping it.
+	public int checkRanks(BooleanContainer bc) {
+		Stack<Node> stack = new Stack<Node>();
+		Stack<Integer> countWhenPushed = new Stack<Integer>();
+		int count = 0;
+		Node node = this;
+		while(node != NULL_NODE || !stack.isEmpty()) {
+			if(node != NULL_NODE) {
+				stack.push(node);
+				countWhenPushed.push(count);
+				node = node.left;
+			} else {
+				node = stack.pop();
+				if(count - countWhenPushed.pop() != node.rank) {
+					bc.check = false;
+				}
+				count++;
+				node = node.right;
+			}
 		}
-		return 1 + this.left.checkRanks(bc) + this.right.checkRanks(bc);
+		return count;
 	}
 	
-	public void checkBalance(BooleanContainer bc) {
-		if(this == NULL_NODE) {
-			return;
-		}
-		Code calculatedCode = this.calculateCode();
-		if(!(calculatedCode.equals(this.balance))) {
-			bc.check = false;
+	// Returns the height of this subtree, found bottom-up in one pass, and
+	// clears bc.check if any balance code in it doesn't match the heights of
+	// its node's children. A node stays on the stack until both of its
+	// subtrees' heights are on the heights stack.
+	public int checkBalance(BooleanContainer bc) {
+		Stack<Node> stack = new Stack<Node>();
+		Stack<Boolean> childrenPushed = new Stack<Boolean>();
+		Stack<Integer> heights = new Stack<Integer>();
+		stack.push(this);
+		childrenPushed.push(false);
+		while(!stack.isEmpty()) {
+			Node node = stack.peek();
+			if(node == NULL_NODE) {
+				stack.pop();
+				childrenPushed.pop();
+				heights.push(-1);
+			} else if(!childrenPushed.peek()) {
+				childrenPushed.pop();
+				childrenPushed.push(true);
+				stack.push(node.right);
+				childrenPushed.push(false);
+				stack.push(node.left);
+				childrenPushed.push(false);
+			} else {
+				stack.pop();
+				childrenPushed.pop();
+				int rightHeight = heights.pop();
+				int leftHeight = heights.pop();
+				if(codeForHeights(leftHeight, rightHeight) != node.balance) {
+					bc.check = false;
+				}
+				heights.push(Math.max(leftHeight, rightHeight) + 1);
+			}
 		}
-		this.left.checkBalance(bc);
-		this.right.checkBalance(bc);
+		return heights.pop();
 	}
 	
-	private Code calculateCode() {
-		int leftSubtreeHeight = this.left.fastHeightHelper();
-		int rightSubtreeHeight = this.right.fastHeightHelper();
+	static byte codeForHeights(int leftSubtreeHeight, int rightSubtreeHeight) {
 		if(leftSubtreeHeight > rightSubtreeHeight) {
-			return Code.LEFT;
+			return LEFT;
 		} else if(leftSubtreeHeight < rightSubtreeHeight) {
-			return Code.RIGHT;
+			return RIGHT;
 		}
-		return Code.SAME;
-	}
-	
-	public int fastHeightHelper() {
-		if(this == NULL_NODE) {
-			return -1;
-		}
-		int leftHeight = this.left.fastHeightHelper();
-		int rightHeight = this.right.fastHeightHelper();
-		return Math.max(leftHeight, rightHeight) + 1;
+		return SAME;
 	}
 
 	public String toString() {
@@ -470,375 +585,30 @@ public class Node {
 		return result;
 	}
 
-	public Node deleteHelper(int pos, NodeContainer nc) {
-		if(pos < 0) {
-			
-		}
-		if(this.rank == pos) { // reached node to delete
-			nc.updateParameters(this.getNumberOfChildren(), this.data);
-			// nc stores properties of node that will be deleted
-			return this.updateBalanceAfterDeletion(nc);
-		} else if(this.rank < pos) { // traverse right
-			this.right = this.right.deleteHelper(pos - (1 + this.rank), nc);
-			nc.traversalDirection = Code.RIGHT;
-		} else {// traverse left
-			this.rank--;
-			this.left = this.left.deleteHelper(pos, nc);
-			nc.traversalDirection = Code.LEFT;
-		}
-		return this.updateBalanceAfterDeletion(nc);
-		// from how the code works now, it will only balance codes in the subtree where deletion occurs
-		// however, we need to check the other subtree as well, since deletion has more cases where rotation is necessary than insertion
-//		Node beforeCheckingOtherSubtree = this.updateBalanceAfterDeletion(nc);
-//		return beforeCheckingOtherSubtree;
-	}
-	
-	public Node checkOtherSubtreeHelper(NodeContainer nc) {
-		Code subtreeToCheck = nc.traversalDirection.getOppositeCode();
-		if(subtreeToCheck.equals(Code.LEFT)) {
-			return this.updateBalanceAfterDeletion(nc);
-		}
-		return null;
-	}
-
-	// traversal direction indicates the direction the parent node traversed to reach where the
-	// deleted node was
-	// Ex. in test300, traversalDirection is right since o traversed right to reach u, the node
-	// to be deleted
-	private Node updateBalanceAfterDeletion(NodeContainer nc) {
-		// Consider all cases where rotations are required after a node is deleted
-		// The cases where rotations are required is NOT the same as insertion (there are more cases to consider)
-		// this = node to be deleted
-		if(!nc.isDeleted) { // this is called only when the deletion occurs
-			nc.isDeleted = true;
-			Node replacement = this.updateNodeAfterDeletion(); 
-			if(replacement == NULL_NODE) {
-				return NULL_NODE;
-			}
-			return replacement.balanceAfterDeletion(nc);
-		} 
-		return this.balanceAfterDeletion(nc);
-	}
-	
-	private Node balanceAfterDeletion(NodeContainer nc) {
-		// TODO: one of the most important methods
-		int numChildren = this.getNumberOfChildren();
-		if(numChildren == 0) {
-			this.rank = 0;
-			this.balance = Code.SAME;
-			return this;
-		} else if(numChildren == 1) {
-			return this.adjustOneChildBalanceCode();
-		} else {
-			return this.adjustTwoChildrenBalanceCode();
-		}
-	}
-	
-	// covers conditions where rotations may or may not be required for replacement nodes with 1 child
-	// TODO: may need to call balanceAfterDeletion in the helper functions multiple times...
-	private Node adjustOneChildBalanceCode() {
-		if(this.left != NULL_NODE) {
-			if(this.left.balance.equals(Code.LEFT)) {
-				return this.singleLeftChildLeftBalance();
-			} else if(this.left.balance.equals(Code.SAME)) {
-				this.singleLeftChildSameBalance();
-			} else {
-				return this.singleLeftChildRightBalance();
-			}
-		} else {
-			if(this.right.balance.equals(Code.LEFT)) {
-				return this.singleRightChildLeftBalance();
-			} else if(this.right.balance.equals(Code.SAME)) {
-				this.singleRightChildSameBalance();
+	public String toStringHelper() {
+		StringBuilder builder = new StringBuilder();
+		Stack<Node> stack = new Stack<Node>();
+		Node node = this;
+		while(node != NULL_NODE || !stack.isEmpty()) {
+			if(node != NULL_NODE) {
+				stack.push(node);
+				node = node.left;
 			} else {
-				return this.singleRightChildRightBalance();
+				node = stack.pop();
+				builder.append(node.data);
+				node = node.right;
 			}
 		}
-		return this;
-	}
-
-	// next six methods covers cases where, after deletion, the replacement node has one child
-	private Node singleLeftChildLeftBalance() {
-		return this.rotation();
-	}
-	
-	private void singleLeftChildSameBalance() {
-		this.balance = Code.LEFT;
+		return builder.toString();
 	}
 	
-	private Node singleLeftChildRightBalance() {
-		return this.rotation();
-	}
-	
-	private Node singleRightChildLeftBalance() {
-		return this.rotation();
-	}
-	
-	private void singleRightChildSameBalance() {
-		this.balance = Code.RIGHT;
-	}
-
-	private Node singleRightChildRightBalance() {
-		return this.rotation();
-	}
-
-	// covers conditions where rotations may or may not be required for replacement nodes with 2 children
-	// TODO: bookmark for handling cases with 2 children, which seem more common
-	private Node adjustTwoChildrenBalanceCode() {
-		if(this.left.balance.equals(Code.RIGHT)) {
-			return this.handleLeftChildRightBalance();
-		} else if(this.left.balance.equals(Code.SAME)) {
-			return this.handleLeftChildSameBalance();
-		} else {
-			return this.handleLeftChildLeftBalance();
+	DisplayableNodeWrapper getDisplayableNodeWrapper() {
+		if(this.displayableNodeWrapper == null) {
+			this.displayableNodeWrapper = new DisplayableNodeWrapper(this);
 		}
+		return this.displayableNodeWrapper;
 	}
 
-	private Node handleLeftChildRightBalance() {
-		if(this.right.balance.equals(Code.LEFT)) {
-			return this.leftChildRightBalanceRightChildLeftBalance();
-		} else if(this.right.balance.equals(Code.SAME)) {
-			return this.leftChildRightBalanceRightChildSameBalance();
-		} else {
-			return this.leftChildRightBalanceRightChildRightBalance();
-		}
-	}
-
-				private Node leftChildRightBalanceRightChildLeftBalance() {
-					if(this.left.rank >= this.right.rank + 3) {
-						this.balance = Code.LEFT;
-						return this.rotation();
-					}
-					if(this.left.rank + 1 < this.right.rank) {
-						this.balance = Code.RIGHT;
-						return this;
-					} else if(this.left.rank < this.right.rank) {
-						this.balance = Code.SAME;
-						return this;
-					} else {
-						this.balance = Code.LEFT;
-						return this;
-					}
-				}
-				
-				private Node leftChildRightBalanceRightChildSameBalance() {
-					if(this.left.rank >= this.right.rank + 2) {
-						return this.rotation();
-					}
-					if(this.left.rank == this.right.rank) {
-						this.balance = Code.LEFT;
-						return this;
-					} else if(this.left.rank + 1 == this.right.rank) {
-						this.balance = Code.SAME;
-						return this;
-					} else {
-						this.balance = Code.RIGHT;
-						return this;
-					}
-				}
-			
-				private Node leftChildRightBalanceRightChildRightBalance() {
-					
-					if(this.left.rank == this.right.rank) {
-						this.balance = Code.SAME;
-						return this;
-					} else if(this.left.rank < this.right.rank) {
-						this.balance = Code.RIGHT;
-						return this;
-					} else {
-						this.balance = Code.LEFT;
-						return this;
-					}
-				}
-
-	private Node handleLeftChildSameBalance() {
-		if(this.right.balance.equals(Code.LEFT)) {
-			return this.leftChildSameBalanceRightChildLeftBalance();
-		} else if(this.right.balance.equals(Code.SAME)) {
-			return this.leftChildSameBalanceRightChildSameBalance();
-		} else {
-			return this.leftChildSameBalanceRightChildRightBalance();
-		}
-	}
-
-				private Node leftChildSameBalanceRightChildLeftBalance() {
-					if(this.left.rank + 3 <= this.right.rank) {
-						return this.rotation();
-					}
-					if(this.left.rank < this.right.rank) {
-						this.balance = Code.RIGHT;
-						return this;
-					} else if(this.left.rank == this.right.rank) {
-						this.balance = Code.SAME;
-						return this;
-					} else {
-						this.balance = Code.LEFT;
-						return this;
-					}
-				}
-				
-				private Node leftChildSameBalanceRightChildSameBalance() {
-					if(this.left.rank < this.right.rank && this.left.getNumberOfChildren() < this.right.getNumberOfChildren()) {
-						this.balance = Code.RIGHT;
-						return this;
-					} else if(this.left.rank == this.right.rank + 1 || this.left.rank == this.right.rank || this.left.rank + 1== this.right.rank) {
-						this.balance = Code.SAME;
-						return this;
-					} else {
-						this.balance = Code.LEFT;
-						return this;
-					}
-				}
-				
-				private Node leftChildSameBalanceRightChildRightBalance() {
-					if(this.left.rank + 2 <= this.right.rank) {
-						return this.rotation();
-					}
-					if(this.left.rank <= this.right.rank) {
-						this.balance = Code.RIGHT;
-						return this;
-					} else if((this.left.rank > 0) && (this.left.rank >= this.right.rank + 1)) {
-						this.balance = Code.SAME;
-						return this;
-					} else {
-						this.balance = Code.LEFT;
-						return this;
-					}
-				}
-
-	private Node handleLeftChildLeftBalance() {
-		if(this.right.balance.equals(Code.LEFT)) {
-			return this.leftChildLeftBalanceRightChildLeftBalance();
-		} else if(this.right.balance.equals(Code.SAME)) {
-			return this.leftChildLeftBalanceRightChildSameBalance();
-		} else {
-			return this.leftChildLeftBalanceRightChildRightBalance();
-		}
-	}
-
-				private Node leftChildLeftBalanceRightChildLeftBalance() {
-					if(this.left.rank < this.right.rank) {
-						this.balance = Code.RIGHT;
-						return this;
-					} else if(this.left.rank == this.right.rank) {
-						this.balance = Code.SAME;
-						return this;
-					} else {
-						this.balance = Code.LEFT;
-						return this;
-					}
-				}
-				
-				private Node leftChildLeftBalanceRightChildSameBalance() {
-					if(this.left.rank >= this.right.rank + 3) {
-						this.balance = Code.LEFT;
-						return this.rotation();
-					} else if(this.left.rank < this.right.rank) {
-						this.balance = Code.LEFT;
-						return this;
-					} else {
-						this.balance = Code.SAME;
-						return this;
-					}
-				}
-				
-				private Node leftChildLeftBalanceRightChildRightBalance() {
-					if(this.left.rank + 2 > this.right.rank) {
-						this.balance = Code.LEFT;
-						return this;
-					} else if(this.left.rank > this.right.rank) {
-						this.balance = Code.SAME;
-						return this;
-					} else {
-						this.balance = Code.RIGHT;
-						return this;
-					}
-				}
-
-	// this method serves to replace the deleted node with its proper successor
-	// it will update the balance codes and ranks of all nodes traversed to reach the node to delete
-	// except for the node that will replace it
-	private Node updateNodeAfterDeletion() {
-		// For test306
-		// this = X
-		Node temp = this.getReplacement(); // a
-		if(temp == NULL_NODE) {
-			return NULL_NODE;
-		}
-		Node replacement = new Node(temp.data); // need to deep copy the inorder successor, otherwise a stack overflow occurs
-		// can either be NULL_NODE, the current node's child, or the current node's inorder successor
-		
-		// Attaches the node-to-be-deleted's left subtree to the replacement node
-		// Ranks and balance codes will be updated later
-		Node oldNodeLeftSubtree = this.left;
-		Node oldNodeRightSubtree = this.right; 
-		if(replacement.data != oldNodeLeftSubtree.data) {
-			replacement.left = oldNodeLeftSubtree;
-		}
-		// why does this affect oldNodeRightSubtree
-		replacement.rank = this.rank;
-		replacement.balance = this.balance;
-		
-		// Attaches the node-to-be-deleted's right subtree to the replacement node
-		// This process will also delete the inorder successor (replacement) from
-		// its original spot
-		if(oldNodeRightSubtree != NULL_NODE) {
-			Node replacementRightSubtree = oldNodeRightSubtree.deleteInorderSuccessor();
-			replacement.right = replacementRightSubtree;
-		} 
-		
-		return replacement;
-	}
-	
-	private Node deleteInorderSuccessor() {
-		NodeContainer ncRightSubtree = new NodeContainer();
-		return this.deleteHelper(0, ncRightSubtree);
-	}
-
-
-	// this method serves to get the correct replacement node based on this node's properties
-	// if a node has 0 children, it will be replaced by a NULL_NODE
-	// if a node has 1 child, it will be replaced by its child
-	// if a node has 2 children, it will be replaced by its inorder successor
-	private Node getReplacement() {
-		int numChildren = this.getNumberOfChildren();
-		if(numChildren == 0) {
-			return NULL_NODE;
-		} else if(numChildren == 1) {
-			return this.getChild();
-		}
-		return this.getInorderSuccessor();
-		// the inorder successor can only have at most 1 child; if it had a left child, that would be the inorder successor
-	}
-
-	private int getNumberOfChildren() {
-		if(this.left == NULL_NODE && this.right == NULL_NODE) { // leaf node
-			return 0;
-		} else if(this.left == NULL_NODE || this.right == NULL_NODE) { // either left or right null, but not both
-			return 1;
-		}
-		return 2; // has 2 children
-	}
-
-	public Node nodeToDelete(int pos) {
-		if(this.rank == pos) {
-			return this;
-		} else if(this.rank < pos) {
-			return this.right.nodeToDelete(pos - (1 + this.rank));
-		}
-		return this.left.nodeToDelete(pos);
-	}
-
-	public String toStringHelper() {
-		if(this == NULL_NODE) {
-			return "";
-		}
-		String leftData = this.left.toStringHelper();
-		String currentData = String.valueOf(this.data);
-		String rightData = this.right.toStringHelper(); // fails here
-		return leftData + currentData + rightData;
-	}
-	
 	public boolean hasLeft() {
 		return this.left != NULL_NODE;
 	}
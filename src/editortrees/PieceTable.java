@@ -0,0 +1,342 @@
+package editortrees;
+
+import editortrees.Node.NodeContainer;
+
+/**
+ * Another TextBuffer engine besides EditTree, for big files that get few
+ * edits. The text is never copied: it is a sequence of pieces, each a span
+ * of either the original String or an append-only buffer of the added
+ * characters, so opening a file is O(1) and memory grows with the number of
+ * edits instead of the size of the file.
+ *
+ * The pieces are kept in an AVL tree that rebalances with Node's code, in
+ * BalancedNode, but each node's rank is the number of characters (not nodes)
+ * in its left subtree, since pieces have different lengths. Typing at one
+ * cursor extends the same piece, and deleting at either end of a piece
+ * shortens it, so neither changes the tree's shape; only edits in the middle of
+ * a piece split it.
+ *
+ * @author Medhansh Khattar
+ */
+public class PieceTable implements TextBuffer {
+
+	// rank is the number of characters in the left subtree
+	static final class Piece extends BalancedNode<Piece> {
+		boolean added; // whether it is in the add buffer or the original
+		int start;
+		int length;
+
+		Piece(boolean added, int start, int length) {
+			this.added = added;
+			this.start = start;
+			this.length = length;
+		}
+
+		int weight() {
+			return this.length;
+		}
+
+		void rotatedAbove(Piece parent, boolean leftRotation) {
+			// a piece keeps no counts besides rank
+		}
+	}
+
+	private final String original;
+	private final StringBuilder addBuffer = new StringBuilder();
+	private Piece root;
+	private int size;
+	private int pieceCount;
+	// reset by the recursive adds and removes when the subtree they returned
+	// changed height, and set once the rebalancing above it is done
+	private final NodeContainer nc = new NodeContainer();
+	// the last piece get() read, and the position of its first character
+	private Piece lastPiece;
+	private int lastPieceStart;
+
+	public PieceTable() {
+		this("");
+	}
+
+	/**
+	 * @param original the text to start with. It is not copied.
+	 */
+	public PieceTable(String original) {
+		this.original = original;
+		if (original.length() > 0) {
+			this.root = new Piece(false, 0, original.length());
+			this.size = original.length();
+			this.pieceCount = 1;
+		}
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return the number of pieces, which grows with the number of edits made
+	 *         in different places
+	 */
+	public int pieceCount() {
+		return this.pieceCount;
+	}
+
+	public void add(char ch) {
+		this.add(ch, this.size);
+	}
+
+	/**
+	 * @param ch  character to add
+	 * @param pos position to add it at, from 0 to the size inclusive
+	 * @throws IndexOutOfBoundsException if pos is negative or too large
+	 */
+	public void add(char ch, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		int bufferEnd = this.addBuffer.length();
+		this.addBuffer.append(ch);
+		if (pos > 0) {
+			Piece before = this.find(pos - 1);
+			int offset = pos - this.lastPieceStart;
+			this.lastPiece = null;
+			if (before.added && offset == before.length && before.start + before.length == bufferEnd) {
+				// typing right after the last thing typed
+				this.resize(pos - 1, 1);
+				this.size++;
+				return;
+			}
+			if (offset < before.length) {
+				// in the middle of a piece: the rest of it becomes a new piece
+				Piece rest = new Piece(before.added, before.start + offset, before.length - offset);
+				this.resize(pos - 1, -rest.length);
+				this.root = this.insert(this.root, pos, rest);
+			}
+		}
+		this.lastPiece = null;
+		this.root = this.insert(this.root, pos, new Piece(true, bufferEnd, 1));
+		this.size++;
+	}
+
+	/**
+	 * @param pos position of the character to delete
+	 * @return the deleted character
+	 * @throws IndexOutOfBoundsException if pos is negative or not less than the
+	 *                                   size
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		Piece piece = this.find(pos);
+		int offset = pos - this.lastPieceStart;
+		this.lastPiece = null;
+		char deleted = this.charAt(piece, offset);
+		if (piece.length == 1) {
+			this.root = this.remove(this.root, pos);
+		} else if (offset == 0) {
+			this.resize(pos, -1);
+			piece.start++;
+		} else if (offset == piece.length - 1) {
+			this.resize(pos, -1);
+		} else {
+			Piece rest = new Piece(piece.added, piece.start + offset + 1, piece.length - offset - 1);
+			this.resize(pos, -(rest.length + 1));
+			this.root = this.insert(this.root, pos, rest);
+		}
+		this.size--;
+		return deleted;
+	}
+
+	/**
+	 * @param pos position of a character
+	 * @return the character at pos
+	 * @throws IndexOutOfBoundsException if pos is negative or not less than the
+	 *                                   size
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		Piece piece = this.lastPiece;
+		if (piece == null || pos < this.lastPieceStart || pos >= this.lastPieceStart + piece.length) {
+			piece = this.find(pos);
+		}
+		return this.charAt(piece, pos - this.lastPieceStart);
+	}
+
+	/**
+	 * @param pos    position of the first character
+	 * @param length number of characters
+	 * @return the length characters starting at pos
+	 * @throws IndexOutOfBoundsException unless pos and pos + length - 1 are both
+	 *                                   positions in the tree
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (pos < 0 || length < 0 || pos + length > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		StringBuilder builder = new StringBuilder(length);
+		this.appendRange(this.root, pos, pos + length, builder);
+		return builder.toString();
+	}
+
+	@Override
+	public String toString() {
+		return this.get(0, this.size);
+	}
+
+	private char charAt(Piece piece, int offset) {
+		if (piece.added) {
+			return this.addBuffer.charAt(piece.start + offset);
+		}
+		return this.original.charAt(piece.start + offset);
+	}
+
+	// Returns the piece holding the character at pos, and remembers it and its
+	// position for get().
+	private Piece find(int pos) {
+		Piece piece = this.root;
+		int start = 0;
+		while (true) {
+			if (pos < start + piece.rank) {
+				piece = piece.left;
+			} else if (pos < start + piece.rank + piece.length) {
+				this.lastPiece = piece;
+				this.lastPieceStart = start + piece.rank;
+				return piece;
+			} else {
+				start += piece.rank + piece.length;
+				piece = piece.right;
+			}
+		}
+	}
+
+	// Changes the length of the piece holding the character at pos by delta,
+	// and the ranks above it to match.
+	private void resize(int pos, int delta) {
+		Piece piece = this.root;
+		while (true) {
+			if (pos < piece.rank) {
+				piece.rank += delta;
+				piece = piece.left;
+			} else if (pos < piece.rank + piece.length) {
+				piece.length += delta;
+				return;
+			} else {
+				pos -= piece.rank + piece.length;
+				piece = piece.right;
+			}
+		}
+	}
+
+	private void appendRange(Piece piece, int from, int to, StringBuilder builder) {
+		if (piece == null || from >= to) {
+			return;
+		}
+		if (from < piece.rank) {
+			this.appendRange(piece.left, from, Math.min(to, piece.rank), builder);
+		}
+		int start = Math.max(from - piece.rank, 0);
+		int end = Math.min(to - piece.rank, piece.length);
+		if (start < end) {
+			CharSequence buffer = piece.added ? this.addBuffer : this.original;
+			builder.append(buffer, piece.start + start, piece.start + end);
+		}
+		int rightStart = piece.rank + piece.length;
+		if (to > rightStart) {
+			this.appendRange(piece.right, Math.max(from - rightStart, 0), to - rightStart, builder);
+		}
+	}
+
+	// Adds piece so that its first character is at pos, which must be between
+	// two pieces.
+	private Piece insert(Piece node, int pos, Piece piece) {
+		if (node == null) {
+			this.pieceCount++;
+			this.nc.reset();
+			return piece;
+		}
+		if (pos <= node.rank) {
+			node.rank += piece.length;
+			node.left = this.insert(node.left, pos, piece);
+			return this.nc.isBalanced ? node : node.rebalanceAfterInsert(Node.LEFT, this.nc);
+		}
+		node.right = this.insert(node.right, pos - node.rank - node.length, piece);
+		return this.nc.isBalanced ? node : node.rebalanceAfterInsert(Node.RIGHT, this.nc);
+	}
+
+	// Removes the piece holding the character at pos, which must be its only
+	// character.
+	private Piece remove(Piece node, int pos) {
+		if (pos < node.rank) {
+			node.rank--;
+			node.left = this.remove(node.left, pos);
+			return this.nc.isBalanced ? node : node.rebalanceAfterDelete(Node.LEFT, this.nc);
+		}
+		if (pos >= node.rank + node.length) {
+			node.right = this.remove(node.right, pos - node.rank - node.length);
+			return this.nc.isBalanced ? node : node.rebalanceAfterDelete(Node.RIGHT, this.nc);
+		}
+		if (node.left == null || node.right == null) {
+			this.pieceCount--;
+			this.nc.reset();
+			return node.left == null ? node.right : node.left;
+		}
+		// take the next piece's place in the tree instead
+		Piece next = node.right;
+		while (next.left != null) {
+			next = next.left;
+		}
+		node.added = next.added;
+		node.start = next.start;
+		node.length = next.length;
+		node.right = this.removeFirst(node.right, next.length);
+		return this.nc.isBalanced ? node : node.rebalanceAfterDelete(Node.RIGHT, this.nc);
+	}
+
+	private Piece removeFirst(Piece node, int length) {
+		if (node.left == null) {
+			this.pieceCount--;
+			this.nc.reset();
+			return node.right;
+		}
+		node.rank -= length;
+		node.left = this.removeFirst(node.left, length);
+		return this.nc.isBalanced ? node : node.rebalanceAfterDelete(Node.LEFT, this.nc);
+	}
+
+	/**
+	 * Checks the ranks, balance codes and piece count. This is O(pieces) and
+	 * meant for tests.
+	 */
+	boolean invariantsHold() {
+		int[] count = new int[1];
+		return this.check(this.root, count) >= -1 && count[0] == this.pieceCount
+				&& (this.root == null ? 0 : this.totalLength(this.root)) == this.size;
+	}
+
+	// Returns the height of piece's subtree, or -2 if anything is wrong.
+	private int check(Piece piece, int[] count) {
+		if (piece == null) {
+			return -1;
+		}
+		count[0]++;
+		int left = this.check(piece.left, count);
+		int right = this.check(piece.right, count);
+		if (left < -1 || right < -1 || Math.abs(left - right) > 1 || piece.length <= 0
+				|| piece.rank != (piece.left == null ? 0 : this.totalLength(piece.left))
+				|| piece.balance != Node.codeForHeights(left, right)) {
+			return -2;
+		}
+		return Math.max(left, right) + 1;
+	}
+
+	private int totalLength(Piece piece) {
+		int total = 0;
+		for (; piece != null; piece = piece.right) {
+			total += piece.rank + piece.length;
+		}
+		return total;
+	}
+}
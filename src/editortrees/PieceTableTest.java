@@ -0,0 +1,151 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for PieceTable.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PieceTableTest {
+
+	@Test
+	public void test101Empty() {
+		PieceTable t = new PieceTable();
+		assertEquals(0, t.size());
+		assertEquals(0, t.pieceCount());
+		assertEquals("", t.toString());
+		try {
+			t.get(0);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.add('a', 1);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void test102OriginalIsOnePiece() {
+		String original = "The quick brown fox jumps over the lazy dog";
+		PieceTable t = new PieceTable(original);
+		assertEquals(original.length(), t.size());
+		assertEquals(1, t.pieceCount());
+		assertEquals(original, t.toString());
+		assertEquals('q', t.get(4));
+		assertEquals("brown", t.get(10, 5));
+	}
+
+	@Test
+	public void test103TypingExtendsOnePiece() {
+		PieceTable t = new PieceTable("0123456789");
+		String typed = "hello, world";
+		for (int i = 0; i < typed.length(); i++) {
+			t.add(typed.charAt(i), 5 + i);
+		}
+		// the original split around one piece of typing
+		assertEquals(3, t.pieceCount());
+		assertEquals("01234hello, world56789", t.toString());
+		assertTrue(t.invariantsHold());
+	}
+
+	@Test
+	public void test104DeletingAtPieceEndsDoesNotSplit() {
+		PieceTable t = new PieceTable("abcdefgh");
+		assertEquals('a', t.delete(0));
+		assertEquals('h', t.delete(6));
+		assertEquals(1, t.pieceCount());
+		assertEquals("bcdefg", t.toString());
+		assertEquals('d', t.delete(2));
+		assertEquals(2, t.pieceCount());
+		assertEquals("bcefg", t.toString());
+		for (int i = 0; i < 5; i++) {
+			t.delete(0);
+		}
+		assertEquals(0, t.pieceCount());
+		assertEquals("", t.toString());
+		assertTrue(t.invariantsHold());
+	}
+
+	@Test
+	public void test105RandomEditsMatchStringBuilder() {
+		Random random = new Random(5);
+		StringBuilder original = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			original.append((char) ('a' + random.nextInt(26)));
+		}
+		PieceTable t = new PieceTable(original.toString());
+		StringBuilder expected = new StringBuilder(original);
+		for (int k = 0; k < 20000; k++) {
+			int op = random.nextInt(10);
+			if (expected.length() > 0 && op < 4) {
+				int pos = random.nextInt(expected.length());
+				assertEquals(expected.charAt(pos), t.delete(pos));
+				expected.deleteCharAt(pos);
+			} else if (expected.length() > 0 && op < 6) {
+				int pos = random.nextInt(expected.length());
+				assertEquals(expected.charAt(pos), t.get(pos));
+			} else {
+				int pos = random.nextInt(expected.length() + 1);
+				char ch = (char) ('A' + random.nextInt(26));
+				t.add(ch, pos);
+				expected.insert(pos, ch);
+			}
+			if (k % 1000 == 0) {
+				assertTrue(t.invariantsHold());
+				assertEquals(expected.toString(), t.toString());
+			}
+		}
+		assertEquals(expected.length(), t.size());
+		assertEquals(expected.toString(), t.toString());
+		assertTrue(t.invariantsHold());
+	}
+
+	@Test
+	public void test106GetRangeAcrossPieces() {
+		PieceTable t = new PieceTable("aaaaaaaaaa");
+		for (int i = 9; i > 0; i -= 2) {
+			t.add('b', i);
+		}
+		String expected = "abaabaabaabaaba";
+		assertEquals(expected, t.toString());
+		for (int pos = 0; pos <= expected.length(); pos++) {
+			for (int length = 0; pos + length <= expected.length(); length++) {
+				assertEquals(expected.substring(pos, pos + length), t.get(pos, length));
+			}
+		}
+	}
+
+	@Test
+	public void test107MemoryGrowsWithEditsNotSize() {
+		StringBuilder original = new StringBuilder();
+		for (int i = 0; i < 1000000; i++) {
+			original.append((char) ('a' + i % 26));
+		}
+		PieceTable t = new PieceTable(original.toString());
+		Random random = new Random(3);
+		for (int burst = 0; burst < 100; burst++) {
+			int cursor = random.nextInt(t.size() + 1);
+			for (int k = 0; k < 20; k++) {
+				t.add('x', cursor++);
+			}
+		}
+		// each burst splits a piece in two and adds one
+		assertTrue(t.pieceCount() <= 201);
+		assertTrue(t.invariantsHold());
+		assertEquals(1002000, t.size());
+	}
+}
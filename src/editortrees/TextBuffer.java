@@ -0,0 +1,59 @@
+package editortrees;
+
+/**
+ * The operations that every text engine in this package has, so that tests,
+ * benchmarks and trace replays can be written once and run against any of
+ * them: EditTree, BPlusEditTree and PieceTable. TextBufferConformanceTest
+ * checks that an engine behaves like the others, and EngineBenchmark compares
+ * them on the same workloads, so a new engine only has to be added to those.
+ *
+ * Positions are in chars, from 0.
+ *
+ * @author Medhansh Khattar
+ */
+public interface TextBuffer {
+
+	/**
+	 * @return the number of characters in this buffer
+	 */
+	int size();
+
+	/**
+	 * @param ch character to add to the end of this buffer
+	 */
+	void add(char ch);
+
+	/**
+	 * @param ch  character to add
+	 * @param pos position ch will be at, from 0 to size() inclusive
+	 * @throws IndexOutOfBoundsException if pos is negative or greater than size()
+	 */
+	void add(char ch, int pos) throws IndexOutOfBoundsException;
+
+	/**
+	 * @param pos position of a character
+	 * @return the character at pos
+	 * @throws IndexOutOfBoundsException unless 0 <= pos < size()
+	 */
+	char get(int pos) throws IndexOutOfBoundsException;
+
+	/**
+	 * @param pos    position of the first character to return
+	 * @param length number of characters to return
+	 * @return the length characters starting at pos
+	 * @throws IndexOutOfBoundsException unless the whole range is in this buffer
+	 */
+	String get(int pos, int length) throws IndexOutOfBoundsException;
+
+	/**
+	 * @param pos position of the character to delete
+	 * @return the deleted character
+	 * @throws IndexOutOfBoundsException unless 0 <= pos < size()
+	 */
+	char delete(int pos) throws IndexOutOfBoundsException;
+
+	/**
+	 * @return the whole text
+	 */
+	String toString();
+}
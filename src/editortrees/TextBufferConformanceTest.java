@@ -0,0 +1,314 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * The engine-independent parts of the EditTreeMilestone tests, run against
+ * every TextBuffer: EditTree with each BalancingPolicy, BPlusEditTree with and
+ * without gap buffer leaves, and PieceTable. Ranks, balance codes and
+ * rotations are EditTree's own business and stay in those tests. A new engine
+ * only needs to be added to newBuffers().
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TextBufferConformanceTest {
+
+	// Fresh, empty buffers, one of each kind. The B+-trees get small nodes so
+	// that these tests make them split and merge.
+	private static TextBuffer[] newBuffers() {
+		BalancingPolicy[] policies = BalancingPolicy.values();
+		TextBuffer[] buffers = new TextBuffer[policies.length + 3];
+		for (int i = 0; i < policies.length; i++) {
+			buffers[i] = new EditTree(policies[i]);
+		}
+		buffers[policies.length] = new BPlusEditTree(4, 8, false);
+		buffers[policies.length + 1] = new BPlusEditTree(4, 8, true);
+		buffers[policies.length + 2] = new PieceTable();
+		return buffers;
+	}
+
+	private static String name(TextBuffer buffer) {
+		if (buffer instanceof EditTree) {
+			return "EditTree " + ((EditTree) buffer).getBalancingPolicy();
+		}
+		return buffer.getClass().getSimpleName();
+	}
+
+	// d, b, f, a, c, e, g added so that each lands in the middle of what is there
+	private static void addAToG(TextBuffer buffer) {
+		buffer.add('d', 0);
+		buffer.add('b', 0);
+		buffer.add('f', 2);
+		buffer.add('a', 0);
+		buffer.add('c', 2);
+		buffer.add('e', 4);
+		buffer.add('g', 6);
+	}
+
+	private static void assertStringByChar(String expected, TextBuffer buffer) {
+		assertEquals(name(buffer), expected.length(), buffer.size());
+		assertEquals(name(buffer), expected, buffer.toString());
+		for (int i = 0; i < expected.length(); i++) {
+			assertEquals(name(buffer), expected.charAt(i), buffer.get(i));
+		}
+	}
+
+	private static void assertThrowsOnGet(TextBuffer buffer, int pos) {
+		try {
+			buffer.get(pos);
+			fail(name(buffer) + " did not throw IndexOutOfBoundsException for get(" + pos + ")");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	private static void assertThrowsOnAdd(TextBuffer buffer, int pos) {
+		try {
+			buffer.add('x', pos);
+			fail(name(buffer) + " did not throw IndexOutOfBoundsException for add('x', " + pos + ")");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	private static void assertThrowsOnDelete(TextBuffer buffer, int pos) {
+		try {
+			buffer.delete(pos);
+			fail(name(buffer) + " did not throw IndexOutOfBoundsException for delete(" + pos + ")");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	private static void assertThrowsOnGetRange(TextBuffer buffer, int pos, int length) {
+		try {
+			buffer.get(pos, length);
+			fail(name(buffer) + " did not throw IndexOutOfBoundsException for get(" + pos + ", " + length + ")");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void test101Empty() {
+		for (TextBuffer buffer : newBuffers()) {
+			assertStringByChar("", buffer);
+			assertEquals(name(buffer), "", buffer.get(0, 0));
+		}
+	}
+
+	@Test
+	public void test102Append() {
+		for (TextBuffer buffer : newBuffers()) {
+			buffer.add('a');
+			assertStringByChar("a", buffer);
+			buffer.add('b');
+			buffer.add('c');
+			assertStringByChar("abc", buffer);
+			for (char ch = 'd'; ch <= 'z'; ch++) {
+				buffer.add(ch);
+			}
+			assertStringByChar("abcdefghijklmnopqrstuvwxyz", buffer);
+		}
+	}
+
+	@Test
+	public void test103AppendUsingPositionOnly() {
+		for (TextBuffer buffer : newBuffers()) {
+			for (char ch = 'a'; ch <= 'z'; ch++) {
+				buffer.add(ch, buffer.size());
+			}
+			assertStringByChar("abcdefghijklmnopqrstuvwxyz", buffer);
+		}
+	}
+
+	@Test
+	public void test104AddAtPositions() {
+		for (TextBuffer buffer : newBuffers()) {
+			addAToG(buffer);
+			assertStringByChar("abcdefg", buffer);
+			buffer.add('x', 0);
+			buffer.add('y', 4);
+			buffer.add('z', 9);
+			assertStringByChar("xabcydefgz", buffer);
+		}
+	}
+
+	@Test
+	public void test105AddThrowsIndexExceptions() {
+		for (TextBuffer buffer : newBuffers()) {
+			assertThrowsOnAdd(buffer, 1);
+			assertThrowsOnAdd(buffer, -1);
+			buffer.add('b');
+			buffer.add('a', 0);
+			buffer.add('c');
+			assertThrowsOnAdd(buffer, 4);
+			assertThrowsOnAdd(buffer, -1);
+			assertStringByChar("abc", buffer);
+		}
+	}
+
+	@Test
+	public void test106GetThrowsIndexExceptions() {
+		for (TextBuffer buffer : newBuffers()) {
+			assertThrowsOnGet(buffer, 0);
+			assertThrowsOnGet(buffer, -1);
+			buffer.add('a');
+			assertThrowsOnGet(buffer, 1);
+			assertThrowsOnGet(buffer, -1);
+			buffer.delete(0);
+			addAToG(buffer);
+			assertThrowsOnGet(buffer, 7);
+			assertThrowsOnGet(buffer, -1);
+		}
+	}
+
+	@Test
+	public void test107Delete() {
+		for (TextBuffer buffer : newBuffers()) {
+			buffer.add('o');
+			buffer.add('u');
+			buffer.add('i', 0);
+			buffer.add('e', 0);
+			assertEquals(name(buffer), 'u', buffer.delete(3));
+			assertStringByChar("eio", buffer);
+			buffer.add('g', 1);
+			assertEquals(name(buffer), 'o', buffer.delete(3));
+			assertStringByChar("egi", buffer);
+			buffer.add('o');
+			assertEquals(name(buffer), 'e', buffer.delete(0));
+			assertStringByChar("gio", buffer);
+			buffer.add('k', 2);
+			assertEquals(name(buffer), 'g', buffer.delete(0));
+			assertEquals(name(buffer), 'k', buffer.delete(1));
+			assertStringByChar("io", buffer);
+			buffer.delete(0);
+			buffer.delete(0);
+			assertStringByChar("", buffer);
+			buffer.add('z');
+			assertStringByChar("z", buffer);
+		}
+	}
+
+	@Test
+	public void test108DeleteThrowsIndexExceptions() {
+		for (TextBuffer buffer : newBuffers()) {
+			assertThrowsOnDelete(buffer, 0);
+			assertThrowsOnDelete(buffer, -1);
+			addAToG(buffer);
+			assertThrowsOnDelete(buffer, 7);
+			assertThrowsOnDelete(buffer, -1);
+			assertStringByChar("abcdefg", buffer);
+		}
+	}
+
+	@Test
+	public void test109GetRange() {
+		for (TextBuffer buffer : newBuffers()) {
+			for (char ch = 'a'; ch <= 'p'; ch++) {
+				buffer.add(ch);
+			}
+			assertEquals(name(buffer), buffer.toString(), buffer.get(0, buffer.size()));
+			assertEquals(name(buffer), "abc", buffer.get(0, 3));
+			assertEquals(name(buffer), "bcd", buffer.get(1, 3));
+			assertEquals(name(buffer), "lmnop", buffer.get(11, 5));
+			assertEquals(name(buffer), "", buffer.get(16, 0));
+		}
+	}
+
+	@Test
+	public void test110GetRangeThrowsIndexExceptions() {
+		for (TextBuffer buffer : newBuffers()) {
+			assertThrowsOnGetRange(buffer, -1, 2);
+			assertThrowsOnGetRange(buffer, 0, 1);
+			for (char ch = 'a'; ch <= 'g'; ch++) {
+				buffer.add(ch);
+			}
+			assertThrowsOnGetRange(buffer, -1, 3);
+			assertThrowsOnGetRange(buffer, 4, 4);
+			assertThrowsOnGetRange(buffer, 0, 8);
+			assertThrowsOnGetRange(buffer, 7, 1);
+			assertThrowsOnGetRange(buffer, 2, -1);
+		}
+	}
+
+	@Test
+	public void test111NonAsciiCharacters() {
+		String text = "na\u00efve \u4e2d\u6587 \ud83d\ude00 \u0000 \uffff";
+		for (TextBuffer buffer : newBuffers()) {
+			for (int i = 0; i < text.length(); i++) {
+				buffer.add(text.charAt(i), i / 2);
+			}
+			StringBuilder expected = new StringBuilder();
+			for (int i = 0; i < text.length(); i++) {
+				expected.insert(i / 2, text.charAt(i));
+			}
+			assertStringByChar(expected.toString(), buffer);
+		}
+	}
+
+	@Test
+	public void test112RandomEditsMatchStringBuilder() {
+		for (TextBuffer buffer : newBuffers()) {
+			Random random = new Random(43);
+			StringBuilder expected = new StringBuilder();
+			for (int k = 0; k < 20000; k++) {
+				int op = random.nextInt(10);
+				if (op < 3 && expected.length() > 0) {
+					int pos = random.nextInt(expected.length());
+					assertEquals(name(buffer), expected.charAt(pos), buffer.delete(pos));
+					expected.deleteCharAt(pos);
+				} else if (op < 5 && expected.length() > 0) {
+					int pos = random.nextInt(expected.length());
+					int length = random.nextInt(Math.min(50, expected.length() - pos) + 1);
+					assertEquals(name(buffer), expected.substring(pos, pos + length), buffer.get(pos, length));
+				} else {
+					int pos = random.nextInt(expected.length() + 1);
+					char ch = (char) ('a' + random.nextInt(26));
+					buffer.add(ch, pos);
+					expected.insert(pos, ch);
+				}
+				if (k % 2000 == 0) {
+					assertStringByChar(expected.toString(), buffer);
+				}
+			}
+			assertStringByChar(expected.toString(), buffer);
+		}
+	}
+
+	@Test
+	public void test113TypingAndBackspacing() {
+		for (TextBuffer buffer : newBuffers()) {
+			Random random = new Random(47);
+			StringBuilder expected = new StringBuilder();
+			for (int burst = 0; burst < 300; burst++) {
+				int cursor = random.nextInt(expected.length() + 1);
+				for (int k = 0; k < 30; k++) {
+					if (cursor > 0 && random.nextInt(4) == 0) {
+						cursor--;
+						assertEquals(name(buffer), expected.charAt(cursor), buffer.delete(cursor));
+						expected.deleteCharAt(cursor);
+					} else {
+						char ch = (char) ('a' + random.nextInt(26));
+						buffer.add(ch, cursor++);
+						expected.insert(cursor - 1, ch);
+					}
+				}
+			}
+			assertStringByChar(expected.toString(), buffer);
+			while (buffer.size() > 0) {
+				buffer.delete(buffer.size() / 2);
+				expected.deleteCharAt(expected.length() / 2);
+			}
+			assertStringByChar("", buffer);
+		}
+	}
+}
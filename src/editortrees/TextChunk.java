@@ -0,0 +1,225 @@
+package editortrees;
+
+import java.util.Arrays;
+
+/**
+ * A growable run of characters for engines that store text in chunks instead
+ * of one character per Node. Like the JDK's compact strings, a chunk keeps its
+ * characters in a byte[] while every one of them fits in Latin-1, and only
+ * inflates to a char[] once a character doesn't, so ASCII-heavy text takes
+ * half the space.
+ *
+ * The free space in the array is a gap after the first gapStart characters.
+ * Normally the gap is kept at the end, but a gapped chunk leaves it wherever
+ * the last insert or delete was, so typing or backspacing at one place only
+ * moves the characters between the old and new place instead of everything
+ * after it.
+ *
+ * @author Medhansh Khattar
+ */
+class TextChunk {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private byte[] latin1; // null once inflated
+	private char[] utf16; // null while every character fits in a byte
+	private int length;
+	private int gapStart; // always the length unless gapped
+	private final boolean gapped;
+
+	public TextChunk(int capacity) {
+		this(capacity, false);
+	}
+
+	public TextChunk(int capacity, boolean gapped) {
+		this.latin1 = new byte[Math.max(capacity, MIN_CAPACITY)];
+		this.utf16 = null;
+		this.length = 0;
+		this.gapped = gapped;
+	}
+
+	/**
+	 * Makes a chunk holding s.substring(start, end), compact if it can be.
+	 */
+	public TextChunk(CharSequence s, int start, int end, int capacity) {
+		this(s, start, end, capacity, false);
+	}
+
+	public TextChunk(CharSequence s, int start, int end, int capacity, boolean gapped) {
+		this(Math.max(capacity, end - start), gapped);
+		for (int i = start; i < end; i++) {
+			if (s.charAt(i) > 0xFF) {
+				this.inflate();
+				break;
+			}
+		}
+		for (int i = start; i < end; i++) {
+			this.set(i - start, s.charAt(i));
+		}
+		this.length = end - start;
+		this.gapStart = this.length;
+	}
+
+	public int length() {
+		return this.length;
+	}
+
+	public boolean isGapped() {
+		return this.gapped;
+	}
+
+	public boolean isLatin1() {
+		return this.latin1 != null;
+	}
+
+	public int capacity() {
+		if (this.latin1 != null) {
+			return this.latin1.length;
+		}
+		return this.utf16.length;
+	}
+
+	public char charAt(int index) {
+		if (index >= this.gapStart) {
+			index += this.capacity() - this.length;
+		}
+		if (this.latin1 != null) {
+			return (char) (this.latin1[index] & 0xFF);
+		}
+		return this.utf16[index];
+	}
+
+	public void insert(int index, char ch) {
+		if (this.latin1 != null && ch > 0xFF) {
+			this.inflate();
+		}
+		if (this.length == this.capacity()) {
+			this.grow(this.length * 2);
+		}
+		if (this.gapped) {
+			this.moveGap(index);
+		} else {
+			this.shift(index, index + 1, this.length - index);
+		}
+		this.set(index, ch);
+		this.gapStart++;
+		this.length++;
+	}
+
+	public void append(char ch) {
+		this.insert(this.length, ch);
+	}
+
+	public char delete(int index) {
+		char deleted = this.charAt(index);
+		if (!this.gapped) {
+			this.shift(index + 1, index, this.length - index - 1);
+			this.gapStart--;
+		} else if (index + 1 == this.gapStart) {
+			this.gapStart--; // a backspace
+		} else {
+			this.moveGap(index); // the gap now takes in the character after it
+		}
+		this.length--;
+		return deleted;
+	}
+
+	/**
+	 * Moves the characters from index to the end into a new chunk, which is
+	 * compact again if all of them fit in Latin-1.
+	 *
+	 * @return the chunk holding the moved characters
+	 */
+	public TextChunk splitOff(int index) {
+		TextChunk tail = new TextChunk(this.toString(index, this.length), 0, this.length - index, this.capacity(),
+				this.gapped);
+		this.moveGap(index);
+		this.length = index;
+		return tail;
+	}
+
+	/**
+	 * Moves all of other's characters to the end of this chunk.
+	 */
+	public void appendAll(TextChunk other) {
+		for (int i = 0; i < other.length; i++) {
+			this.append(other.charAt(i));
+		}
+		other.length = 0;
+		other.gapStart = 0;
+	}
+
+	public void appendTo(StringBuilder builder, int start, int end) {
+		if (this.latin1 != null) {
+			for (int i = start; i < end; i++) {
+				builder.append(this.charAt(i));
+			}
+			return;
+		}
+		int beforeGap = Math.min(end, this.gapStart);
+		if (start < beforeGap) {
+			builder.append(this.utf16, start, beforeGap - start);
+		}
+		int afterGap = Math.max(start, this.gapStart);
+		if (afterGap < end) {
+			builder.append(this.utf16, afterGap + this.capacity() - this.length, end - afterGap);
+		}
+	}
+
+	public String toString(int start, int end) {
+		StringBuilder builder = new StringBuilder(end - start);
+		this.appendTo(builder, start, end);
+		return builder.toString();
+	}
+
+	@Override
+	public String toString() {
+		return this.toString(0, this.length);
+	}
+
+	private void set(int index, char ch) {
+		if (this.latin1 != null) {
+			this.latin1[index] = (byte) ch;
+		} else {
+			this.utf16[index] = ch;
+		}
+	}
+
+	private void shift(int from, int to, int count) {
+		if (this.latin1 != null) {
+			System.arraycopy(this.latin1, from, this.latin1, to, count);
+		} else {
+			System.arraycopy(this.utf16, from, this.utf16, to, count);
+		}
+	}
+
+	// Moves the gap to start after the first index characters.
+	private void moveGap(int index) {
+		int gap = this.capacity() - this.length;
+		if (index < this.gapStart) {
+			this.shift(index, index + gap, this.gapStart - index);
+		} else if (index > this.gapStart) {
+			this.shift(this.gapStart + gap, this.gapStart, index - this.gapStart);
+		}
+		this.gapStart = index;
+	}
+
+	private void grow(int capacity) {
+		int oldCapacity = this.capacity();
+		int afterGap = this.length - this.gapStart;
+		if (this.latin1 != null) {
+			this.latin1 = Arrays.copyOf(this.latin1, capacity);
+		} else {
+			this.utf16 = Arrays.copyOf(this.utf16, capacity);
+		}
+		this.shift(oldCapacity - afterGap, capacity - afterGap, afterGap);
+	}
+
+	private void inflate() {
+		this.utf16 = new char[this.latin1.length];
+		for (int i = 0; i < this.latin1.length; i++) {
+			this.utf16[i] = (char) (this.latin1[i] & 0xFF);
+		}
+		this.latin1 = null;
+	}
+}
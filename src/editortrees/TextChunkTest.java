@@ -0,0 +1,124 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for the Latin-1/UTF-16 storage of TextChunk.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TextChunkTest {
+
+	@Test
+	public void test101AsciiStaysCompact() {
+		TextChunk chunk = new TextChunk(4);
+		String s = "int main(void) { return 0; }\n";
+		for (int i = 0; i < s.length(); i++) {
+			chunk.append(s.charAt(i));
+		}
+		assertTrue(chunk.isLatin1());
+		assertEquals(s, chunk.toString());
+		assertEquals('m', chunk.charAt(4));
+	}
+
+	@Test
+	public void test102Latin1StaysCompact() {
+		TextChunk chunk = new TextChunk("caf\u00e9 \u00fc\u00ff", 0, 7, 8);
+		assertTrue(chunk.isLatin1());
+		assertEquals('\u00ff', chunk.charAt(6));
+		assertEquals("caf\u00e9 \u00fc\u00ff", chunk.toString());
+	}
+
+	@Test
+	public void test103InflatesOnWideCharacter() {
+		TextChunk chunk = new TextChunk("abcd", 0, 4, 8);
+		chunk.insert(2, '\u03bb');
+		assertFalse(chunk.isLatin1());
+		assertEquals("ab\u03bbcd", chunk.toString());
+		assertEquals('\u03bb', chunk.delete(2));
+		assertEquals("abcd", chunk.toString());
+	}
+
+	@Test
+	public void test104InsertAndDelete() {
+		TextChunk chunk = new TextChunk(2);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			int pos = (i * 7) % (expected.length() + 1);
+			chunk.insert(pos, (char) ('a' + i % 26));
+			expected.insert(pos, (char) ('a' + i % 26));
+		}
+		for (int i = 0; i < 40; i++) {
+			int pos = (i * 13) % expected.length();
+			assertEquals(expected.charAt(pos), chunk.delete(pos));
+			expected.deleteCharAt(pos);
+		}
+		assertEquals(expected.toString(), chunk.toString());
+		assertEquals(60, chunk.length());
+	}
+
+	@Test
+	public void test105SplitOffCompactsTail() {
+		TextChunk chunk = new TextChunk("\u4e2d\u6587 and ascii", 0, 12, 16);
+		assertFalse(chunk.isLatin1());
+		TextChunk tail = chunk.splitOff(2);
+		assertEquals("\u4e2d\u6587", chunk.toString());
+		assertEquals(" and ascii", tail.toString());
+		assertTrue(tail.isLatin1());
+		chunk.appendAll(tail);
+		assertEquals("\u4e2d\u6587 and ascii", chunk.toString());
+		assertEquals(0, tail.length());
+	}
+
+	@Test
+	public void test106GappedMatchesStringBuilder() {
+		Random random = new Random(3);
+		TextChunk chunk = new TextChunk(4, true);
+		StringBuilder expected = new StringBuilder();
+		int cursor = 0;
+		for (int i = 0; i < 5000; i++) {
+			int op = random.nextInt(10);
+			if (op == 0) {
+				cursor = random.nextInt(expected.length() + 1);
+			} else if (op < 3 && cursor > 0) {
+				cursor--;
+				assertEquals(expected.charAt(cursor), chunk.delete(cursor)); // backspace
+				expected.deleteCharAt(cursor);
+			} else if (op < 4 && cursor < expected.length()) {
+				assertEquals(expected.charAt(cursor), chunk.delete(cursor)); // forward delete
+				expected.deleteCharAt(cursor);
+			} else {
+				char ch = i < 4000 ? (char) ('a' + op) : '\u4e2d';
+				chunk.insert(cursor, ch);
+				expected.insert(cursor, ch);
+				cursor++;
+			}
+			if (i % 97 == 0) {
+				assertEquals(expected.toString(), chunk.toString());
+			}
+		}
+		assertTrue(chunk.isGapped());
+		assertFalse(chunk.isLatin1());
+		assertEquals(expected.length(), chunk.length());
+		assertEquals(expected.toString(), chunk.toString());
+		for (int i = 0; i < expected.length(); i++) {
+			assertEquals(expected.charAt(i), chunk.charAt(i));
+		}
+		int middle = expected.length() / 2;
+		TextChunk tail = chunk.splitOff(middle);
+		assertTrue(tail.isGapped());
+		assertEquals(expected.substring(0, middle), chunk.toString());
+		assertEquals(expected.substring(middle), tail.toString());
+		chunk.appendAll(tail);
+		assertEquals(expected.toString(), chunk.toString());
+	}
+}
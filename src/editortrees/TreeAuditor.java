@@ -0,0 +1,187 @@
+package editortrees;
+
+import java.util.Random;
+import java.util.Stack;
+
+/**
+ * Checks the invariants of an EditTree: every node's rank, code point and
+ * UTF-8 counts match its left subtree, every node's hash matches its
+ * children's, every balance code matches the heights of its node's children,
+ * and the tree's cached totals match its nodes. For a BalancingPolicy other
+ * than AVL, that policy's invariant is checked instead of the balance codes.
+ *
+ * A full audit is one in-order traversal, O(n) time and O(height) memory. It
+ * counts characters as it goes, so a node's left subtree has been measured as
+ * soon as the traversal comes back to the node, without a separate size pass.
+ *
+ * For documents too big to audit fully after every edit, auditRandomPath()
+ * checks one random root-to-leaf path in O(log n). It can't see every node, but
+ * corruption anywhere on a path shows up with a probability that grows with
+ * the number of paths sampled.
+ *
+ * @author Medhansh Khattar
+ */
+class TreeAuditor {
+
+	private final EditTree tree;
+	private final Random random;
+	// running totals of what the full audit has passed so far
+	private int chars;
+	private int codePoints;
+	private int bytes;
+	private String problem;
+
+	public TreeAuditor(EditTree tree, long seed) {
+		this.tree = tree;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * @return a description of the first problem the last audit found, or null
+	 *         if it found none
+	 */
+	public String problem() {
+		return this.problem;
+	}
+
+	/**
+	 * Checks every node of the tree.
+	 *
+	 * @return true iff no invariant is broken
+	 */
+	public boolean auditAll() {
+		this.chars = 0;
+		this.codePoints = 0;
+		this.bytes = 0;
+		this.problem = null;
+		if (this.tree.size() > 0) {
+			this.audit(this.tree.root);
+			String balance = this.tree.balancer == null ? null : this.tree.balancer.problem(this.tree.root);
+			if (this.problem == null && balance != null) {
+				this.problem = balance;
+			}
+		}
+		if (this.problem == null && (this.chars != this.tree.size() || this.codePoints != this.tree.codePointCount()
+				|| this.bytes != this.tree.utf8Length())) {
+			this.problem = "tree has " + this.chars + " chars, " + this.codePoints + " code points and " + this.bytes
+					+ " UTF-8 bytes, but its totals say " + this.tree.size() + ", " + this.tree.codePointCount()
+					+ " and " + this.tree.utf8Length();
+		}
+		return this.problem == null;
+	}
+
+	// Returns the height of node's subtree. The nodes whose subtrees are being
+	// audited are kept on a stack instead of recursing (see
+	// BalancingPolicy.SPLAY).
+	private int audit(Node root) {
+		Stack<Frame> stack = new Stack<Frame>();
+		stack.push(new Frame(root, this));
+		int height = -1; // of the subtree audited last
+		while (!stack.isEmpty()) {
+			Frame frame = stack.peek();
+			Node node = frame.node;
+			if (node == Node.NULL_NODE) {
+				stack.pop();
+				height = -1;
+			} else if (frame.step == 0) {
+				frame.step = 1;
+				stack.push(new Frame(node.left, this));
+			} else if (frame.step == 1) {
+				frame.step = 2;
+				frame.leftHeight = height;
+				if (node.rank != this.chars - frame.charsBefore
+						|| node.codePointRank != this.codePoints - frame.codePointsBefore
+						|| node.byteRank != this.bytes - frame.bytesBefore) {
+					this.report(node, this.chars, "left subtree counts");
+				}
+				frame.pos = this.chars;
+				this.chars++;
+				this.codePoints += Node.codePointWeight(node.data);
+				this.bytes += Node.utf8Length(node.data);
+				stack.push(new Frame(node.right, this));
+			} else {
+				stack.pop();
+				int rightHeight = height;
+				if (!node.hashMatchesChildren()) {
+					this.report(node, frame.pos, "subtree hash");
+				}
+				if (this.tree.balancer == null && (Math.abs(frame.leftHeight - rightHeight) > 1
+						|| Node.codeForHeights(frame.leftHeight, rightHeight) != node.balance)) {
+					this.report(node, frame.pos, "balance code");
+				}
+				height = Math.max(frame.leftHeight, rightHeight) + 1;
+			}
+		}
+		return height;
+	}
+
+	// A node being audited, with the running totals from before its subtree.
+	// step is 0 before its left subtree, 1 after it and 2 after its right one.
+	private static class Frame {
+		final Node node;
+		final int charsBefore;
+		final int codePointsBefore;
+		final int bytesBefore;
+		int step;
+		int pos;
+		int leftHeight;
+
+		Frame(Node node, TreeAuditor auditor) {
+			this.node = node;
+			this.charsBefore = auditor.chars;
+			this.codePointsBefore = auditor.codePoints;
+			this.bytesBefore = auditor.bytes;
+		}
+	}
+
+	/**
+	 * Walks from the root to a random leaf, checking that each node's rank fits
+	 * in the range of positions its subtree covers, and that the heights its
+	 * balance code implies for its children agree with where the path ends. The
+	 * heights are only checked for AVL trees.
+	 *
+	 * @return true iff no invariant on the path is broken
+	 */
+	public boolean auditRandomPath() {
+		this.problem = null;
+		if (this.tree.size() == 0) {
+			return true;
+		}
+		Node node = this.tree.root;
+		int low = 0;
+		int high = this.tree.size();
+		boolean avl = this.tree.balancer == null;
+		int height = avl ? node.height() : 0;
+		while (node != Node.NULL_NODE) {
+			int leftHeight = height - (node.balance == Node.RIGHT ? 2 : 1);
+			int rightHeight = height - (node.balance == Node.LEFT ? 2 : 1);
+			if (node.rank < 0 || node.rank >= high - low || (avl && ((node.left == Node.NULL_NODE) != (leftHeight == -1)
+					|| (node.right == Node.NULL_NODE) != (rightHeight == -1)))) {
+				return this.report(node, low + node.rank, "path shape");
+			}
+			if (node.left == Node.NULL_NODE && (node.rank != 0 || node.codePointRank != 0 || node.byteRank != 0)) {
+				return this.report(node, low, "left subtree counts");
+			}
+			if (node.right == Node.NULL_NODE && node.rank != high - low - 1) {
+				return this.report(node, low + node.rank, "left subtree counts");
+			}
+			if (this.random.nextBoolean()) {
+				high = low + node.rank;
+				height = leftHeight;
+				node = node.left;
+			} else {
+				low = low + node.rank + 1;
+				height = rightHeight;
+				node = node.right;
+			}
+		}
+		return true;
+	}
+
+	private boolean report(Node node, int pos, String what) {
+		if (this.problem == null) {
+			this.problem = "wrong " + what + " at " + node.data + " (position " + pos + ")";
+		}
+		return false;
+	}
+}
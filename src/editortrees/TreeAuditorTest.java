@@ -0,0 +1,106 @@
+package editortrees;
+
+import static editortrees.EditTreeFixtures.treeOfLetters;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for the full and sampled invariant audits.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TreeAuditorTest {
+
+	@Test(timeout = 10000)
+	public void test101FullAuditOfBigTree() {
+		EditTree t = treeOfLetters(1 << 20);
+		t.add('\u00e9', 12345);
+		t.add('\ud83d', 777);
+		t.add('\ude00', 778);
+		assertTrue(t.invariantsHold());
+		assertTrue("Expected: true", t.ranksMatchLeftSubtreeSize());
+		assertTrue("Expected: true", t.balanceCodesAreCorrect());
+		assertTrue(new EditTree().invariantsHold());
+	}
+
+	@Test
+	public void test102FullAuditFindsWrongRank() {
+		EditTree t = treeOfLetters(1000);
+		t.root.left.right.rank++;
+		assertFalse(t.invariantsHold());
+		assertFalse(t.ranksMatchLeftSubtreeSize());
+	}
+
+	@Test
+	public void test103FullAuditFindsWrongCounts() {
+		EditTree t = treeOfLetters(1000);
+		t.root.right.left.byteRank--;
+		assertFalse(t.invariantsHold());
+		t.root.right.left.byteRank++;
+		assertTrue(t.invariantsHold());
+		t.root.codePointRank++;
+		assertFalse(t.invariantsHold());
+	}
+
+	@Test
+	public void test104FullAuditFindsWrongBalanceCode() {
+		EditTree t = treeOfLetters(1000);
+		t.root.left.setBalance(t.root.left.getBalance() == Node.Code.LEFT ? Node.Code.RIGHT : Node.Code.LEFT);
+		assertFalse(t.invariantsHold());
+		assertFalse(t.balanceCodesAreCorrect());
+	}
+
+	@Test
+	public void test105SampledAuditsFindCorruptionEventually() {
+		EditTree t = treeOfLetters(1000);
+		TreeAuditor auditor = new TreeAuditor(t, 5);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(auditor.auditRandomPath());
+		}
+		assertNull(auditor.problem());
+		Node leaf = t.root;
+		while (leaf.left != Node.NULL_NODE) {
+			leaf = leaf.left;
+		}
+		leaf.rank = 1;
+		boolean found = false;
+		for (int i = 0; i < 10000 && !found; i++) {
+			found = !auditor.auditRandomPath();
+		}
+		assertTrue(found);
+		assertEquals("wrong path shape at a (position 1)", auditor.problem());
+	}
+
+	@Test
+	public void test106AuditingEveryEdit() {
+		EditTree t = new EditTree();
+		t.setPathsAuditedPerEdit(4);
+		Random random = new Random(33);
+		for (int k = 0; k < 20000; k++) {
+			if (random.nextInt(3) < 2 || t.size() == 0) {
+				t.add((char) ('a' + random.nextInt(26)), random.nextInt(t.size() + 1));
+			} else {
+				t.delete(random.nextInt(t.size()));
+			}
+		}
+		assertTrue(t.invariantsHold());
+		t.root.setBalance(t.root.getBalance() == Node.Code.SAME ? Node.Code.LEFT : Node.Code.SAME);
+		t.setPathsAuditedPerEdit(64);
+		try {
+			t.add('x', 0);
+			fail("Expected an IllegalStateException");
+		} catch (IllegalStateException e) {
+			// the corrupt balance codes were seen on a sampled path
+		}
+	}
+}
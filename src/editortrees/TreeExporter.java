@@ -0,0 +1,266 @@
+package editortrees;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Draws an EditTree to a PNG or SVG file without a window, for hosts that
+ * can't open one. DisplayableBinaryTree is still the way to watch a tree
+ * change while debugging.
+ *
+ * Only the top levels of the tree are drawn node by node. Each subtree below
+ * maxDepth is drawn as one triangle labeled with its size, which is found from
+ * the ranks in O(log n), so an export takes time and space for the drawn part
+ * only, however big the tree is. The tree is laid out once, with each node (or
+ * collapsed subtree) in its own column in in-order and each level in its own
+ * row, and then drawn in either format from that layout.
+ *
+ * @author Medhansh Khattar
+ */
+public class TreeExporter {
+
+	public static final int DEFAULT_MAX_DEPTH = 6;
+
+	// same colors as DisplayableBinaryTree and DisplayableNodeWrapper
+	private static final Color BACKGROUND_COLOR = Color.DARK_GRAY;
+	private static final Color ARROW_COLOR = new Color(0x3399FF);
+	private static final Color CIRCLE_COLOR = Color.WHITE;
+	private static final Color TEXT_COLOR = new Color(0x66FFB2);
+
+	private static final int COLUMN_WIDTH = 36;
+	private static final int ROW_HEIGHT = 56;
+	private static final int RADIUS = 16;
+	private static final int MARGIN = 24;
+	private static final int FONT_SIZE = 11;
+
+	// The layout, one entry per drawn node or collapsed subtree, in pre-order.
+	private int count;
+	private int[] column = new int[64];
+	private int[] row = new int[64];
+	private int[] parent = new int[64];
+	private String[] label = new String[64];
+	private boolean[] collapsed = new boolean[64];
+	private int columns;
+	private int rows;
+
+	private TreeExporter(EditTree tree, int maxDepth) {
+		if (maxDepth < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (tree.size() > 0) {
+			this.layOut(tree.root, 0, -1, maxDepth);
+		}
+	}
+
+	/**
+	 * Same as writePng(tree, out, DEFAULT_MAX_DEPTH).
+	 */
+	public static void writePng(EditTree tree, OutputStream out) throws IOException {
+		writePng(tree, out, DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * @param maxDepth depth of the deepest nodes drawn one by one. Subtrees
+	 *                 below them are collapsed into triangles.
+	 * @throws IOException if out throws one
+	 */
+	public static void writePng(EditTree tree, OutputStream out, int maxDepth) throws IOException {
+		TreeExporter layout = new TreeExporter(tree, maxDepth);
+		BufferedImage image = new BufferedImage(layout.width(), layout.height(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = image.createGraphics();
+		try {
+			layout.paint(g2);
+		} finally {
+			g2.dispose();
+		}
+		if (!ImageIO.write(image, "png", out)) {
+			throw new IOException("No PNG writer");
+		}
+	}
+
+	/**
+	 * Same as writeSvg(tree, out, DEFAULT_MAX_DEPTH).
+	 */
+	public static void writeSvg(EditTree tree, Writer out) throws IOException {
+		writeSvg(tree, out, DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * @param maxDepth depth of the deepest nodes drawn one by one. Subtrees
+	 *                 below them are collapsed into triangles.
+	 * @throws IOException if out throws one
+	 */
+	public static void writeSvg(EditTree tree, Writer out, int maxDepth) throws IOException {
+		new TreeExporter(tree, maxDepth).writeSvg(out);
+	}
+
+	// Adds node's subtree to the layout in pre-order, numbering the columns in
+	// in-order as it goes.
+	private void layOut(Node node, int depth, int parentIndex, int maxDepth) {
+		int index = this.count;
+		this.append(depth, parentIndex);
+		this.rows = Math.max(this.rows, depth + 1);
+		if (depth == maxDepth && (node.hasLeft() || node.hasRight())) {
+			this.collapsed[index] = true;
+			this.label[index] = String.valueOf(node.size());
+			this.column[index] = this.columns++;
+			return;
+		}
+		if (node.hasLeft()) {
+			this.layOut(node.left, depth + 1, index, maxDepth);
+		}
+		this.label[index] = displayed(node.data) + node.rank + node.getBalance();
+		this.column[index] = this.columns++;
+		if (node.hasRight()) {
+			this.layOut(node.right, depth + 1, index, maxDepth);
+		}
+	}
+
+	private void append(int depth, int parentIndex) {
+		if (this.count == this.row.length) {
+			int capacity = this.count * 2;
+			this.column = Arrays.copyOf(this.column, capacity);
+			this.row = Arrays.copyOf(this.row, capacity);
+			this.parent = Arrays.copyOf(this.parent, capacity);
+			this.label = Arrays.copyOf(this.label, capacity);
+			this.collapsed = Arrays.copyOf(this.collapsed, capacity);
+		}
+		this.row[this.count] = depth;
+		this.parent[this.count] = parentIndex;
+		this.count++;
+	}
+
+	// Characters that wouldn't show up, or aren't allowed in XML, are drawn as
+	// Java escapes.
+	private static String displayed(char ch) {
+		if (ch < 0x20 || ch == 0x7f || Character.isSurrogate(ch) || ch == 0xfffe || ch == 0xffff) {
+			return String.format("\\u%04x", (int) ch);
+		}
+		return String.valueOf(ch);
+	}
+
+	private int width() {
+		return 2 * MARGIN + Math.max(1, this.columns) * COLUMN_WIDTH;
+	}
+
+	private int height() {
+		return 2 * MARGIN + Math.max(1, this.rows) * ROW_HEIGHT;
+	}
+
+	private int x(int i) {
+		return MARGIN + this.column[i] * COLUMN_WIDTH + COLUMN_WIDTH / 2;
+	}
+
+	private int y(int i) {
+		return MARGIN + this.row[i] * ROW_HEIGHT + ROW_HEIGHT / 2;
+	}
+
+	private void paint(Graphics2D g2) {
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g2.setColor(BACKGROUND_COLOR);
+		g2.fillRect(0, 0, this.width(), this.height());
+		g2.setStroke(new BasicStroke(1.5f));
+		g2.setColor(ARROW_COLOR);
+		for (int i = 0; i < this.count; i++) {
+			if (this.parent[i] >= 0) {
+				g2.draw(new Line2D.Double(this.x(this.parent[i]), this.y(this.parent[i]) + RADIUS, this.x(i),
+						this.y(i) - RADIUS));
+			}
+		}
+		g2.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, FONT_SIZE));
+		FontMetrics metrics = g2.getFontMetrics();
+		for (int i = 0; i < this.count; i++) {
+			int x = this.x(i);
+			int y = this.y(i);
+			g2.setColor(BACKGROUND_COLOR);
+			g2.fill(this.outline(i));
+			g2.setColor(CIRCLE_COLOR);
+			g2.draw(this.outline(i));
+			g2.setColor(TEXT_COLOR);
+			int textWidth = metrics.stringWidth(this.label[i]);
+			int baseline = y + (this.collapsed[i] ? RADIUS / 2 : metrics.getAscent() / 2);
+			g2.drawString(this.label[i], x - textWidth / 2, baseline);
+		}
+	}
+
+	private Shape outline(int i) {
+		int x = this.x(i);
+		int y = this.y(i);
+		if (!this.collapsed[i]) {
+			return new Ellipse2D.Double(x - RADIUS, y - RADIUS, 2 * RADIUS, 2 * RADIUS);
+		}
+		Path2D.Double triangle = new Path2D.Double();
+		triangle.moveTo(x, y - RADIUS);
+		triangle.lineTo(x + RADIUS, y + RADIUS);
+		triangle.lineTo(x - RADIUS, y + RADIUS);
+		triangle.closePath();
+		return triangle;
+	}
+
+	private void writeSvg(Writer out) throws IOException {
+		out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + this.width() + "\" height=\""
+				+ this.height() + "\" font-family=\"sans-serif\" font-size=\"" + FONT_SIZE + "\">\n");
+		out.write("<rect width=\"100%\" height=\"100%\" fill=\"" + hex(BACKGROUND_COLOR) + "\"/>\n");
+		out.write("<g stroke=\"" + hex(ARROW_COLOR) + "\" stroke-width=\"1.5\">\n");
+		for (int i = 0; i < this.count; i++) {
+			if (this.parent[i] >= 0) {
+				out.write("<line x1=\"" + this.x(this.parent[i]) + "\" y1=\"" + (this.y(this.parent[i]) + RADIUS)
+						+ "\" x2=\"" + this.x(i) + "\" y2=\"" + (this.y(i) - RADIUS) + "\"/>\n");
+			}
+		}
+		out.write("</g>\n<g stroke=\"" + hex(CIRCLE_COLOR) + "\" fill=\"" + hex(BACKGROUND_COLOR) + "\">\n");
+		for (int i = 0; i < this.count; i++) {
+			int x = this.x(i);
+			int y = this.y(i);
+			if (this.collapsed[i]) {
+				out.write("<polygon points=\"" + x + "," + (y - RADIUS) + " " + (x + RADIUS) + "," + (y + RADIUS) + " "
+						+ (x - RADIUS) + "," + (y + RADIUS) + "\"/>\n");
+			} else {
+				out.write("<circle cx=\"" + x + "\" cy=\"" + y + "\" r=\"" + RADIUS + "\"/>\n");
+			}
+		}
+		out.write("</g>\n<g fill=\"" + hex(TEXT_COLOR) + "\" text-anchor=\"middle\">\n");
+		for (int i = 0; i < this.count; i++) {
+			int baseline = this.y(i) + (this.collapsed[i] ? RADIUS / 2 : FONT_SIZE / 3);
+			out.write("<text x=\"" + this.x(i) + "\" y=\"" + baseline + "\">" + escapeXml(this.label[i]) + "</text>\n");
+		}
+		out.write("</g>\n</svg>\n");
+		out.flush();
+	}
+
+	private static String hex(Color color) {
+		return String.format("#%06x", color.getRGB() & 0xffffff);
+	}
+
+	private static String escapeXml(String s) {
+		StringBuilder escaped = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char ch = s.charAt(i);
+			if (ch == '&') {
+				escaped.append("&amp;");
+			} else if (ch == '<') {
+				escaped.append("&lt;");
+			} else if (ch == '>') {
+				escaped.append("&gt;");
+			} else {
+				escaped.append(ch);
+			}
+		}
+		return escaped.toString();
+	}
+}
@@ -0,0 +1,93 @@
+package editortrees;
+
+import static editortrees.EditTreeFixtures.treeOfLetters;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import javax.imageio.ImageIO;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for exporting trees to PNG and SVG without a display.
+ *
+ * @author Medhansh Khattar
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TreeExporterTest {
+
+	private static int occurrences(String s, String part) {
+		int count = 0;
+		for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1)) {
+			count++;
+		}
+		return count;
+	}
+
+	@Test
+	public void test101SmallTreeSvg() throws IOException {
+		EditTree t = treeOfLetters(7);
+		StringWriter out = new StringWriter();
+		TreeExporter.writeSvg(t, out);
+		String svg = out.toString();
+		assertTrue(svg.startsWith("<svg "));
+		assertEquals(7, occurrences(svg, "<circle "));
+		assertEquals(6, occurrences(svg, "<line "));
+		assertEquals(0, occurrences(svg, "<polygon "));
+		assertTrue(svg.contains(">d3=</text>"));
+	}
+
+	@Test
+	public void test102DeepSubtreesAreCollapsed() throws IOException {
+		EditTree t = treeOfLetters(15);
+		StringWriter out = new StringWriter();
+		TreeExporter.writeSvg(t, out, 1);
+		String svg = out.toString();
+		assertEquals(3, occurrences(svg, "<circle ") + occurrences(svg, "<polygon "));
+		assertEquals(2, occurrences(svg, "<polygon "));
+		assertEquals(2, occurrences(svg, ">7</text>"));
+	}
+
+	@Test
+	public void test103EscapesText() throws IOException {
+		EditTree t = new EditTree();
+		t.add('<');
+		t.add('&');
+		t.add('\n');
+		StringWriter out = new StringWriter();
+		TreeExporter.writeSvg(t, out);
+		String svg = out.toString();
+		assertTrue(svg.contains(">&lt;0=</text>"));
+		assertTrue(svg.contains(">&amp;1=</text>"));
+		assertTrue(svg.contains(">\\u000a0=</text>"));
+	}
+
+	@Test
+	public void test104Png() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TreeExporter.writePng(treeOfLetters(31), out);
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+		assertTrue(image.getWidth() > 31 * 20);
+		assertTrue(image.getHeight() > 5 * 20);
+		TreeExporter.writePng(new EditTree(), new ByteArrayOutputStream());
+	}
+
+	@Test(timeout = 10000)
+	public void test105HugeTreeStaysSmall() throws IOException {
+		EditTree t = treeOfLetters(500000);
+		StringWriter out = new StringWriter();
+		TreeExporter.writeSvg(t, out);
+		assertTrue(out.toString().length() < 100000);
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		TreeExporter.writePng(t, png);
+		assertTrue(png.size() < 1000000);
+	}
+}